@@ -1,6 +1,8 @@
 package com.example.multithreadedfileuploader;
 
 import com.example.multithreadedfileuploader.config.AppConfig;
+import com.example.multithreadedfileuploader.service.BatchUploadService;
+import com.example.multithreadedfileuploader.service.FileUploadService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -28,7 +30,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
  * <ul>
  *   <li><b>main</b>: Launches the JavaFX application.</li>
  *   <li><b>start</b>: Configures and displays the primary JavaFX stage.</li>
- *   <li><b>init</b>: Initializes the Spring ApplicationContext.</li>
+ *   <li><b>init</b>: Initializes the Spring ApplicationContext and queues the uploads left queued at shutdown.</li>
  * </ul>
  */
 @SpringBootApplication
@@ -53,12 +55,16 @@ public class MultiThreadedFileUploaderApplication extends Application {
      *
      * <p>This method sets up the Spring context by loading configurations from
      * the {@link AppConfig} class. The ApplicationContext enables the use of
-     * Spring-managed beans within the JavaFX application.</p>
+     * Spring-managed beans within the JavaFX application. Uploads that were still queued when
+     * the application last stopped are queued again, and the batches they belonged to are marked
+     * as interrupted.</p>
      */
     @Override
     public void init() {
         try {
             applicationContext = new AnnotationConfigApplicationContext(AppConfig.class);
+            applicationContext.getBean(BatchUploadService.class).markInterruptedBatches();
+            applicationContext.getBean(FileUploadService.class).restoreQueuedUploads();
         } catch (Exception e) {
             System.err.println("Error initializing Spring context:");
             e.printStackTrace();
@@ -2,6 +2,7 @@ package com.example.multithreadedfileuploader.config;
 
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 /**
@@ -16,6 +17,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
  * <ul>
  *   <li>Defines the base package where Spring should look for beans and components.</li>
  *   <li>Enables JPA repository support for database operations.</li>
+ *   <li>Loads {@code application.properties} so components can read their settings with {@code @Value}.</li>
  * </ul>
  *
  * <h2>Important Annotations</h2>
@@ -23,11 +25,13 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
  *   <li><b>@Configuration</b>: Marks this class as a configuration class that provides bean definitions.</li>
  *   <li><b>@ComponentScan</b>: Specifies the base package for scanning Spring components.</li>
  *   <li><b>@EnableJpaRepositories</b>: Enables JPA repository support, allowing interaction with the database through JPA.</li>
+ *   <li><b>@PropertySource</b>: Registers the application properties with the Spring environment.</li>
  * </ul>
  */
 @Configuration
 @ComponentScan(basePackages = "com.example.multithreadedfileuploader")
 @EnableJpaRepositories(basePackages = "com.example.multithreadedfileuploader.repository")
+@PropertySource("classpath:application.properties")
 public class AppConfig {
     // This class does not define methods or properties.
     // It serves as a configuration class for the Spring application context.
@@ -1,9 +1,12 @@
 package com.example.multithreadedfileuploader.config;
 
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 
 import javax.sql.DataSource;
@@ -21,6 +24,9 @@ import java.util.Map;
  * <h2>Usage</h2>
  * <ul>
  *   <li>Configures the database connection using a {@link DataSource} bean.</li>
+ *   <li>Selects the metadata store with {@code uploader.metadata.store}: {@code postgres} (default) or
+ *   {@code h2}, an embedded database in the file {@code uploader.metadata.h2.path}.</li>
+ *   <li>Migrates the schema with Flyway, from the scripts of the selected store, before JPA starts.</li>
  *   <li>Defines the entity manager factory for managing JPA entities.</li>
  *   <li>Sets Hibernate properties to customize database interactions.</li>
  * </ul>
@@ -28,6 +34,7 @@ import java.util.Map;
  * <h2>Important Methods</h2>
  * <ul>
  *   <li><b>dataSource()</b>: Configures and returns the database connection settings.</li>
+ *   <li><b>flyway()</b>: Configures the schema migrations, run when the bean is initialized.</li>
  *   <li><b>entityManagerFactory()</b>: Configures and returns the JPA entity manager factory.</li>
  *   <li><b>hibernateProperties()</b>: Provides Hibernate-specific settings as a map.</li>
  * </ul>
@@ -41,19 +48,71 @@ import java.util.Map;
 @Configuration
 public class DataSourceConfig {
 
+    @Value("${uploader.metadata.store:postgres}")
+    private String store;
+
+    @Value("${spring.datasource.url:jdbc:postgresql://localhost:5432/fileuploader}")
+    private String postgresUrl;
+
+    @Value("${spring.datasource.username:postgres}")
+    private String postgresUsername;
+
+    @Value("${spring.datasource.password:1028}")
+    private String postgresPassword;
+
+    @Value("${uploader.metadata.h2.path:./data/fileuploader}")
+    private String h2Path;
+
+    @Value("${spring.jpa.show-sql:false}")
+    private boolean showSql;
+
     /**
-     * Configures the data source for connecting to the PostgreSQL database.
+     * Configures the data source of the selected metadata store: the PostgreSQL server, or an embedded H2
+     * database kept in a local file, which needs no server and no network round-trip per update.
      *
      * @return A {@link DataSource} object with the connection details.
      */
     @Bean
     public DataSource dataSource() {
-        return DataSourceBuilder.create()
-                .driverClassName("org.postgresql.Driver")
-                .url("jdbc:postgresql://localhost:5432/fileuploader")
-                .username("postgres")
-                .password("1028")
-                .build();
+        switch (store) {
+            case "postgres":
+                return DataSourceBuilder.create()
+                        .driverClassName("org.postgresql.Driver")
+                        .url(postgresUrl)
+                        .username(postgresUsername)
+                        .password(postgresPassword)
+                        .build();
+            case "h2":
+                return DataSourceBuilder.create()
+                        .driverClassName("org.h2.Driver")
+                        .url("jdbc:h2:file:" + h2Path + ";MODE=PostgreSQL")
+                        .username("sa")
+                        .password("")
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown metadata store: " + store);
+        }
+    }
+
+    /**
+     * Configures the Flyway schema migrations, which are applied when the bean is initialized.
+     *
+     * <p>Each metadata store has its own scripts in {@code db/migration/<store>}. PostgreSQL databases
+     * created before migrations were introduced already hold the baseline schema, the former
+     * {@code init.sql}, so they are baselined at version 1 and receive every later migration, including the
+     * columns added since then. Version 1 must therefore never change.</p>
+     *
+     * @param dataSource The configured {@link DataSource} for database connections.
+     * @return A {@link Flyway} instance migrating the schema.
+     */
+    @Bean(initMethod = "migrate")
+    public Flyway flyway(DataSource dataSource) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/" + store)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load();
     }
 
     /**
@@ -64,6 +123,7 @@ public class DataSourceConfig {
      * @return A {@link LocalContainerEntityManagerFactoryBean} for managing JPA entities.
      */
     @Bean
+    @DependsOn("flyway")
     public LocalContainerEntityManagerFactoryBean entityManagerFactory(EntityManagerFactoryBuilder builder, DataSource dataSource) {
         return builder
                 .dataSource(dataSource)
@@ -83,9 +143,12 @@ public class DataSourceConfig {
      */
     private Map<String, Object> hibernateProperties() {
         Map<String, Object> properties = new HashMap<>();
-        properties.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
-        properties.put("hibernate.hbm2ddl.auto", "update"); // Use 'validate' or 'none' in production
-        properties.put("hibernate.show_sql", "true");
+        properties.put("hibernate.dialect", "h2".equals(store)
+                ? "org.hibernate.dialect.H2Dialect"
+                : "org.hibernate.dialect.PostgreSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "none"); // The schema is owned by the Flyway migrations
+        // Printing every statement to stdout costs a write per chunk update, so it is only for debugging
+        properties.put("hibernate.show_sql", String.valueOf(showSql));
         properties.put("hibernate.format_sql", "true");
         return properties;
     }
@@ -0,0 +1,111 @@
+package com.example.multithreadedfileuploader.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * The ExecutorConfig class provides the thread pools that run uploads and chunk transfers.
+ *
+ * <p>Two execution modes are supported. In {@code fixed} mode, uploads and chunks run on bounded
+ * platform thread pools. In {@code virtual} mode, every upload and chunk task runs on its own virtual
+ * thread, so thousands of mostly-blocked uploads do not need thousands of OS threads; the real I/O
+ * concurrency is then capped by the chunk slots of the {@code BandwidthScheduler}.</p>
+ *
+ * <h2>Properties</h2>
+ * <ul>
+ *   <li><b>uploader.executor.mode</b>: {@code fixed} (default) or {@code virtual}. Virtual threads need
+ *   a Java 21 runtime, see the {@code java21} Maven profile.</li>
+ *   <li><b>uploader.executor.upload-threads</b>: The number of upload threads in {@code fixed} mode.</li>
+ *   <li><b>uploader.engine.max-chunks-in-flight</b>: The number of chunk threads in {@code fixed} mode.</li>
+ *   <li><b>uploader.batch.walker-threads</b>: The number of threads listing the directories of batch uploads,
+ *   in both modes.</li>
+ * </ul>
+ */
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger logger = Logger.getLogger(ExecutorConfig.class.getName());
+
+    /**
+     * Creates the executor running whole file uploads.
+     *
+     * @param mode The execution mode, {@code fixed} or {@code virtual}.
+     * @param uploadThreads The number of upload threads in {@code fixed} mode.
+     * @return The upload {@link ExecutorService}.
+     */
+    @Bean
+    public ExecutorService uploadExecutor(@Value("${uploader.executor.mode:fixed}") String mode,
+                                          @Value("${uploader.executor.upload-threads:5}") int uploadThreads) {
+        return createExecutor(mode, uploadThreads);
+    }
+
+    /**
+     * Creates the executor running individual chunk transfers.
+     *
+     * @param mode The execution mode, {@code fixed} or {@code virtual}.
+     * @param maxChunksInFlight The number of chunk threads in {@code fixed} mode.
+     * @return The chunk {@link ExecutorService}.
+     */
+    @Bean
+    public ExecutorService chunkExecutor(@Value("${uploader.executor.mode:fixed}") String mode,
+                                         @Value("${uploader.engine.max-chunks-in-flight:16}") int maxChunksInFlight) {
+        return createExecutor(mode, maxChunksInFlight);
+    }
+
+    /**
+     * Creates the fork/join pool walking the directories of batch uploads. Directory listings are forked
+     * per subdirectory and stolen by idle workers, which a fixed or virtual thread executor cannot do.
+     *
+     * @param walkerThreads The number of walker threads.
+     * @return The walker {@link ForkJoinPool}.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ForkJoinPool walkerPool(@Value("${uploader.batch.walker-threads:4}") int walkerThreads) {
+        return new ForkJoinPool(walkerThreads);
+    }
+
+    /**
+     * Creates an executor for the given mode.
+     *
+     * @param mode The execution mode, {@code fixed} or {@code virtual}.
+     * @param threads The number of threads in {@code fixed} mode.
+     * @return The {@link ExecutorService}.
+     */
+    private ExecutorService createExecutor(String mode, int threads) {
+        switch (mode) {
+            case "fixed":
+                return Executors.newFixedThreadPool(threads);
+            case "virtual":
+                return newVirtualThreadPerTaskExecutor();
+            default:
+                throw new IllegalArgumentException("Unknown executor mode: " + mode);
+        }
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor. The project still compiles for Java 17,
+     * so the Java 21 factory method is looked up at runtime.
+     *
+     * @return The virtual thread {@link ExecutorService}.
+     */
+    private ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            logger.info("Running uploads on virtual threads.");
+            return executor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer, running on "
+                    + System.getProperty("java.version"), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create the virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.multithreadedfileuploader.config;
+
+import com.example.multithreadedfileuploader.repository.ChunkMetadataRepository;
+import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+import com.example.multithreadedfileuploader.service.BitmapChunkStateStore;
+import com.example.multithreadedfileuploader.service.ChunkStateStore;
+import com.example.multithreadedfileuploader.service.FileUploadService;
+import com.example.multithreadedfileuploader.service.RowChunkStateStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The MetadataConfig class selects how the per-chunk upload state is stored.
+ *
+ * <h2>Properties</h2>
+ * <ul>
+ *   <li><b>uploader.metadata.chunk-state</b>: {@code rows} (default) for one {@code chunk_metadata} row
+ *   per chunk, or {@code bitmap} for a compact bitmap on the {@code file_metadata} row. Content-defined
+ *   chunking stores the layout of each chunk on its row and therefore requires {@code rows}.</li>
+ * </ul>
+ */
+@Configuration
+public class MetadataConfig {
+
+    /**
+     * Creates the {@link ChunkStateStore} selected by configuration.
+     *
+     * @param mode The chunk state mode, {@code rows} or {@code bitmap}.
+     * @param chunkingMode The chunking mode, {@code fixed} or {@code content-defined}.
+     * @param fileMetadataRepository The repository for file metadata.
+     * @param chunkMetadataRepository The repository for chunk metadata.
+     * @return The configured {@link ChunkStateStore}.
+     */
+    @Bean
+    public ChunkStateStore chunkStateStore(@Value("${uploader.metadata.chunk-state:rows}") String mode,
+                                           @Value("${uploader.chunking.mode:fixed}") String chunkingMode,
+                                           FileMetadataRepository fileMetadataRepository,
+                                           ChunkMetadataRepository chunkMetadataRepository) {
+        switch (mode) {
+            case "rows":
+                return new RowChunkStateStore(chunkMetadataRepository);
+            case "bitmap":
+                if (FileUploadService.CONTENT_DEFINED_CHUNKING.equals(chunkingMode)) {
+                    throw new IllegalStateException("Content-defined chunking requires uploader.metadata.chunk-state=rows");
+                }
+                return new BitmapChunkStateStore(fileMetadataRepository);
+            default:
+                throw new IllegalArgumentException("Unknown chunk state mode: " + mode);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.multithreadedfileuploader.config;
+
+import com.example.multithreadedfileuploader.storage.InMemoryUploadSink;
+import com.example.multithreadedfileuploader.storage.LocalDirectoryUploadSink;
+import com.example.multithreadedfileuploader.storage.UploadSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * The StorageConfig class selects the storage backend that receives uploaded bytes.
+ *
+ * <h2>Properties</h2>
+ * <ul>
+ *   <li><b>uploader.sink.type</b>: {@code local} (default) to assemble files in a directory,
+ *   or {@code memory} to keep them in memory for benchmarks.</li>
+ *   <li><b>uploader.sink.local.directory</b>: The directory used by the local sink.</li>
+ * </ul>
+ */
+@Configuration
+public class StorageConfig {
+
+    /**
+     * Creates the {@link UploadSink} selected by configuration.
+     *
+     * @param type The sink type, {@code local} or {@code memory}.
+     * @param directory The directory used by the local sink.
+     * @return The configured {@link UploadSink}.
+     * @throws IOException If the local directory cannot be created.
+     */
+    @Bean
+    public UploadSink uploadSink(@Value("${uploader.sink.type:local}") String type,
+                                 @Value("${uploader.sink.local.directory:uploads}") String directory) throws IOException {
+        switch (type) {
+            case "local":
+                return new LocalDirectoryUploadSink(Paths.get(directory));
+            case "memory":
+                return new InMemoryUploadSink();
+            default:
+                throw new IllegalArgumentException("Unknown upload sink type: " + type);
+        }
+    }
+}
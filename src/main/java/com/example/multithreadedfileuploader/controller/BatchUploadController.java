@@ -0,0 +1,132 @@
+package com.example.multithreadedfileuploader.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.beans.factory.annotation.Autowired;
+import com.example.multithreadedfileuploader.entity.UploadBatch;
+import com.example.multithreadedfileuploader.service.BatchUploadService;
+import com.example.multithreadedfileuploader.service.UploadBatchProgress;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller for uploading whole directories as batches.
+ *
+ * <p>A batch is started right away and reported with 202: its directory is walked and its files are
+ * uploaded in the background. The batch ID returned addresses the batch in the other endpoints.</p>
+ *
+ * <h2>Endpoints</h2>
+ * <ul>
+ *   <li><b>/upload/batch</b>: Starts the upload of a directory on the server's file system.</li>
+ *   <li><b>/upload/batch/{id}</b>: Reports the totals and progress of a batch.</li>
+ *   <li><b>/upload/batch/{id}/cancel</b>: Cancels a running batch.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/upload/batch")
+public class BatchUploadController {
+
+    private final BatchUploadService batchUploadService;
+
+    /**
+     * Constructor-based dependency injection for the BatchUploadService.
+     *
+     * @param batchUploadService The service that uploads directories.
+     */
+    @Autowired
+    public BatchUploadController(BatchUploadService batchUploadService) {
+        this.batchUploadService = batchUploadService;
+    }
+
+    /**
+     * Endpoint to upload a directory as a batch.
+     *
+     * @param directory The path of the directory.
+     * @return ResponseEntity with the started batch, or 400 if the path is not a directory.
+     */
+    @PostMapping
+    public ResponseEntity<?> uploadDirectory(@RequestParam("directory") String directory) {
+        try {
+            return ResponseEntity.status(202).body(describe(batchUploadService.uploadDirectory(new File(directory))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to report a batch. A running batch is reported with its live counters, a finished one
+     * with the counters recorded when it finished.
+     *
+     * @param id The ID of the batch.
+     * @return ResponseEntity with the batch state, or 404 if the batch is unknown.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getBatch(@PathVariable("id") Long id) {
+        return batchUploadService.findProgress(id)
+                .<ResponseEntity<?>>map(progress -> ResponseEntity.ok(describe(progress)))
+                .or(() -> batchUploadService.findBatch(id).map(batch -> ResponseEntity.ok(describe(batch))))
+                .orElseGet(() -> ResponseEntity.status(404).body("Upload batch not found: " + id));
+    }
+
+    /**
+     * Endpoint to cancel a running batch. Files already uploaded are kept.
+     *
+     * @param id The ID of the batch.
+     * @return ResponseEntity with a success message, or 404 if no such batch is running.
+     */
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<String> cancelBatch(@PathVariable("id") Long id) {
+        if (!batchUploadService.cancelBatch(id)) {
+            return ResponseEntity.status(404).body("Running upload batch not found: " + id);
+        }
+        return ResponseEntity.ok("Upload batch cancelled successfully.");
+    }
+
+    /**
+     * Builds the response body describing a running batch.
+     *
+     * @param progress The progress of the batch.
+     * @return A map with the batch ID, name, status, counters, and progress.
+     */
+    private Map<String, Object> describe(UploadBatchProgress progress) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", progress.getBatchId());
+        body.put("name", progress.getName());
+        body.put("status", progress.isCancelled() ? "Cancelled" : progress.isScanning() ? "Scanning" : "Uploading");
+        body.put("totalFiles", progress.getDiscoveredFiles());
+        body.put("totalBytes", progress.getDiscoveredBytes());
+        body.put("uploadedBytes", progress.getUploadedBytes());
+        body.put("completedFiles", progress.getCompletedFiles());
+        body.put("failedFiles", progress.getFailedFiles());
+        body.put("cancelledFiles", progress.getCancelledFiles());
+        body.put("progress", progress.getProgress());
+        return body;
+    }
+
+    /**
+     * Builds the response body describing a batch that is no longer running.
+     *
+     * @param batch The recorded batch.
+     * @return A map with the batch ID, name, status, counters, and timestamps.
+     */
+    private Map<String, Object> describe(UploadBatch batch) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", batch.getId());
+        body.put("name", batch.getName());
+        body.put("status", batch.getStatus());
+        body.put("totalFiles", batch.getTotalFiles());
+        body.put("totalBytes", batch.getTotalBytes());
+        body.put("completedFiles", batch.getCompletedFiles());
+        body.put("failedFiles", batch.getFailedFiles());
+        body.put("createdAt", batch.getCreatedAt());
+        body.put("finishedAt", batch.getFinishedAt());
+        return body;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.multithreadedfileuploader.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.beans.factory.annotation.Autowired;
+import com.example.multithreadedfileuploader.service.ChunkDigests;
+import com.example.multithreadedfileuploader.service.ChunkedUpload;
+import com.example.multithreadedfileuploader.service.ChunkedUploadService;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller for the resumable chunked-upload protocol.
+ *
+ * <p>Clients create an upload, push its chunks individually, and complete it once every chunk has
+ * arrived. Chunks can be sent in parallel over several connections and in any order; sending a chunk
+ * twice is harmless, so after a dropped connection a client asks for the missing chunks and retries
+ * only those.</p>
+ *
+ * <h2>Endpoints</h2>
+ * <ul>
+ *   <li><b>POST /upload/sessions</b>: Creates or resumes an upload and returns its ID and chunk size. The
+ *   {@code fingerprint} parameter identifies the file content, so a changed file starts a fresh upload;
+ *   without it, a new upload is always created.</li>
+ *   <li><b>PUT /upload/sessions/{id}/chunks/{n}</b>: Stores chunk {@code n}, sent as the raw request body.
+ *   An optional {@code X-Chunk-SHA256} header carries the hex-encoded digest the chunk is checked against.</li>
+ *   <li><b>GET /upload/sessions/{id}</b>: Reports the status of an upload and its missing chunks.</li>
+ *   <li><b>POST /upload/sessions/{id}/complete</b>: Finalizes an upload whose chunks have all arrived,
+ *   optionally checking the Merkle root of its chunk digests against the {@code merkleRoot} parameter.</li>
+ *   <li><b>DELETE /upload/sessions/{id}</b>: Aborts an upload and removes its data.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/upload/sessions")
+public class ChunkedUploadController {
+
+    private static final Logger logger = Logger.getLogger(ChunkedUploadController.class.getName());
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    /**
+     * Constructor-based dependency injection for the ChunkedUploadService.
+     *
+     * @param chunkedUploadService The service that handles chunked uploads.
+     */
+    @Autowired
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    /**
+     * Endpoint to create an upload. Creating an upload for a file that is already being uploaded
+     * returns the existing upload, so the client can resume it.
+     *
+     * @param fileName The name of the file.
+     * @param fileSize The size of the file in bytes.
+     * @param fingerprint A fingerprint of the file content computed by the client, or null.
+     * @return ResponseEntity with the ID, chunk size, and missing chunks of the upload, or an error message.
+     */
+    @PostMapping
+    public ResponseEntity<?> createUpload(@RequestParam("fileName") String fileName,
+                                          @RequestParam("fileSize") long fileSize,
+                                          @RequestParam(value = "fingerprint", required = false) String fingerprint) {
+        if (fileSize <= 0) {
+            return ResponseEntity.status(400).body("File size must be positive.");
+        }
+        try {
+            return ResponseEntity.ok(describe(chunkedUploadService.createUpload(fileName, fileSize, fingerprint)));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Creating an upload of " + fileName + " failed", e);
+            return ResponseEntity.status(500).body("Upload creation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to store a chunk of an upload.
+     *
+     * @param id The ID of the upload.
+     * @param chunkNumber The sequential number of the chunk.
+     * @param chunkDigest The hex-encoded SHA-256 digest of the chunk, or null if the client sent none.
+     * @param input The chunk contents.
+     * @return ResponseEntity with a success message, or an error message.
+     */
+    @PutMapping(value = "/{id}/chunks/{chunkNumber}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<String> putChunk(@PathVariable("id") Long id,
+                                           @PathVariable("chunkNumber") int chunkNumber,
+                                           @RequestHeader(value = "X-Chunk-SHA256", required = false) String chunkDigest,
+                                           InputStream input) {
+        try {
+            Optional<ChunkedUpload> upload = chunkedUploadService.findUpload(id);
+            if (upload.isEmpty()) {
+                return ResponseEntity.status(404).body("Upload not found: " + id);
+            }
+            chunkedUploadService.writeChunk(upload.get(), chunkNumber, input, ChunkDigests.fromHex(chunkDigest));
+            return ResponseEntity.ok("Chunk " + chunkNumber + " stored.");
+        } catch (IllegalArgumentException | EOFException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(503).body("Chunk upload interrupted.");
+        } catch (Exception e) {
+            // Mostly a client dropping the connection mid-chunk, which it retries
+            logger.log(Level.WARNING, "Storing chunk " + chunkNumber + " of upload " + id + " failed", e);
+            return ResponseEntity.status(500).body("Chunk upload failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to report the status of an upload.
+     *
+     * @param id The ID of the upload.
+     * @return ResponseEntity with the upload state and its missing chunks, or 404 if the upload is unknown.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getUpload(@PathVariable("id") Long id) {
+        try {
+            return chunkedUploadService.findUpload(id)
+                    .<ResponseEntity<?>>map(upload -> ResponseEntity.ok(describe(upload)))
+                    .orElseGet(() -> ResponseEntity.status(404).body("Upload not found: " + id));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Looking up upload " + id + " failed", e);
+            return ResponseEntity.status(500).body("Upload lookup failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to complete an upload.
+     *
+     * @param id The ID of the upload.
+     * @param merkleRoot The hex-encoded Merkle root expected by the client, or null to skip the check.
+     * @return ResponseEntity with the upload state, 409 with the missing chunks if the upload is not
+     * complete yet or its Merkle root does not match, or 404 if the upload is unknown.
+     */
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable("id") Long id,
+                                            @RequestParam(value = "merkleRoot", required = false) String merkleRoot) {
+        try {
+            Optional<ChunkedUpload> upload = chunkedUploadService.findUpload(id);
+            if (upload.isEmpty()) {
+                return ResponseEntity.status(404).body("Upload not found: " + id);
+            }
+            if (!upload.get().isComplete()) {
+                return ResponseEntity.status(409).body(describe(upload.get()));
+            }
+            chunkedUploadService.completeUpload(upload.get(), merkleRoot);
+            return ResponseEntity.ok(describe(upload.get()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Completing upload " + id + " failed", e);
+            return ResponseEntity.status(500).body("Upload completion failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to abort an upload.
+     *
+     * @param id The ID of the upload.
+     * @return ResponseEntity with a success message, or 404 if the upload is unknown.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<String> abortUpload(@PathVariable("id") Long id) {
+        try {
+            Optional<ChunkedUpload> upload = chunkedUploadService.findUpload(id);
+            if (upload.isEmpty()) {
+                return ResponseEntity.status(404).body("Upload not found: " + id);
+            }
+            chunkedUploadService.abortUpload(upload.get());
+            return ResponseEntity.ok("Upload aborted successfully.");
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Aborting upload " + id + " failed", e);
+            return ResponseEntity.status(500).body("Upload abort failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the response body describing an upload.
+     *
+     * @param upload The upload.
+     * @return A map with the upload ID, chunk layout, status, missing chunks, and Merkle root.
+     */
+    private Map<String, Object> describe(ChunkedUpload upload) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", upload.getId());
+        body.put("fileName", upload.getMetadata().getFileName());
+        body.put("fileSize", upload.getMetadata().getFileSize());
+        body.put("chunkSize", upload.getChunkSize());
+        body.put("totalChunks", upload.getTotalChunks());
+        body.put("status", upload.getMetadata().getStatus());
+        body.put("missingChunks", upload.getMissingChunks());
+        body.put("merkleRoot", upload.getMetadata().getMerkleRoot());
+        return body;
+    }
+}
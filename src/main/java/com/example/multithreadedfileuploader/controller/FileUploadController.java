@@ -1,17 +1,28 @@
 package com.example.multithreadedfileuploader.controller;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.multipart.MultipartFile;
 import com.example.multithreadedfileuploader.service.FileUploadService;
+import com.example.multithreadedfileuploader.service.UploadQueue;
+import com.example.multithreadedfileuploader.service.UploadSession;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Controller for managing file uploads.
@@ -20,117 +31,281 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * It interacts with the FileUploadService to perform the actual upload operations
  * and provides endpoints for these functionalities.</p>
  *
+ * <p>Every upload runs in its own session. The session ID returned by {@code /upload} addresses
+ * the upload in all other endpoints, so clients only ever control their own uploads. As an upload
+ * responds only once the file has been received, a client that wants to pause or cancel it meanwhile
+ * chooses the session ID itself and sends it in the {@code X-Upload-Session} header.</p>
+ *
+ * <p>Uploads wait in the {@link UploadQueue} until they are admitted. A full queue is answered with
+ * 429 and an upload not admitted in time with 503, both with a {@code Retry-After} header.</p>
+ *
  * <h2>Endpoints</h2>
  * <ul>
- *   <li><b>/upload</b>: Handles file uploads.</li>
- *   <li><b>/upload/pause</b>: Pauses an ongoing upload.</li>
- *   <li><b>/upload/resume</b>: Resumes a paused upload.</li>
- *   <li><b>/upload/cancel</b>: Cancels an ongoing upload.</li>
+ *   <li><b>/upload</b>: Handles multipart file uploads and returns the session ID.</li>
+ *   <li><b>/upload/stream</b>: Handles file uploads sent as the raw request body.</li>
+ *   <li><b>/upload/queue</b>: Reports the uploads waiting for admission, in admission order.</li>
+ *   <li><b>/upload/{id}</b>: Reports the status and progress of an upload.</li>
+ *   <li><b>/upload/{id}/pause</b>: Pauses an ongoing upload.</li>
+ *   <li><b>/upload/{id}/resume</b>: Resumes a paused upload.</li>
+ *   <li><b>/upload/{id}/cancel</b>: Cancels an ongoing upload.</li>
+ *   <li><b>/upload/{id}/priority</b>: Changes the priority and rate limit of an upload while it runs.</li>
  * </ul>
  */
 @RestController
 @RequestMapping("/upload")
 public class FileUploadController {
 
-    private final FileUploadService fileUploadService;
+    private static final Logger logger = Logger.getLogger(FileUploadController.class.getName());
 
-    private final AtomicBoolean isPaused = new AtomicBoolean(false); // Shared state for pause/resume
-    private final AtomicBoolean isCancelled = new AtomicBoolean(false); // Shared state for cancel
+    /**
+     * Seconds a client is asked to wait before retrying an upload that was not admitted.
+     */
+    private static final String RETRY_AFTER_SECONDS = "5";
 
     /**
-     * Constructor-based dependency injection for the FileUploadService.
+     * Header carrying the session ID chosen by the client for its upload.
+     */
+    private static final String SESSION_HEADER = "X-Upload-Session";
+
+    private final FileUploadService fileUploadService;
+    private final UploadQueue uploadQueue;
+
+    /**
+     * Constructor-based dependency injection for the FileUploadService and the UploadQueue.
      *
      * @param fileUploadService The service that handles file uploads.
+     * @param uploadQueue The queue admitting the uploads.
      */
     @Autowired
-    public FileUploadController(FileUploadService fileUploadService) {
+    public FileUploadController(FileUploadService fileUploadService, UploadQueue uploadQueue) {
         this.fileUploadService = fileUploadService;
+        this.uploadQueue = uploadQueue;
     }
 
     /**
      * Endpoint to upload a file.
      *
-     * <p>This method converts the uploaded file into a temporary file and starts
-     * the upload process through the FileUploadService.</p>
+     * <p>The servlet container has already received the part, in memory or spooled to a temporary file
+     * depending on its size. This method streams it from there into the chunk pipeline through the
+     * FileUploadService, without another copy, and responds once the file has been stored. Large files are
+     * better sent to {@code /upload/stream}, which is not staged at all.</p>
      *
      * @param multipartFile The file uploaded by the client.
-     * @return ResponseEntity with a success or error message.
+     * @param sessionId The session ID chosen by the client, or null to generate one.
+     * @param fingerprint A fingerprint of the file content computed by the client, or null.
+     * @return ResponseEntity with the session of the upload, or an error message.
      */
-    @PostMapping
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile multipartFile) {
-        try {
-            // Convert MultipartFile to File
-            File file = convertToFile(multipartFile);
-
-            // Reset pause and cancel states
-            isPaused.set(false);
-            isCancelled.set(false);
-
-            // Call service to handle the file upload logic
-            fileUploadService.uploadFile(file,
-                    progress -> System.out.println("Upload progress: " + (progress * 100) + "%"),
-                    status -> System.out.println("Upload status: " + status),
-                    isPaused::get, // Provide pause state as a supplier
-                    isCancelled::get // Provide cancel state as a supplier
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile multipartFile,
+                                        @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+                                        @RequestParam(value = "fingerprint", required = false) String fingerprint) {
+        try (InputStream input = multipartFile.getInputStream()) {
+            // Call service to handle the file upload logic in its own session
+            UploadSession session = fileUploadService.uploadStream(sessionId, multipartFile.getOriginalFilename(),
+                    multipartFile.getSize(),
+                    fingerprint,
+                    input,
+                    status -> logger.info("Upload status of " + multipartFile.getOriginalFilename() + ": " + status)
             );
 
-            // Return success response
-            return ResponseEntity.ok("File upload started successfully.");
+            // Return the session so the client can inspect its upload
+            return respond(session);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(429).header("Retry-After", RETRY_AFTER_SECONDS).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
         } catch (Exception e) {
-            // Handle exceptions and return error response
-            e.printStackTrace();
+            logger.log(Level.SEVERE, "Upload of " + multipartFile.getOriginalFilename() + " failed", e);
             return ResponseEntity.status(500).body("File upload failed: " + e.getMessage());
         }
     }
 
     /**
-     * Utility method to convert a MultipartFile to a File.
+     * Endpoint to upload a file sent as the raw request body.
+     *
+     * <p>The body is read incrementally and cut into chunks as it arrives, so neither the servlet
+     * container nor the application stages the file on disk. The memory used is bounded by the
+     * chunks in flight, whatever the size of the file.</p>
+     *
+     * <p>The response is only sent once the body has been consumed. To pause or cancel the upload while
+     * sending it, the client sends a session ID of its own (e.g. a UUID) in the {@code X-Upload-Session}
+     * header and uses it with the other endpoints meanwhile.</p>
      *
-     * <p>The converted file is stored temporarily on the server's filesystem.</p>
+     * <p>An interrupted upload is only resumed when the client sends the same {@code fingerprint} of the
+     * file content again; without one, every request starts a fresh upload.</p>
      *
-     * @param multipartFile The MultipartFile uploaded by the client.
-     * @return The converted File object.
-     * @throws IOException If an error occurs during file conversion.
+     * @param fileName The name of the file.
+     * @param contentLength The size of the file in bytes.
+     * @param sessionId The session ID chosen by the client, or null to generate one.
+     * @param fingerprint A fingerprint of the file content computed by the client, or null.
+     * @param input The request body.
+     * @return ResponseEntity with the session of the upload, 400 for a malformed session ID, 409 for a
+     *         session ID in use, or an error message.
      */
-    private File convertToFile(MultipartFile multipartFile) throws IOException {
-        File tempFile = File.createTempFile("upload-", multipartFile.getOriginalFilename());
-        multipartFile.transferTo(tempFile);
-        return tempFile;
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> uploadStream(@RequestParam("fileName") String fileName,
+                                          @RequestHeader("Content-Length") long contentLength,
+                                          @RequestHeader(value = SESSION_HEADER, required = false) String sessionId,
+                                          @RequestParam(value = "fingerprint", required = false) String fingerprint,
+                                          InputStream input) {
+        if (contentLength < 0) {
+            return ResponseEntity.status(411).body("Content-Length is required for streamed uploads.");
+        }
+        try {
+            return respond(fileUploadService.uploadStream(sessionId, fileName, contentLength, fingerprint, input,
+                    status -> logger.info("Upload status of " + fileName + ": " + status)));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(429).header("Retry-After", RETRY_AFTER_SECONDS).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint to report the state of the upload queue.
+     *
+     * @return ResponseEntity with the queue limits and the waiting uploads, in the order they will be admitted.
+     */
+    @GetMapping("/queue")
+    public ResponseEntity<?> getQueue() {
+        List<Map<String, Object>> waiting = new ArrayList<>();
+        for (UploadQueue.Entry entry : uploadQueue.findWaiting()) {
+            Map<String, Object> upload = describe(entry.getSession());
+            upload.put("position", waiting.size() + 1);
+            upload.put("remainingBytes", entry.getRemainingBytes());
+            waiting.add(upload);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("policy", uploadQueue.getPolicy());
+        body.put("maxActive", uploadQueue.getMaxActive());
+        body.put("active", uploadQueue.getActiveCount());
+        body.put("capacity", uploadQueue.getCapacity());
+        body.put("waiting", waiting);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Endpoint to report the status and progress of an upload.
+     *
+     * @param id The session ID of the upload.
+     * @return ResponseEntity with the session state, or 404 if the session is unknown.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getUpload(@PathVariable("id") String id) {
+        return fileUploadService.findSession(id)
+                .<ResponseEntity<?>>map(session -> ResponseEntity.ok(describe(session)))
+                .orElseGet(() -> ResponseEntity.status(404).body("Upload session not found: " + id));
     }
 
     /**
      * Endpoint to pause an ongoing upload.
      *
-     * @return ResponseEntity with a success message.
+     * @param id The session ID of the upload.
+     * @return ResponseEntity with a success message, or 404 if the session is unknown.
      */
-    @PostMapping("/pause")
-    public ResponseEntity<String> pauseUpload() {
-        isPaused.set(true);
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<String> pauseUpload(@PathVariable("id") String id) {
+        if (!fileUploadService.pauseUpload(id)) {
+            return ResponseEntity.status(404).body("Upload session not found: " + id);
+        }
         return ResponseEntity.ok("Upload paused successfully.");
     }
 
     /**
      * Endpoint to resume a paused upload.
      *
-     * @return ResponseEntity with a success message.
+     * @param id The session ID of the upload.
+     * @return ResponseEntity with a success message, or 404 if the session is unknown.
      */
-    @PostMapping("/resume")
-    public ResponseEntity<String> resumeUpload() {
-        isPaused.set(false);
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<String> resumeUpload(@PathVariable("id") String id) {
+        if (!fileUploadService.resumeUpload(id)) {
+            return ResponseEntity.status(404).body("Upload session not found: " + id);
+        }
         return ResponseEntity.ok("Upload resumed successfully.");
     }
 
     /**
      * Endpoint to cancel an ongoing upload.
      *
-     * <p>This method sets the cancellation flag, which interrupts the upload thread
-     * and cleans up any ongoing upload process.</p>
+     * <p>This method cancels the session, which stops the upload and interrupts the chunk
+     * I/O in flight.</p>
      *
-     * @return ResponseEntity with a success message.
+     * @param id The session ID of the upload.
+     * @return ResponseEntity with a success message, or 404 if the session is unknown.
      */
-    @PostMapping("/cancel")
-    public ResponseEntity<String> cancelUpload() {
-        isCancelled.set(true);
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<String> cancelUpload(@PathVariable("id") String id) {
+        if (!fileUploadService.cancelUpload(id, false)) {
+            return ResponseEntity.status(404).body("Upload session not found: " + id);
+        }
         return ResponseEntity.ok("Upload cancelled successfully.");
     }
+
+    /**
+     * Endpoint to change the bandwidth share of an upload.
+     *
+     * <p>The priority weighs the upload in the fair share of the bandwidth, and the rate limit caps it in bytes
+     * per second (0 removes the cap). Both take effect with the next chunk of the upload.</p>
+     *
+     * @param id The session ID of the upload.
+     * @param priority The new priority, or null to keep the current one.
+     * @param rateLimit The new rate limit in bytes per second, or null to keep the current one.
+     * @return ResponseEntity with the session state, 400 if a value is out of range, or 404 if the session is unknown.
+     */
+    @PostMapping("/{id}/priority")
+    public ResponseEntity<?> setPriority(@PathVariable("id") String id,
+                                         @RequestParam(value = "priority", required = false) Integer priority,
+                                         @RequestParam(value = "rateLimit", required = false) Long rateLimit) {
+        if (priority == null && rateLimit == null) {
+            return ResponseEntity.status(400).body("Either priority or rateLimit is required.");
+        }
+        try {
+            if (priority != null && !fileUploadService.setPriority(id, priority)
+                    || rateLimit != null && !fileUploadService.setRateLimit(id, rateLimit)) {
+                return ResponseEntity.status(404).body("Upload session not found: " + id);
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        }
+        return getUpload(id);
+    }
+
+    /**
+     * Builds the response to a finished upload request.
+     *
+     * @param session The upload session.
+     * @return ResponseEntity with the session state, 503 if the upload was not admitted in time, or 500 if it failed.
+     */
+    private ResponseEntity<?> respond(UploadSession session) {
+        if (FileUploadService.QUEUE_TIMEOUT_STATUS.equals(session.getStatus())) {
+            return ResponseEntity.status(503).header("Retry-After", RETRY_AFTER_SECONDS).body(session.getStatus());
+        }
+        if (session.getStatus().startsWith("Upload Failed")) {
+            return ResponseEntity.status(500).body(session.getStatus());
+        }
+        return ResponseEntity.ok(describe(session));
+    }
+
+    /**
+     * Builds the response body describing an upload session.
+     *
+     * @param session The upload session.
+     * @return A map with the session ID, status, progress, priority, and rate limit.
+     */
+    private Map<String, Object> describe(UploadSession session) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", session.getId());
+        body.put("fileName", session.getFileName());
+        body.put("status", session.getStatus());
+        body.put("progress", session.getProgress());
+        body.put("paused", session.isPaused());
+        body.put("priority", session.getFlow().getPriority());
+        body.put("rateLimit", session.getFlow().getRateLimit());
+        return body;
+    }
 }
@@ -25,6 +25,7 @@ import java.time.LocalDateTime;
  *   <li>Chunk-level status management (e.g., Pending, Completed).</li>
  *   <li>Granular progress tracking for each chunk.</li>
  *   <li>Timestamps for creation and updates.</li>
+ *   <li>Offset, length, and SHA-256 digest of content-defined chunks, which form the deduplication index.</li>
  * </ul>
  */
 @Entity
@@ -77,6 +78,24 @@ public class ChunkMetadata {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    /**
+     * Offset of the chunk in the file, or null for fixed-size chunks whose offset follows from their number.
+     */
+    @Column(name = "chunk_offset")
+    private Long chunkOffset;
+
+    /**
+     * Length of the chunk in bytes, or null for fixed-size chunks.
+     */
+    @Column(name = "chunk_length")
+    private Integer chunkLength;
+
+    /**
+     * Hex-encoded SHA-256 digest of the chunk contents, or null if the chunk has not been hashed.
+     */
+    @Column(name = "digest", length = 64)
+    private String digest;
+
     /**
      * Default constructor for JPA.
      */
@@ -205,6 +224,51 @@ public class ChunkMetadata {
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * @return The offset of the chunk in the file, or null for fixed-size chunks.
+     */
+    public Long getChunkOffset() {
+        return chunkOffset;
+    }
+
+    /**
+     * Sets the offset of the chunk in the file.
+     * @param chunkOffset The offset to set.
+     */
+    public void setChunkOffset(Long chunkOffset) {
+        this.chunkOffset = chunkOffset;
+    }
+
+    /**
+     * @return The length of the chunk in bytes, or null for fixed-size chunks.
+     */
+    public Integer getChunkLength() {
+        return chunkLength;
+    }
+
+    /**
+     * Sets the length of the chunk in bytes.
+     * @param chunkLength The length to set.
+     */
+    public void setChunkLength(Integer chunkLength) {
+        this.chunkLength = chunkLength;
+    }
+
+    /**
+     * @return The hex-encoded SHA-256 digest of the chunk, or null if the chunk has not been hashed.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Sets the hex-encoded SHA-256 digest of the chunk.
+     * @param digest The digest to set.
+     */
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
     /**
      * Updates the {@code updatedAt} timestamp before persisting or updating the entity.
      */
@@ -229,6 +293,9 @@ public class ChunkMetadata {
                 ", createdAt=" + createdAt +
                 ", progress=" + progress +
                 ", updatedAt=" + updatedAt +
+                ", chunkOffset=" + chunkOffset +
+                ", chunkLength=" + chunkLength +
+                ", digest='" + digest + '\'' +
                 '}';
     }
 }
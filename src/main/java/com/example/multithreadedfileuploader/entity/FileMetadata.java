@@ -31,11 +31,21 @@ import java.time.LocalDateTime;
  * This entity maps to the "file_metadata" table in the database. Key columns include:
  * <ul>
  *     <li><b>file_name:</b> Name of the file being uploaded.</li>
+ *     <li><b>fingerprint:</b> Unique fingerprint of the uploaded content, the key under which uploads are resumed.</li>
  *     <li><b>file_size:</b> Size of the file in bytes.</li>
+ *     <li><b>chunk_size:</b> Size of the chunks of the file in bytes, chosen when the upload is created.</li>
  *     <li><b>total_chunks:</b> Total number of chunks into which the file is split.</li>
  *     <li><b>uploaded_chunks:</b> Number of chunks successfully uploaded so far.</li>
  *     <li><b>status:</b> Current status of the upload (e.g., "Pending", "Uploading", "Completed").</li>
  *     <li><b>created_at:</b> Timestamp for when the upload process began.</li>
+ *     <li><b>chunk_bitmap:</b> Completed chunks as a compact bitmap, used when chunk state is kept in bitmap mode.</li>
+ *     <li><b>chunk_digests:</b> SHA-256 digests of the completed chunks, packed in chunk order, as earlier recorded in bitmap mode.</li>
+ *     <li><b>merkle_root:</b> Hex-encoded Merkle-tree digest over the chunk digests, set once the upload completes.</li>
+ *     <li><b>source_path:</b> Absolute path of the local source file, so a queued upload can be queued again after a restart.</li>
+ *     <li><b>batch_id:</b> The {@link com.example.multithreadedfileuploader.entity.UploadBatch} the file was uploaded with, or null.</li>
+ *     <li><b>pack_id:</b> The pack holding the bytes of a small file uploaded inside a pack, or null. A packed file has
+ *     no chunks of its own.</li>
+ *     <li><b>pack_offset:</b> Offset of the bytes of a packed file inside its pack.</li>
  * </ul>
  * </p>
  *
@@ -63,6 +73,13 @@ public class FileMetadata {
     @Size(max = 255)
     private String fileName;
 
+    /**
+     * The fingerprint identifying the uploaded content, under which an interrupted upload is resumed.
+     */
+    @Column(name = "fingerprint", nullable = false, unique = true, length = 64)
+    @NotNull
+    private String fingerprint;
+
     /**
      * The size of the file in bytes.
      */
@@ -70,6 +87,13 @@ public class FileMetadata {
     @NotNull
     private Long fileSize;
 
+    /**
+     * The size of the chunks of the file in bytes. Only the last chunk may be shorter.
+     */
+    @Column(name = "chunk_size", nullable = false)
+    @NotNull
+    private Long chunkSize;
+
     /**
      * The total number of chunks into which the file is split.
      */
@@ -95,6 +119,51 @@ public class FileMetadata {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    /**
+     * The completed chunks encoded as a {@code ChunkBitmap}, or null when chunk state is kept in
+     * {@code chunk_metadata} rows. Only written by {@code FileMetadataRepository.updateChunkBitmap}, so saving
+     * an entity loaded before the last flush never rolls it back.
+     */
+    @Column(name = "chunk_bitmap", insertable = false, updatable = false)
+    private byte[] chunkBitmap;
+
+    /**
+     * The SHA-256 digests of the chunks, 32 bytes per chunk in chunk order, as recorded in bitmap mode before
+     * digests moved to one {@code chunk_digest} row per chunk. Only read, for files recorded back then.
+     */
+    @Column(name = "chunk_digests", insertable = false, updatable = false)
+    private byte[] chunkDigests;
+
+    /**
+     * The hex-encoded Merkle root over the chunk digests, or null until the upload has completed.
+     */
+    @Column(name = "merkle_root", length = 64)
+    private String merkleRoot;
+
+    /**
+     * The absolute path of the local file being uploaded, or null for uploads streamed by a client.
+     */
+    @Column(name = "source_path", length = 4096)
+    private String sourcePath;
+
+    /**
+     * The ID of the {@link UploadBatch} the file was uploaded with, or null for a single upload.
+     */
+    @Column(name = "batch_id")
+    private Long batchId;
+
+    /**
+     * The ID of the pack whose upload holds the bytes of this file, or null if the file was uploaded on its own.
+     */
+    @Column(name = "pack_id")
+    private Long packId;
+
+    /**
+     * The offset of the bytes of this file inside its pack.
+     */
+    @Column(name = "pack_offset")
+    private Long packOffset;
+
     /**
      * Default constructor required by JPA.
      */
@@ -136,6 +205,24 @@ public class FileMetadata {
         this.fileName = fileName;
     }
 
+    /**
+     * Gets the fingerprint identifying the uploaded content.
+     *
+     * @return the hex-encoded fingerprint.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Sets the fingerprint identifying the uploaded content.
+     *
+     * @param fingerprint the hex-encoded fingerprint.
+     */
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
     /**
      * Gets the size of the file in bytes.
      *
@@ -154,6 +241,24 @@ public class FileMetadata {
         this.fileSize = fileSize;
     }
 
+    /**
+     * Gets the size of the chunks of the file in bytes.
+     *
+     * @return the chunk size.
+     */
+    public Long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the size of the chunks of the file in bytes.
+     *
+     * @param chunkSize the chunk size.
+     */
+    public void setChunkSize(Long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
     /**
      * Gets the total number of chunks into which the file is split.
      *
@@ -225,4 +330,130 @@ public class FileMetadata {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    /**
+     * Gets the completed chunks encoded as a bitmap.
+     *
+     * @return the encoded chunk bitmap, or null if none is stored.
+     */
+    public byte[] getChunkBitmap() {
+        return chunkBitmap;
+    }
+
+    /**
+     * Sets the completed chunks encoded as a bitmap.
+     *
+     * @param chunkBitmap the encoded chunk bitmap.
+     */
+    public void setChunkBitmap(byte[] chunkBitmap) {
+        this.chunkBitmap = chunkBitmap;
+    }
+
+    /**
+     * Gets the packed chunk digests.
+     *
+     * @return the packed chunk digests, or null if none are stored.
+     */
+    public byte[] getChunkDigests() {
+        return chunkDigests;
+    }
+
+    /**
+     * Sets the packed chunk digests.
+     *
+     * @param chunkDigests the packed chunk digests.
+     */
+    public void setChunkDigests(byte[] chunkDigests) {
+        this.chunkDigests = chunkDigests;
+    }
+
+    /**
+     * Gets the Merkle root of the file.
+     *
+     * @return the hex-encoded Merkle root, or null if the upload has not completed.
+     */
+    public String getMerkleRoot() {
+        return merkleRoot;
+    }
+
+    /**
+     * Sets the Merkle root of the file.
+     *
+     * @param merkleRoot the hex-encoded Merkle root.
+     */
+    public void setMerkleRoot(String merkleRoot) {
+        this.merkleRoot = merkleRoot;
+    }
+
+    /**
+     * Gets the path of the source file.
+     *
+     * @return the absolute path of the local file being uploaded, or null for a streamed upload.
+     */
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    /**
+     * Sets the path of the source file.
+     *
+     * @param sourcePath the absolute path of the local file being uploaded.
+     */
+    public void setSourcePath(String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    /**
+     * Gets the batch of the file.
+     *
+     * @return the ID of the batch the file was uploaded with, or null.
+     */
+    public Long getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * Sets the batch of the file.
+     *
+     * @param batchId the ID of the batch the file is uploaded with.
+     */
+    public void setBatchId(Long batchId) {
+        this.batchId = batchId;
+    }
+
+    /**
+     * Gets the pack holding the bytes of the file.
+     *
+     * @return the ID of the pack's file metadata, or null if the file was uploaded on its own.
+     */
+    public Long getPackId() {
+        return packId;
+    }
+
+    /**
+     * Sets the pack holding the bytes of the file.
+     *
+     * @param packId the ID of the pack's file metadata.
+     */
+    public void setPackId(Long packId) {
+        this.packId = packId;
+    }
+
+    /**
+     * Gets the offset of the file inside its pack.
+     *
+     * @return the offset in bytes, or null if the file was uploaded on its own.
+     */
+    public Long getPackOffset() {
+        return packOffset;
+    }
+
+    /**
+     * Sets the offset of the file inside its pack.
+     *
+     * @param packOffset the offset in bytes.
+     */
+    public void setPackOffset(Long packOffset) {
+        this.packOffset = packOffset;
+    }
 }
@@ -0,0 +1,270 @@
+package com.example.multithreadedfileuploader.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a batch of files uploaded together, e.g. all files of a directory.
+ * <p>
+ * This class is an entity managed by JPA and mapped to the "upload_batch" table in the database.
+ * It is the parent record of the {@link FileMetadata} rows of its files, which refer to it through
+ * their {@code batch_id} column.
+ * </p>
+ *
+ * <h2>Purpose</h2>
+ * <p>
+ * A batch can hold hundreds of thousands of files. Its totals are aggregated while the files are
+ * discovered and uploaded, and stored on this record, so the progress of a batch is read without
+ * counting its files.
+ * </p>
+ *
+ * <h2>Database Table</h2>
+ * <p>
+ * This entity maps to the "upload_batch" table in the database. Key columns include:
+ * <ul>
+ *     <li><b>name:</b> Name of the batch, the absolute path of the uploaded directory.</li>
+ *     <li><b>status:</b> Current status of the batch ("Scanning", "Uploading", "Completed", "Failed", "Cancelled",
+ *     or "Interrupted" if the application stopped before the batch finished).</li>
+ *     <li><b>total_files:</b> Number of files discovered in the batch.</li>
+ *     <li><b>total_bytes:</b> Total size of the discovered files in bytes.</li>
+ *     <li><b>completed_files:</b> Number of files uploaded successfully.</li>
+ *     <li><b>failed_files:</b> Number of files whose upload failed.</li>
+ *     <li><b>created_at:</b> Timestamp for when the batch was started.</li>
+ *     <li><b>finished_at:</b> Timestamp for when the last file of the batch finished, or null.</li>
+ * </ul>
+ * </p>
+ *
+ * <h2>Important Methods</h2>
+ * <ul>
+ *     <li><b>Getters and Setters:</b> Used to access and modify the batch properties.</li>
+ * </ul>
+ */
+@Entity
+@Table(name = "upload_batch")
+public class UploadBatch {
+
+    /**
+     * The unique identifier for this batch.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * The name of the batch, the absolute path of the uploaded directory.
+     */
+    @Column(name = "name", nullable = false, length = 4096)
+    @NotNull
+    private String name;
+
+    /**
+     * The current status of the batch (e.g., "Scanning", "Uploading", "Completed").
+     */
+    @Column(name = "status", nullable = false)
+    private String status = "Scanning";
+
+    /**
+     * The number of files discovered in the batch.
+     */
+    @Column(name = "total_files", nullable = false)
+    private Long totalFiles = 0L;
+
+    /**
+     * The total size of the discovered files in bytes.
+     */
+    @Column(name = "total_bytes", nullable = false)
+    private Long totalBytes = 0L;
+
+    /**
+     * The number of files uploaded successfully.
+     */
+    @Column(name = "completed_files", nullable = false)
+    private Long completedFiles = 0L;
+
+    /**
+     * The number of files whose upload failed.
+     */
+    @Column(name = "failed_files", nullable = false)
+    private Long failedFiles = 0L;
+
+    /**
+     * The timestamp for when the batch was started.
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    /**
+     * The timestamp for when the last file of the batch finished, or null while the batch runs.
+     */
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    /**
+     * Default constructor required by JPA.
+     */
+    public UploadBatch() {}
+
+    /**
+     * Gets the unique identifier for this batch.
+     *
+     * @return the unique identifier.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the unique identifier for this batch.
+     *
+     * @param id the unique identifier.
+     */
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the name of the batch.
+     *
+     * @return the absolute path of the uploaded directory.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the batch.
+     *
+     * @param name the absolute path of the uploaded directory.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the status of the batch.
+     *
+     * @return the batch status.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the status of the batch.
+     *
+     * @param status the batch status.
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * Gets the number of files discovered in the batch.
+     *
+     * @return the number of files.
+     */
+    public Long getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * Sets the number of files discovered in the batch.
+     *
+     * @param totalFiles the number of files.
+     */
+    public void setTotalFiles(Long totalFiles) {
+        this.totalFiles = totalFiles;
+    }
+
+    /**
+     * Gets the total size of the discovered files.
+     *
+     * @return the total size in bytes.
+     */
+    public Long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Sets the total size of the discovered files.
+     *
+     * @param totalBytes the total size in bytes.
+     */
+    public void setTotalBytes(Long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * Gets the number of files uploaded successfully.
+     *
+     * @return the number of completed files.
+     */
+    public Long getCompletedFiles() {
+        return completedFiles;
+    }
+
+    /**
+     * Sets the number of files uploaded successfully.
+     *
+     * @param completedFiles the number of completed files.
+     */
+    public void setCompletedFiles(Long completedFiles) {
+        this.completedFiles = completedFiles;
+    }
+
+    /**
+     * Gets the number of files whose upload failed.
+     *
+     * @return the number of failed files.
+     */
+    public Long getFailedFiles() {
+        return failedFiles;
+    }
+
+    /**
+     * Sets the number of files whose upload failed.
+     *
+     * @param failedFiles the number of failed files.
+     */
+    public void setFailedFiles(Long failedFiles) {
+        this.failedFiles = failedFiles;
+    }
+
+    /**
+     * Gets the timestamp when the batch was started.
+     *
+     * @return the creation timestamp.
+     */
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Sets the timestamp when the batch was started.
+     *
+     * @param createdAt the creation timestamp.
+     */
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Gets the timestamp when the last file of the batch finished.
+     *
+     * @return the finish timestamp, or null while the batch runs.
+     */
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Sets the timestamp when the last file of the batch finished.
+     *
+     * @param finishedAt the finish timestamp.
+     */
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.multithreadedfileuploader.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The ChunkMetadataBatchOperations interface declares the multi-row chunk updates of the {@link ChunkMetadataRepository}.
+ *
+ * <h2>Purpose</h2>
+ * <p>
+ * These statements run once per batch of chunks and dominate the database load of an upload, so they are written
+ * for each metadata store instead of going through JPQL. The repository inherits them as a Spring Data fragment,
+ * implemented by {@link ChunkMetadataBatchOperationsImpl}.
+ * </p>
+ *
+ * <h2>Important Methods</h2>
+ * <ul>
+ *     <li><b>insertPendingChunks(Long fileId, int totalChunks):</b> Bulk-creates the pending chunks of a file.</li>
+ *     <li><b>updateCompletedChunks(...):</b> Marks a batch of chunks of a file as completed, with their digests.</li>
+ *     <li><b>updateChunkLayout(...):</b> Stores the offsets, lengths, and digests of a batch of chunks.</li>
+ * </ul>
+ */
+public interface ChunkMetadataBatchOperations {
+
+    /**
+     * Creates the pending chunks {@code 0} to {@code totalChunks - 1} of a file in a single statement. Chunks that
+     * already exist are left as they are, so concurrent calls for the same file are safe.
+     *
+     * @param fileId      The ID of the file the chunks belong to.
+     * @param totalChunks The number of chunks to create.
+     * @return The number of created chunks, 0 if they all existed.
+     */
+    int insertPendingChunks(Long fileId, int totalChunks);
+
+    /**
+     * Marks several chunks of a file as completed and stores their digests.
+     *
+     * @param fileId       The ID of the file the chunks belong to.
+     * @param chunkNumbers The numbers of the completed chunks.
+     * @param digests      The hex-encoded digest of each chunk, in the order of {@code chunkNumbers}.
+     * @param updatedAt    The update timestamp to store.
+     * @return The number of updated chunks.
+     */
+    int updateCompletedChunks(Long fileId, List<Integer> chunkNumbers, List<String> digests, LocalDateTime updatedAt);
+
+    /**
+     * Stores the offsets, lengths, and digests of several chunks of a file.
+     *
+     * @param fileId       The ID of the file the chunks belong to.
+     * @param chunkNumbers The numbers of the chunks.
+     * @param offsets      The offset of each chunk in the file.
+     * @param lengths      The length of each chunk in bytes.
+     * @param digests      The hex-encoded digest of each chunk.
+     * @return The number of updated chunks.
+     */
+    int updateChunkLayout(Long fileId, List<Integer> chunkNumbers, List<Long> offsets, List<Integer> lengths,
+                          List<String> digests);
+}
@@ -0,0 +1,125 @@
+package com.example.multithreadedfileuploader.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The ChunkMetadataBatchOperationsImpl class implements the multi-row chunk updates for the configured metadata store.
+ *
+ * <h2>Metadata Stores</h2>
+ * <ul>
+ *     <li><b>postgres:</b> One statement per batch. Rows are generated with {@code generate_series}, and the values
+ *     of a batch are passed as array literals (e.g. {@code {0,1,2}}) and unnested into rows.</li>
+ *     <li><b>h2:</b> Rows are generated with {@code SYSTEM_RANGE}, and a batch of updates is sent as one JDBC batch,
+ *     which costs no network round-trip in an embedded database.</li>
+ * </ul>
+ *
+ * <p>Pending chunks are created idempotently ({@code ON CONFLICT DO NOTHING} on postgres, {@code MERGE} on h2), so
+ * two uploads of the same file starting together both succeed instead of one failing on the unique key.</p>
+ */
+public class ChunkMetadataBatchOperationsImpl implements ChunkMetadataBatchOperations {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean postgres;
+
+    /**
+     * Creates the operations for the configured metadata store.
+     *
+     * @param dataSource The data source of the metadata store.
+     * @param store      The metadata store, {@code postgres} or {@code h2}.
+     */
+    @Autowired
+    public ChunkMetadataBatchOperationsImpl(DataSource dataSource,
+                                            @Value("${uploader.metadata.store:postgres}") String store) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.postgres = "postgres".equals(store);
+    }
+
+    @Override
+    @Transactional
+    public int insertPendingChunks(Long fileId, int totalChunks) {
+        if (postgres) {
+            return jdbcTemplate.update("INSERT INTO chunk_metadata (file_id, chunk_number, status, progress, created_at, updated_at) " +
+                    "SELECT ?, gs, 'Pending', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                    "FROM generate_series(0, ? - 1) AS gs " +
+                    "ON CONFLICT (file_id, chunk_number) DO NOTHING", fileId, totalChunks);
+        }
+        return jdbcTemplate.update("MERGE INTO chunk_metadata c " +
+                "USING (SELECT CAST(? AS BIGINT) AS file_id, CAST(x AS INTEGER) AS chunk_number FROM SYSTEM_RANGE(0, ?)) s " +
+                "ON c.file_id = s.file_id AND c.chunk_number = s.chunk_number " +
+                "WHEN NOT MATCHED THEN INSERT (file_id, chunk_number, status, progress, created_at, updated_at) " +
+                "VALUES (s.file_id, s.chunk_number, 'Pending', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)",
+                fileId, totalChunks - 1);
+    }
+
+    @Override
+    @Transactional
+    public int updateCompletedChunks(Long fileId, List<Integer> chunkNumbers, List<String> digests,
+                                     LocalDateTime updatedAt) {
+        if (postgres) {
+            return jdbcTemplate.update("UPDATE chunk_metadata c SET status = 'Completed', progress = 100, updated_at = ?, " +
+                    "digest = t.digest " +
+                    "FROM unnest(CAST(? AS integer[]), CAST(? AS varchar[])) AS t(chunk_number, digest) " +
+                    "WHERE c.file_id = ? AND c.chunk_number = t.chunk_number",
+                    Timestamp.valueOf(updatedAt), arrayLiteral(chunkNumbers), arrayLiteral(digests), fileId);
+        }
+        List<Object[]> rows = new ArrayList<>(chunkNumbers.size());
+        for (int i = 0; i < chunkNumbers.size(); i++) {
+            rows.add(new Object[]{Timestamp.valueOf(updatedAt), digests.get(i), fileId, chunkNumbers.get(i)});
+        }
+        return sum(jdbcTemplate.batchUpdate("UPDATE chunk_metadata SET status = 'Completed', progress = 100, " +
+                "updated_at = ?, digest = ? WHERE file_id = ? AND chunk_number = ?", rows));
+    }
+
+    @Override
+    @Transactional
+    public int updateChunkLayout(Long fileId, List<Integer> chunkNumbers, List<Long> offsets, List<Integer> lengths,
+                                 List<String> digests) {
+        if (postgres) {
+            return jdbcTemplate.update("UPDATE chunk_metadata c SET chunk_offset = t.chunk_offset, " +
+                    "chunk_length = t.chunk_length, digest = t.digest " +
+                    "FROM unnest(CAST(? AS integer[]), CAST(? AS bigint[]), CAST(? AS integer[]), CAST(? AS varchar[])) " +
+                    "AS t(chunk_number, chunk_offset, chunk_length, digest) " +
+                    "WHERE c.file_id = ? AND c.chunk_number = t.chunk_number",
+                    arrayLiteral(chunkNumbers), arrayLiteral(offsets), arrayLiteral(lengths), arrayLiteral(digests),
+                    fileId);
+        }
+        List<Object[]> rows = new ArrayList<>(chunkNumbers.size());
+        for (int i = 0; i < chunkNumbers.size(); i++) {
+            rows.add(new Object[]{offsets.get(i), lengths.get(i), digests.get(i), fileId, chunkNumbers.get(i)});
+        }
+        return sum(jdbcTemplate.batchUpdate("UPDATE chunk_metadata SET chunk_offset = ?, chunk_length = ?, digest = ? " +
+                "WHERE file_id = ? AND chunk_number = ?", rows));
+    }
+
+    /**
+     * Encodes values as a PostgreSQL array literal. Only used for numbers and hex digests, which need no quoting.
+     */
+    private static String arrayLiteral(List<?> values) {
+        StringJoiner literal = new StringJoiner(",", "{", "}");
+        for (Object value : values) {
+            literal.add(String.valueOf(value));
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Adds up the update counts of a JDBC batch.
+     */
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+}
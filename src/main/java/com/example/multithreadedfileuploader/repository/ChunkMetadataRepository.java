@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,6 +26,9 @@ import java.util.Optional;
  *     <li>Retrieve all chunks associated with a specific file ID.</li>
  *     <li>Find a specific chunk using the combination of file ID and chunk number.</li>
  *     <li>Delete all chunks associated with a specific file ID.</li>
+ *     <li>Mark many chunks of a file as completed, with their digests, in a single statement.</li>
+ *     <li>Create all pending chunks of a new file in a single statement.</li>
+ *     <li>Store the layout and digests of content-defined chunks and look up completed chunks by digest.</li>
  * </ul>
  *
  * <h2>Important Methods</h2>
@@ -32,16 +36,21 @@ import java.util.Optional;
  *     <li><b>deleteByFileId(Long fileId):</b> Deletes all chunks related to a specific file ID from the database.</li>
  *     <li><b>findByFileId(Long fileId):</b> Retrieves a list of chunks associated with the given file ID.</li>
  *     <li><b>findByFileIdAndChunkNumber(Long fileId, int chunkNumber):</b> Finds a specific chunk based on its file ID and chunk number.</li>
+ *     <li><b>findPendingChunkNumbersByFileId(Long fileId):</b> Lists the numbers of the pending chunks of a file.</li>
+ *     <li><b>existsByFileId(Long fileId):</b> Checks whether chunks exist for a file without loading them.</li>
+ *     <li><b>findCompletedDigestsByFileId(Long fileId):</b> Lists the digests of the completed chunks of a file.</li>
+ *     <li><b>findCompletedChunksByDigests(...):</b> Finds stored chunks with matching digests for deduplication.</li>
+ *     <li>The multi-row updates of the hot path are inherited from {@link ChunkMetadataBatchOperations}.</li>
  * </ul>
  *
  * <h2>Annotations</h2>
  * <ul>
- *     <li><b>@Transactional:</b> Ensures the delete operation is managed within a transaction.</li>
+ *     <li><b>@Transactional:</b> Ensures the delete and update operations are managed within a transaction.</li>
  *     <li><b>@Modifying:</b> Indicates that a method modifies the database state.</li>
- *     <li><b>@Query:</b> Defines a custom query for the delete operation.</li>
+ *     <li><b>@Query:</b> Defines custom queries for the delete and update operations.</li>
  * </ul>
  */
-public interface ChunkMetadataRepository extends JpaRepository<ChunkMetadata, Long> {
+public interface ChunkMetadataRepository extends JpaRepository<ChunkMetadata, Long>, ChunkMetadataBatchOperations {
 
     /**
      * Deletes all chunks associated with a specific file ID.
@@ -69,4 +78,49 @@ public interface ChunkMetadataRepository extends JpaRepository<ChunkMetadata, Lo
      * @return An {@link Optional} containing the found {@link ChunkMetadata}, or empty if no chunk matches.
      */
     Optional<ChunkMetadata> findByFileIdAndChunkNumber(Long fileId, int chunkNumber);
+
+    /**
+     * Retrieves the numbers of the pending chunks of a file.
+     * <p>
+     * The status is part of the query instead of a parameter, so even a generic plan of the prepared
+     * statement matches the partial index {@code idx_chunk_metadata_pending}.
+     * </p>
+     *
+     * @param fileId The ID of the file.
+     * @return The numbers of the pending chunks.
+     */
+    @Query("SELECT c.chunkNumber FROM ChunkMetadata c WHERE c.fileId = :fileId AND c.status = 'Pending'")
+    List<Integer> findPendingChunkNumbersByFileId(@Param("fileId") Long fileId);
+
+    /**
+     * Checks whether any chunk exists for a specific file ID.
+     *
+     * @param fileId The ID of the file.
+     * @return true if at least one chunk exists for the file, false otherwise.
+     */
+    boolean existsByFileId(Long fileId);
+
+    /**
+     * Retrieves the chunk numbers and digests of the completed chunks of a file that have a digest.
+     *
+     * @param fileId The ID of the file.
+     * @return Pairs of chunk number and hex-encoded digest.
+     */
+    @Query("SELECT c.chunkNumber, c.digest FROM ChunkMetadata c " +
+            "WHERE c.fileId = :fileId AND c.status = 'Completed' AND c.digest IS NOT NULL")
+    List<Object[]> findCompletedDigestsByFileId(@Param("fileId") Long fileId);
+
+    /**
+     * Finds completed chunks of other, completed files whose digest is one of the given digests.
+     * Served by the index on {@code digest}.
+     *
+     * @param digests The hex-encoded digests to look up.
+     * @param fileId  The ID of the file being uploaded, whose own chunks are excluded.
+     * @return The matching chunks.
+     */
+    @Query("SELECT c FROM ChunkMetadata c WHERE c.digest IN :digests AND c.status = 'Completed' " +
+            "AND c.fileId <> :fileId " +
+            "AND c.fileId IN (SELECT f.id FROM FileMetadata f WHERE f.status = 'Completed')")
+    List<ChunkMetadata> findCompletedChunksByDigests(@Param("digests") Collection<String> digests,
+                                                     @Param("fileId") Long fileId);
 }
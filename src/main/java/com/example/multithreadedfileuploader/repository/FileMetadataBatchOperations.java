@@ -0,0 +1,61 @@
+package com.example.multithreadedfileuploader.repository;
+
+import java.util.List;
+
+/**
+ * The FileMetadataBatchOperations interface declares the multi-row file metadata writes of the {@link FileMetadataRepository}.
+ *
+ * <h2>Purpose</h2>
+ * <p>
+ * A pack of small files records thousands of files at once. Saving them one entity at a time would cost a
+ * round-trip per file, as identity keys keep Hibernate from batching inserts, so they are written for each
+ * metadata store instead. The repository inherits them as a Spring Data fragment, implemented by
+ * {@link FileMetadataBatchOperationsImpl}.
+ * </p>
+ *
+ * <h2>Important Methods</h2>
+ * <ul>
+ *     <li><b>insertPackedFiles(...):</b> Bulk-creates the completed files stored in a pack.</li>
+ *     <li><b>upsertChunkDigests(...):</b> Stores the digests of a batch of chunks of a file kept in a bitmap.</li>
+ *     <li><b>findChunkDigests(Long fileId):</b> Lists the stored chunk digests of a file kept in a bitmap.</li>
+ * </ul>
+ */
+public interface FileMetadataBatchOperations {
+
+    /**
+     * Creates the files stored in an uploaded pack, as completed files without chunks of their own. Files whose
+     * fingerprint already has a record are skipped.
+     *
+     * @param packId      The ID of the pack's file metadata.
+     * @param batchId     The ID of the batch the files belong to, or null.
+     * @param chunkSize   The chunk size to record, that of the pack.
+     * @param fileNames   The name of each file.
+     * @param sourcePaths The absolute path of each file, in the order of {@code fileNames}.
+     * @param fingerprints The fingerprint of each file.
+     * @param fileSizes   The size of each file in bytes.
+     * @param packOffsets The offset of each file inside the pack.
+     * @return The number of created files.
+     */
+    int insertPackedFiles(Long packId, Long batchId, long chunkSize, List<String> fileNames, List<String> sourcePaths,
+                          List<String> fingerprints, List<Long> fileSizes, List<Long> packOffsets);
+
+    /**
+     * Stores the digests of several completed chunks of a file whose chunk state is kept in a bitmap, one
+     * {@code chunk_digest} row per chunk. A chunk that already has a digest, e.g. one transferred again, gets the
+     * new one.
+     *
+     * @param fileId       The ID of the file the chunks belong to.
+     * @param chunkNumbers The numbers of the chunks.
+     * @param digests      The hex-encoded digest of each chunk, in the order of {@code chunkNumbers}.
+     * @return The number of stored digests.
+     */
+    int upsertChunkDigests(Long fileId, List<Integer> chunkNumbers, List<String> digests);
+
+    /**
+     * Retrieves the digests stored with {@link #upsertChunkDigests(Long, List, List)} for a file.
+     *
+     * @param fileId The ID of the file.
+     * @return Pairs of chunk number and hex-encoded digest.
+     */
+    List<Object[]> findChunkDigests(Long fileId);
+}
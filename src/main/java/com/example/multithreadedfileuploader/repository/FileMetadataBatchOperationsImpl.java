@@ -0,0 +1,125 @@
+package com.example.multithreadedfileuploader.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The FileMetadataBatchOperationsImpl class implements the multi-row file metadata writes for the configured metadata store.
+ *
+ * <h2>Metadata Stores</h2>
+ * <ul>
+ *     <li><b>postgres:</b> One statement per pack or batch of digests. The values are bound as SQL arrays and
+ *     unnested into rows, as file names and paths cannot be passed as unquoted array literals.</li>
+ *     <li><b>h2:</b> The rows are sent as one JDBC batch, which costs no network round-trip in an embedded database.
+ *     Digests are upserted with {@code MERGE}.</li>
+ * </ul>
+ * <p>
+ * A file whose fingerprint already has a record, e.g. an identical copy packed at the same time, is skipped: the
+ * existing record already stands for its content.
+ * </p>
+ */
+public class FileMetadataBatchOperationsImpl implements FileMetadataBatchOperations {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean postgres;
+
+    /**
+     * Creates the operations for the configured metadata store.
+     *
+     * @param dataSource The data source of the metadata store.
+     * @param store      The metadata store, {@code postgres} or {@code h2}.
+     */
+    @Autowired
+    public FileMetadataBatchOperationsImpl(DataSource dataSource,
+                                           @Value("${uploader.metadata.store:postgres}") String store) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.postgres = "postgres".equals(store);
+    }
+
+    @Override
+    @Transactional
+    public int insertPackedFiles(Long packId, Long batchId, long chunkSize, List<String> fileNames,
+                                 List<String> sourcePaths, List<String> fingerprints, List<Long> fileSizes,
+                                 List<Long> packOffsets) {
+        if (postgres) {
+            return jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement("INSERT INTO file_metadata " +
+                        "(file_name, source_path, fingerprint, file_size, pack_offset, chunk_size, total_chunks, " +
+                        "uploaded_chunks, status, created_at, batch_id, pack_id) " +
+                        "SELECT t.file_name, t.source_path, t.fingerprint, t.file_size, t.pack_offset, ?, 0, 0, " +
+                        "'Completed', CURRENT_TIMESTAMP, ?, ? " +
+                        "FROM unnest(?, ?, ?, ?, ?) AS t(file_name, source_path, fingerprint, file_size, pack_offset) " +
+                        "ON CONFLICT DO NOTHING");
+                statement.setLong(1, chunkSize);
+                statement.setObject(2, batchId, Types.BIGINT);
+                statement.setLong(3, packId);
+                statement.setArray(4, connection.createArrayOf("varchar", fileNames.toArray()));
+                statement.setArray(5, connection.createArrayOf("varchar", sourcePaths.toArray()));
+                statement.setArray(6, connection.createArrayOf("varchar", fingerprints.toArray()));
+                statement.setArray(7, connection.createArrayOf("bigint", fileSizes.toArray()));
+                statement.setArray(8, connection.createArrayOf("bigint", packOffsets.toArray()));
+                return statement;
+            });
+        }
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(fileNames.size());
+        for (int i = 0; i < fileNames.size(); i++) {
+            rows.add(new Object[]{fileNames.get(i), sourcePaths.get(i), fingerprints.get(i), fileSizes.get(i),
+                    packOffsets.get(i), chunkSize, createdAt, batchId, packId});
+        }
+        return sum(jdbcTemplate.batchUpdate("INSERT INTO file_metadata " +
+                "(file_name, source_path, fingerprint, file_size, pack_offset, chunk_size, total_chunks, " +
+                "uploaded_chunks, status, created_at, batch_id, pack_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?, 0, 0, 'Completed', ?, ?, ?) ON CONFLICT DO NOTHING", rows));
+    }
+
+    @Override
+    @Transactional
+    public int upsertChunkDigests(Long fileId, List<Integer> chunkNumbers, List<String> digests) {
+        if (postgres) {
+            return jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement("INSERT INTO chunk_digest " +
+                        "(file_id, chunk_number, digest) " +
+                        "SELECT ?, t.chunk_number, t.digest FROM unnest(?, ?) AS t(chunk_number, digest) " +
+                        "ON CONFLICT (file_id, chunk_number) DO UPDATE SET digest = EXCLUDED.digest");
+                statement.setLong(1, fileId);
+                statement.setArray(2, connection.createArrayOf("integer", chunkNumbers.toArray()));
+                statement.setArray(3, connection.createArrayOf("varchar", digests.toArray()));
+                return statement;
+            });
+        }
+        List<Object[]> rows = new ArrayList<>(chunkNumbers.size());
+        for (int i = 0; i < chunkNumbers.size(); i++) {
+            rows.add(new Object[]{fileId, chunkNumbers.get(i), digests.get(i)});
+        }
+        return sum(jdbcTemplate.batchUpdate("MERGE INTO chunk_digest (file_id, chunk_number, digest) " +
+                "KEY (file_id, chunk_number) VALUES (?, ?, ?)", rows));
+    }
+
+    @Override
+    public List<Object[]> findChunkDigests(Long fileId) {
+        return jdbcTemplate.query("SELECT chunk_number, digest FROM chunk_digest WHERE file_id = ?",
+                (resultSet, rowNumber) -> new Object[]{resultSet.getInt(1), resultSet.getString(2)}, fileId);
+    }
+
+    /**
+     * Adds up the update counts of a JDBC batch.
+     */
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+}
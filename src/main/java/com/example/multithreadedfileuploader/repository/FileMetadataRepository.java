@@ -2,8 +2,14 @@ package com.example.multithreadedfileuploader.repository;
 
 import com.example.multithreadedfileuploader.entity.FileMetadata;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,13 +24,20 @@ import java.util.Optional;
  *
  * <h2>Usage</h2>
  * <ul>
- *     <li>Retrieve file metadata by file name.</li>
+ *     <li>Retrieve file metadata by content fingerprint.</li>
  *     <li>Perform standard CRUD operations on file metadata records.</li>
+ *     <li>Update the upload progress of a file without loading the entity.</li>
  * </ul>
  *
  * <h2>Important Methods</h2>
  * <ul>
- *     <li><b>findByFileName(String fileName):</b> Finds a specific file metadata record using the file name.</li>
+ *     <li><b>findByFingerprint(String fingerprint):</b> Finds the upload of a file by its fingerprint, a single probe of its unique index.</li>
+ *     <li><b>findByStatusOrderByIdAsc(String status):</b> Lists the uploads in a status, e.g. the queued uploads restored on startup.</li>
+ *     <li><b>findKnownFingerprints(Collection&lt;String&gt; fingerprints):</b> Tells which of many fingerprints already have an upload, in one query.</li>
+ *     <li><b>insertPackedFiles(...):</b> Bulk-creates the files stored in a pack, see {@link FileMetadataBatchOperations}.</li>
+ *     <li><b>updateUploadedChunks(Long id, int uploadedChunks):</b> Stores the number of uploaded chunks of a file.</li>
+ *     <li><b>updateChunkBitmap(Long id, byte[] chunkBitmap):</b> Stores the completed chunks of a file as a bitmap.</li>
+ *     <li><b>upsertChunkDigests(...):</b> Stores the digests of chunks of a file kept in a bitmap, see {@link FileMetadataBatchOperations}.</li>
  * </ul>
  *
  * <h2>Annotations</h2>
@@ -33,13 +46,54 @@ import java.util.Optional;
  * </ul>
  */
 @Repository
-public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long> {
+public interface FileMetadataRepository extends JpaRepository<FileMetadata, Long>, FileMetadataBatchOperations {
 
     /**
-     * Finds a specific file metadata record using the file name.
+     * Finds the file metadata record of an upload by the fingerprint of its content.
      *
-     * @param fileName The name of the file whose metadata is to be retrieved.
+     * @param fingerprint The fingerprint of the file whose metadata is to be retrieved.
      * @return An {@link Optional} containing the found {@link FileMetadata}, or empty if no record matches.
      */
-    Optional<FileMetadata> findByFileName(String fileName);
+    Optional<FileMetadata> findByFingerprint(String fingerprint);
+
+    /**
+     * Finds the file metadata records of all uploads in a status, oldest first.
+     *
+     * @param status The status of the uploads, e.g. "Queued".
+     * @return The matching records, ordered by ID.
+     */
+    List<FileMetadata> findByStatusOrderByIdAsc(String status);
+
+    /**
+     * Finds which of the given fingerprints already have a file metadata record, without loading the records.
+     *
+     * @param fingerprints The fingerprints to look up.
+     * @return The fingerprints that have a record.
+     */
+    @Query("SELECT f.fingerprint FROM FileMetadata f WHERE f.fingerprint IN :fingerprints")
+    List<String> findKnownFingerprints(@Param("fingerprints") Collection<String> fingerprints);
+
+    /**
+     * Stores the number of uploaded chunks of a file with a single update statement.
+     *
+     * @param id             The ID of the file metadata record.
+     * @param uploadedChunks The number of chunks uploaded without a gap from the start of the file.
+     * @return The number of updated records.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FileMetadata f SET f.uploadedChunks = :uploadedChunks WHERE f.id = :id")
+    int updateUploadedChunks(@Param("id") Long id, @Param("uploadedChunks") int uploadedChunks);
+
+    /**
+     * Stores the completed chunks of a file as an encoded bitmap.
+     *
+     * @param id          The ID of the file metadata record.
+     * @param chunkBitmap The encoded chunk bitmap.
+     * @return The number of updated records.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FileMetadata f SET f.chunkBitmap = :chunkBitmap WHERE f.id = :id")
+    int updateChunkBitmap(@Param("id") Long id, @Param("chunkBitmap") byte[] chunkBitmap);
 }
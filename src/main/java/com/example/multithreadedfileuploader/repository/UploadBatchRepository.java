@@ -0,0 +1,40 @@
+package com.example.multithreadedfileuploader.repository;
+
+import com.example.multithreadedfileuploader.entity.UploadBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The UploadBatchRepository interface provides methods for interacting with the `UploadBatch` table in the database.
+ *
+ * <h2>Purpose</h2>
+ * <p>
+ * This repository performs CRUD operations on the `UploadBatch` entity, the parent record of the files uploaded
+ * together from a directory. It extends the {@link JpaRepository}, which provides generic JPA functionality.
+ * </p>
+ *
+ * <h2>Important Methods</h2>
+ * <ul>
+ *     <li><b>findByStatusIn(Collection&lt;String&gt; statuses):</b> Lists the batches in any of the given statuses,
+ *     e.g. the batches left unfinished by the last run.</li>
+ * </ul>
+ *
+ * <h2>Annotations</h2>
+ * <ul>
+ *     <li><b>@Repository:</b> Marks this interface as a Spring Data Repository, making it eligible for Spring's component scanning.</li>
+ * </ul>
+ */
+@Repository
+public interface UploadBatchRepository extends JpaRepository<UploadBatch, Long> {
+
+    /**
+     * Finds the batches in any of the given statuses.
+     *
+     * @param statuses The statuses of the batches, e.g. "Scanning" and "Uploading".
+     * @return The matching batches.
+     */
+    List<UploadBatch> findByStatusIn(Collection<String> statuses);
+}
@@ -0,0 +1,458 @@
+/**
+ * Arbitrates the chunk slots and the bandwidth shared by all uploads.
+ * <p>
+ * Every chunk of every upload has to be granted by the scheduler before it is transferred. A grant takes one
+ * of the {@code uploader.engine.max-chunks-in-flight} slots and charges the bytes of the chunk to token
+ * buckets, and the waiting uploads are served in weighted fair order, so a single large upload can no longer
+ * starve the others: with priorities 16 and 1, a small interactive upload gets 16 bytes for every byte granted
+ * to a bulk transfer while both are waiting, and the bulk transfer soaks up whatever capacity is left.
+ * </p>
+ *
+ * <h2>Key Features</h2>
+ * <ul>
+ *   <li><b>Global cap:</b> a token bucket of {@code uploader.bandwidth.global-bytes-per-second} shared by all
+ *   uploads (0 for no cap).</li>
+ *   <li><b>Per-upload caps:</b> every upload has its own token bucket, initially
+ *   {@code uploader.bandwidth.upload-bytes-per-second}, adjustable at runtime (0 for no cap).</li>
+ *   <li><b>Weighted fair sharing:</b> start-time fair queuing over the bytes of the requested chunks, weighted
+ *   by the priority of each upload. Priorities are adjustable at runtime.</li>
+ *   <li>Buckets may go into debt by one chunk, so chunks larger than the burst size are never stuck; the
+ *   upload then waits until the debt is paid off.</li>
+ *   <li>Event-driven: grants are issued when a slot is released, a bucket refills, or a flow changes, and no
+ *   thread waits on behalf of a chunk transfer.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@Component
+public class BandwidthScheduler {
+
+    private static final Logger logger = Logger.getLogger(BandwidthScheduler.class.getName());
+
+    /**
+     * Lowest priority of an upload.
+     */
+    public static final int MIN_PRIORITY = 1;
+
+    /**
+     * Highest priority of an upload.
+     */
+    public static final int MAX_PRIORITY = 100;
+
+    private final TokenBucket globalBucket;
+    private final int defaultPriority;
+    private final long defaultRateLimit;
+    private final long burstMs;
+    private final List<Flow> waiting = new ArrayList<>();
+    private final ScheduledExecutorService timer;
+
+    private int availableSlots;
+    private double virtualTime;
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt;
+
+    /**
+     * Creates the scheduler with its limits.
+     *
+     * @param maxChunksInFlight The maximum number of chunks transferred at the same time across all uploads.
+     * @param globalRateLimit The maximum bytes per second across all uploads, or 0 for no cap.
+     * @param defaultRateLimit The maximum bytes per second of a new upload, or 0 for no cap.
+     * @param defaultPriority The priority of a new upload.
+     * @param burstMs The number of milliseconds of bandwidth a bucket can save up while idle.
+     */
+    @Autowired
+    public BandwidthScheduler(@Value("${uploader.engine.max-chunks-in-flight:16}") int maxChunksInFlight,
+                              @Value("${uploader.bandwidth.global-bytes-per-second:0}") long globalRateLimit,
+                              @Value("${uploader.bandwidth.upload-bytes-per-second:0}") long defaultRateLimit,
+                              @Value("${uploader.bandwidth.default-priority:4}") int defaultPriority,
+                              @Value("${uploader.bandwidth.burst-ms:250}") long burstMs) {
+        if (maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("Chunk concurrency limits must be at least 1");
+        }
+        checkRateLimit(globalRateLimit);
+        checkRateLimit(defaultRateLimit);
+        checkPriority(defaultPriority);
+        this.availableSlots = maxChunksInFlight;
+        this.burstMs = burstMs;
+        this.globalBucket = new TokenBucket(globalRateLimit, burstMs);
+        this.defaultPriority = defaultPriority;
+        this.defaultRateLimit = defaultRateLimit;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bandwidth-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Bandwidth scheduler started with " + maxChunksInFlight + " chunks in flight and "
+                + (globalRateLimit > 0 ? globalRateLimit + " bytes per second" : "no bandwidth cap") + " overall.");
+    }
+
+    /**
+     * Creates the flow of a new upload, with the default priority and rate limit.
+     *
+     * @return The new flow.
+     */
+    public Flow newFlow() {
+        return new Flow(defaultPriority, defaultRateLimit);
+    }
+
+    /**
+     * Requests a grant for the next chunk of a flow without blocking.
+     * <p>
+     * If the grant cannot be issued right away, the request is queued and {@code onGrant} is called once it
+     * has been granted. The callback runs on the thread that freed the capacity, never on the caller's.
+     * A flow has at most one request queued at a time.
+     * </p>
+     *
+     * @param flow The flow of the upload.
+     * @param bytes The size of the chunk in bytes.
+     * @param onGrant Called when a queued request has been granted.
+     * @return true if the grant was issued right away, false if the request was queued.
+     */
+    public boolean tryAcquire(Flow flow, long bytes, Runnable onGrant) {
+        boolean acquired;
+        synchronized (this) {
+            flow.enqueue(bytes, onGrant);
+            long now = System.nanoTime();
+            // Granted right away only if the flow would also be served first by the queue
+            acquired = availableSlots > 0 && globalBucket.nanosUntilAvailable(now) == 0
+                    && nextEligible(now) == flow;
+            if (acquired) {
+                grant(flow);
+            }
+        }
+        if (!acquired) {
+            // Another flow may be eligible now, which must not be granted on the caller's thread
+            timer.execute(this::dispatch);
+        }
+        return acquired;
+    }
+
+    /**
+     * Requests a grant for the next chunk of a flow and waits for it. Used by uploads that are driven by a
+     * reading thread rather than by a chunk transfer.
+     *
+     * @param flow The flow of the upload.
+     * @param bytes The size of the chunk in bytes.
+     * @throws InterruptedException If the thread is interrupted while waiting; no grant is held then.
+     */
+    public void acquire(Flow flow, long bytes) throws InterruptedException {
+        CountDownLatch granted = new CountDownLatch(1);
+        if (tryAcquire(flow, bytes, granted::countDown)) {
+            return;
+        }
+        try {
+            granted.await();
+        } catch (InterruptedException e) {
+            if (!withdraw(flow)) {
+                // Granted meanwhile
+                release(flow, bytes);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the queued request of a flow, e.g. when its upload is paused or canceled.
+     *
+     * @param flow The flow of the upload.
+     * @return true if a queued request was removed, false if the flow had none, e.g. because it was granted.
+     */
+    public synchronized boolean withdraw(Flow flow) {
+        if (!flow.waiting) {
+            return false;
+        }
+        flow.dequeue();
+        return true;
+    }
+
+    /**
+     * Releases the slot of a granted chunk once it has been transferred.
+     */
+    public void release() {
+        synchronized (this) {
+            availableSlots++;
+        }
+        dispatch();
+    }
+
+    /**
+     * Returns a grant that was not used, refunding its bytes to the buckets.
+     *
+     * @param flow The flow the grant was issued to.
+     * @param bytes The bytes charged for the grant.
+     */
+    public void release(Flow flow, long bytes) {
+        synchronized (this) {
+            globalBucket.refund(bytes);
+            flow.bucket.refund(bytes);
+            availableSlots++;
+        }
+        dispatch();
+    }
+
+    /**
+     * Stops the scheduler's timer.
+     */
+    public void shutdown() {
+        timer.shutdown();
+    }
+
+    /**
+     * Issues as many grants as the slots and buckets allow, in fair order, and schedules a wakeup for the
+     * moment a bucket will allow the next one.
+     */
+    private void dispatch() {
+        List<Runnable> granted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (availableSlots > 0 && !waiting.isEmpty()) {
+                long globalWait = globalBucket.nanosUntilAvailable(now);
+                if (globalWait > 0) {
+                    scheduleWakeup(now, globalWait);
+                    break;
+                }
+                Flow next = nextEligible(now);
+                if (next == null) {
+                    // Every waiting flow is over its own cap
+                    long flowWait = Long.MAX_VALUE;
+                    for (Flow flow : waiting) {
+                        flowWait = Math.min(flowWait, flow.bucket.nanosUntilAvailable(now));
+                    }
+                    scheduleWakeup(now, flowWait);
+                    break;
+                }
+                granted.add(grant(next));
+            }
+        }
+        for (Runnable onGrant : granted) {
+            onGrant.run();
+        }
+    }
+
+    /**
+     * Finds the waiting flow with the smallest start tag among those within their own cap. Must hold the lock.
+     */
+    private Flow nextEligible(long now) {
+        Flow next = null;
+        for (Flow flow : waiting) {
+            if ((next == null || flow.startTag < next.startTag) && flow.bucket.nanosUntilAvailable(now) == 0) {
+                next = flow;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Grants the queued request of a flow. Must hold the lock.
+     *
+     * @return The callback of the request.
+     */
+    private Runnable grant(Flow flow) {
+        Runnable onGrant = flow.onGrant;
+        availableSlots--;
+        globalBucket.consume(flow.requestedBytes);
+        flow.bucket.consume(flow.requestedBytes);
+        virtualTime = Math.max(virtualTime, flow.startTag);
+        flow.finishTag = flow.startTag + (double) flow.requestedBytes / flow.priority;
+        flow.dequeue();
+        return onGrant;
+    }
+
+    /**
+     * Makes sure the scheduler dispatches again after the given delay. Must hold the lock.
+     */
+    private void scheduleWakeup(long now, long delayNanos) {
+        long at = now + delayNanos;
+        if (wakeup != null && wakeupAt - at <= 0) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAt = at;
+        wakeup = timer.schedule(this::onWakeup, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs a scheduled dispatch.
+     */
+    private void onWakeup() {
+        synchronized (this) {
+            // Cleared first, so the dispatch can schedule the next wakeup
+            wakeup = null;
+        }
+        dispatch();
+    }
+
+    private static void checkPriority(int priority) {
+        if (priority < MIN_PRIORITY || priority > MAX_PRIORITY) {
+            throw new IllegalArgumentException("Priority must be between " + MIN_PRIORITY + " and " + MAX_PRIORITY);
+        }
+    }
+
+    private static void checkRateLimit(long rateLimit) {
+        if (rateLimit < 0) {
+            throw new IllegalArgumentException("Rate limit must not be negative");
+        }
+    }
+
+    /**
+     * The share of an upload in the scheduler: its priority, its own rate limit, and its position in the fair
+     * queue.
+     */
+    public class Flow {
+        private final TokenBucket bucket;
+        private int priority;
+        private double startTag;
+        private double finishTag;
+        private boolean waiting;
+        private long requestedBytes;
+        private Runnable onGrant;
+
+        private Flow(int priority, long rateLimit) {
+            this.priority = priority;
+            this.bucket = new TokenBucket(rateLimit, burstMs);
+        }
+
+        /**
+         * @return The priority of the upload, between {@link #MIN_PRIORITY} and {@link #MAX_PRIORITY}.
+         */
+        public int getPriority() {
+            synchronized (BandwidthScheduler.this) {
+                return priority;
+            }
+        }
+
+        /**
+         * Changes the priority of the upload. Takes effect with the next chunk of the upload.
+         *
+         * @param priority The new priority, between {@link #MIN_PRIORITY} and {@link #MAX_PRIORITY}.
+         * @throws IllegalArgumentException If the priority is out of range.
+         */
+        public void setPriority(int priority) {
+            checkPriority(priority);
+            synchronized (BandwidthScheduler.this) {
+                this.priority = priority;
+            }
+            dispatch();
+        }
+
+        /**
+         * @return The maximum bytes per second of the upload, or 0 if it has no cap.
+         */
+        public long getRateLimit() {
+            synchronized (BandwidthScheduler.this) {
+                return bucket.rate;
+            }
+        }
+
+        /**
+         * Changes the maximum bytes per second of the upload.
+         *
+         * @param rateLimit The new rate limit, or 0 for no cap.
+         * @throws IllegalArgumentException If the rate limit is negative.
+         */
+        public void setRateLimit(long rateLimit) {
+            checkRateLimit(rateLimit);
+            synchronized (BandwidthScheduler.this) {
+                bucket.setRate(rateLimit, System.nanoTime());
+            }
+            dispatch();
+        }
+
+        /**
+         * Queues a request of the flow. Must hold the scheduler lock.
+         */
+        private void enqueue(long bytes, Runnable callback) {
+            if (waiting) {
+                throw new IllegalStateException("Flow already has a queued request");
+            }
+            // An idle flow restarts at the current virtual time instead of claiming the time it was idle
+            startTag = Math.max(virtualTime, finishTag);
+            requestedBytes = bytes;
+            onGrant = callback;
+            waiting = true;
+            BandwidthScheduler.this.waiting.add(this);
+        }
+
+        /**
+         * Removes the queued request of the flow. Must hold the scheduler lock.
+         */
+        private void dequeue() {
+            waiting = false;
+            onGrant = null;
+            BandwidthScheduler.this.waiting.remove(this);
+        }
+    }
+
+    /**
+     * Token bucket refilled at a fixed rate. A rate of 0 means no cap.
+     */
+    private static class TokenBucket {
+        private final long burstMs;
+        private long rate;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(long rate, long burstMs) {
+            this.burstMs = burstMs;
+            this.rate = rate;
+            this.tokens = capacity();
+        }
+
+        /**
+         * @return The time in nanoseconds until the bucket is out of debt, 0 if it is now.
+         */
+        long nanosUntilAvailable(long now) {
+            if (rate == 0) {
+                return 0;
+            }
+            refill(now);
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+
+        void consume(long bytes) {
+            if (rate > 0) {
+                tokens -= bytes;
+            }
+        }
+
+        void refund(long bytes) {
+            if (rate > 0) {
+                tokens = Math.min(capacity(), tokens + bytes);
+            }
+        }
+
+        void setRate(long newRate, long now) {
+            refill(now);
+            boolean wasUncapped = rate == 0;
+            rate = newRate;
+            // A newly capped flow starts with a full bucket, a changed cap keeps its debt
+            tokens = wasUncapped ? capacity() : Math.min(capacity(), tokens);
+        }
+
+        private void refill(long now) {
+            if (rate > 0) {
+                tokens = Math.min(capacity(), tokens + (double) (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+            }
+            refilledAt = now;
+        }
+
+        private double capacity() {
+            return Math.max(1, (double) rate * burstMs / 1000);
+        }
+    }
+}
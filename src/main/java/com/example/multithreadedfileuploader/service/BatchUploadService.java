@@ -0,0 +1,457 @@
+/**
+ * Service uploading whole directories as batches.
+ * <p>
+ * A directory is walked by the {@link ParallelDirectoryWalker} on the walker pool, and every file is
+ * submitted to the {@link FileUploadService} the moment it is found, so the first files upload while the
+ * rest of the tree is still being listed. When the {@link UploadQueue} is full, the walker waits for a
+ * place instead of failing, which bounds the memory of a batch of any size.
+ * </p>
+ *
+ * <h2>Key Features</h2>
+ * <ul>
+ *   <li>Persists every batch as an {@link UploadBatch}, the parent record of the {@link FileMetadata}
+ *   rows of its files.</li>
+ *   <li>Aggregates the counts and bytes of a batch incrementally in its {@link UploadBatchProgress},
+ *   for a single batch progress bar.</li>
+ *   <li>Packs small files ({@code uploader.packing.max-file-size}) into {@link FilePack}s of
+ *   {@code uploader.packing.pack-size} bytes, each uploaded as one file, so small files do not pay the
+ *   metadata and scheduling cost of an upload each.</li>
+ *   <li>Cancels a batch as a whole: the walk stops and every submitted file is cancelled.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.entity.UploadBatch;
+import com.example.multithreadedfileuploader.repository.UploadBatchRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+@Service
+public class BatchUploadService {
+
+    private static final Logger logger = Logger.getLogger(BatchUploadService.class.getName());
+
+    /**
+     * Interval in milliseconds at which a walker waiting for a place in the queue checks for a cancel.
+     */
+    private static final long ADMISSION_POLL_MS = 200;
+
+    /**
+     * Number of files at which a pack is sealed, however small they are, bounding the bulk insert of a pack.
+     */
+    private static final int MAX_FILES_PER_PACK = 4096;
+
+    @Autowired
+    private UploadBatchRepository uploadBatchRepository;
+
+    @Autowired
+    private FileUploadService fileUploadService;
+
+    @Autowired
+    @Qualifier("walkerPool")
+    private ForkJoinPool walkerPool;
+
+    @Value("${uploader.packing.max-file-size:65536}")
+    private long packMaxFileSize;
+
+    @Value("${uploader.packing.pack-size:8388608}")
+    private long packSize;
+
+    private final Map<Long, UploadBatchProgress> activeBatches = new ConcurrentHashMap<>();
+
+    /**
+     * Uploads all files of a directory and its subdirectories as one batch.
+     *
+     * @param directory The directory to upload.
+     * @return The progress of the started batch.
+     * @throws IllegalArgumentException If the path is not a directory.
+     */
+    public UploadBatchProgress uploadDirectory(File directory) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        UploadBatch batch = new UploadBatch();
+        batch.setName(directory.getAbsolutePath());
+        batch.setStatus("Scanning");
+        batch = uploadBatchRepository.save(batch);
+
+        UploadBatchProgress progress = new UploadBatchProgress(batch.getId(), batch.getName());
+        activeBatches.put(progress.getBatchId(), progress);
+        logger.info("Uploading directory " + progress.getName() + " as batch " + progress.getBatchId() + ".");
+
+        SmallFilePacker packer = packMaxFileSize > 0
+                ? new SmallFilePacker("batch-" + progress.getBatchId(), packSize, MAX_FILES_PER_PACK)
+                : null;
+        new ParallelDirectoryWalker(walkerPool)
+                .walk(directory.toPath(), (file, size) -> visitFile(progress, packer, file, size), progress::isCancelled)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logger.severe("Walking batch " + progress.getBatchId() + " failed: " + error.getMessage());
+                    }
+                    scanFinished(progress, packer);
+                });
+        return progress;
+    }
+
+    /**
+     * Counts a file found by the walk and submits it, or adds it to the open pack if it is small.
+     *
+     * @param progress The progress of the batch.
+     * @param packer The packer collecting the small files of the batch, or null if packing is disabled.
+     * @param file The path of the file.
+     * @param size The size of the file in bytes.
+     * @throws InterruptedException If the walker was interrupted while waiting.
+     */
+    private void visitFile(UploadBatchProgress progress, SmallFilePacker packer, Path file, long size)
+            throws InterruptedException {
+        progress.fileDiscovered(size);
+        if (packer == null || size > packMaxFileSize) {
+            submitFile(progress, file, size);
+            return;
+        }
+        FilePack.Member member;
+        try {
+            // Fingerprinted by the walker threads, in parallel, so a packed file is recognized when uploaded again
+            File localFile = file.toFile();
+            long lastModified = localFile.lastModified();
+            member = new FilePack.Member(file, size, lastModified, fileUploadService.fingerprint(localFile));
+        } catch (IOException e) {
+            // Uploaded on its own, which reports why it cannot be read
+            submitFile(progress, file, size);
+            return;
+        }
+        FilePack pack = packer.add(member);
+        if (pack != null) {
+            submitPack(progress, pack);
+        }
+    }
+
+    /**
+     * Submits a file on its own, waiting for a place in the upload queue.
+     *
+     * @param progress The progress of the batch.
+     * @param file The path of the file.
+     * @param size The size of the file in bytes.
+     * @throws InterruptedException If the walker was interrupted while waiting.
+     */
+    private void submitFile(UploadBatchProgress progress, Path file, long size) throws InterruptedException {
+        // Bytes of this file counted so far, so the batch only adds the difference
+        AtomicLong countedBytes = new AtomicLong();
+        Optional<UploadSession> session = awaitAdmission(progress, timeoutMs ->
+                fileUploadService.offerUpload(file.toFile(), progress.getBatchId(), timeoutMs,
+                        fileProgress -> {
+                            long bytes = (long) (fileProgress * size);
+                            progress.addUploadedBytes(bytes - countedBytes.getAndSet(bytes));
+                        },
+                        status -> fileStatus(progress, status, 1)));
+        if (session.isEmpty()) {
+            progress.filesCancelled(1);
+            return;
+        }
+        addSession(progress, session.get());
+    }
+
+    /**
+     * Submits a sealed pack, waiting for a place in the upload queue. Files uploaded before, on their own or
+     * in another pack, are taken out of the pack and submitted on their own, which resumes or skips them.
+     *
+     * @param progress The progress of the batch.
+     * @param sealed The sealed pack.
+     * @throws InterruptedException If the walker was interrupted while waiting.
+     */
+    private void submitPack(UploadBatchProgress progress, FilePack sealed) throws InterruptedException {
+        Set<String> known;
+        try {
+            known = fileUploadService.findKnownFingerprints(
+                    sealed.getMembers().stream().map(FilePack.Member::getFingerprint).toList());
+        } catch (RuntimeException e) {
+            // Safe to pack them all, a file already recorded is skipped when the pack is recorded
+            logger.warning("Looking up the files of " + sealed.getName() + " failed: " + e.getMessage());
+            known = Set.of();
+        }
+        FilePack pack = sealed;
+        if (!known.isEmpty()) {
+            for (FilePack.Member member : sealed.getMembers()) {
+                if (known.contains(member.getFingerprint())) {
+                    submitFile(progress, member.getPath(), member.getSize());
+                }
+            }
+            pack = sealed.without(known);
+        }
+        int files = pack.getMembers().size();
+        if (files == 0) {
+            return;
+        }
+
+        long size = pack.getSize();
+        AtomicLong countedBytes = new AtomicLong();
+        FilePack offered = pack;
+        Optional<UploadSession> session = awaitAdmission(progress, timeoutMs ->
+                fileUploadService.offerPack(offered, progress.getBatchId(), timeoutMs,
+                        packProgress -> {
+                            long bytes = (long) (packProgress * size);
+                            progress.addUploadedBytes(bytes - countedBytes.getAndSet(bytes));
+                        },
+                        status -> fileStatus(progress, status, files)));
+        if (session.isEmpty()) {
+            progress.filesCancelled(files);
+            return;
+        }
+        addSession(progress, session.get());
+    }
+
+    /**
+     * Offers an upload to the upload queue until it gets a place or the batch is cancelled.
+     * <p>
+     * The walker threads are workers of the walker pool, so a walker waiting for a place would take a worker
+     * away from listing the tree. The wait is therefore a {@link ForkJoinPool.ManagedBlocker}: an offer that
+     * succeeds right away costs nothing extra, and before waiting the pool is allowed to add a spare worker
+     * that keeps listing meanwhile.
+     * </p>
+     *
+     * @param progress The progress of the batch.
+     * @param offer Offers the upload, waiting at most the given number of milliseconds for a place.
+     * @return The session of the started upload, or empty if the batch was cancelled first.
+     * @throws InterruptedException If the walker was interrupted while waiting.
+     */
+    private static Optional<UploadSession> awaitAdmission(UploadBatchProgress progress, AdmissionOffer offer)
+            throws InterruptedException {
+        AdmissionBlocker blocker = new AdmissionBlocker(progress, offer);
+        ForkJoinPool.managedBlock(blocker);
+        return Optional.ofNullable(blocker.session);
+    }
+
+    /**
+     * Remembers a submitted session of a batch, so it is cancelled with the batch.
+     *
+     * @param progress The progress of the batch.
+     * @param session The submitted session.
+     */
+    private void addSession(UploadBatchProgress progress, UploadSession session) {
+        progress.addSession(session.getId());
+        if (progress.isCancelled()) {
+            // Cancelled while this session was submitted, after the sessions were cancelled
+            fileUploadService.cancelUpload(session.getId(), false);
+        }
+    }
+
+    /**
+     * Counts the files of a finished upload, and finishes the batch after its last file.
+     *
+     * @param progress The progress of the batch.
+     * @param status The status reported by the upload.
+     * @param files The number of files of the upload, more than one for a pack.
+     */
+    private void fileStatus(UploadBatchProgress progress, String status, int files) {
+        if (status.equals("Upload Completed!")) {
+            progress.filesCompleted(files);
+        } else if (status.equals("Upload Cancelled")) {
+            progress.filesCancelled(files);
+        } else if (status.startsWith("Upload Failed")) {
+            progress.filesFailed(files);
+        } else {
+            return;
+        }
+        if (progress.isComplete()) {
+            finishBatch(progress);
+        }
+    }
+
+    /**
+     * Submits the last, partial pack of a batch whose directory has been walked, and records its totals.
+     *
+     * @param progress The progress of the batch.
+     * @param packer The packer of the batch, or null if packing is disabled.
+     */
+    private void scanFinished(UploadBatchProgress progress, SmallFilePacker packer) {
+        FilePack pack = packer == null ? null : packer.flush();
+        if (pack != null) {
+            try {
+                submitPack(progress, pack);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                progress.filesCancelled(pack.getMembers().size());
+            }
+        }
+        progress.scanFinished();
+        logger.info("Batch " + progress.getBatchId() + " has " + progress.getDiscoveredFiles() + " files, "
+                + progress.getDiscoveredBytes() + " bytes.");
+        if (progress.isComplete()) {
+            finishBatch(progress);
+        } else {
+            saveBatch(progress, "Uploading", false);
+        }
+    }
+
+    /**
+     * Records a batch whose files have all finished.
+     *
+     * @param progress The progress of the batch.
+     */
+    private void finishBatch(UploadBatchProgress progress) {
+        if (!progress.markFinished()) {
+            return;
+        }
+        activeBatches.remove(progress.getBatchId());
+        String status = progress.isCancelled() ? "Cancelled" : progress.getFailedFiles() > 0 ? "Failed" : "Completed";
+        saveBatch(progress, status, true);
+        logger.info("Batch " + progress.getBatchId() + " " + status.toLowerCase() + ": "
+                + progress.getCompletedFiles() + " completed, " + progress.getFailedFiles() + " failed, "
+                + progress.getCancelledFiles() + " cancelled.");
+    }
+
+    /**
+     * Stores the aggregated counters of a batch.
+     *
+     * @param progress The progress of the batch.
+     * @param status The status to record.
+     * @param finished true to record the batch as finished now.
+     */
+    private void saveBatch(UploadBatchProgress progress, String status, boolean finished) {
+        // Serialized per batch, so the record of a finished batch is never overwritten by an older one
+        synchronized (progress) {
+            try {
+                uploadBatchRepository.findById(progress.getBatchId()).ifPresent(batch -> {
+                    if (batch.getFinishedAt() != null) {
+                        return;
+                    }
+                    batch.setStatus(status);
+                    batch.setTotalFiles(progress.getDiscoveredFiles());
+                    batch.setTotalBytes(progress.getDiscoveredBytes());
+                    batch.setCompletedFiles(progress.getCompletedFiles());
+                    batch.setFailedFiles(progress.getFailedFiles());
+                    if (finished) {
+                        batch.setFinishedAt(LocalDateTime.now());
+                    }
+                    uploadBatchRepository.save(batch);
+                });
+            } catch (Exception e) {
+                logger.severe("Failed to record batch " + progress.getBatchId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Finds the live progress of a running batch.
+     *
+     * @param batchId The ID of the batch.
+     * @return The progress of the batch, or empty if it is not running.
+     */
+    public Optional<UploadBatchProgress> findProgress(Long batchId) {
+        return Optional.ofNullable(activeBatches.get(batchId));
+    }
+
+    /**
+     * Finds the record of a batch.
+     *
+     * @param batchId The ID of the batch.
+     * @return The batch, or empty if it does not exist.
+     */
+    public Optional<UploadBatch> findBatch(Long batchId) {
+        return uploadBatchRepository.findById(batchId);
+    }
+
+    /**
+     * Cancels a running batch: the walk stops, and every file already submitted is cancelled.
+     * Uploaded files are kept.
+     *
+     * @param batchId The ID of the batch.
+     * @return true if the batch is running, false otherwise.
+     */
+    public boolean cancelBatch(Long batchId) {
+        UploadBatchProgress progress = activeBatches.get(batchId);
+        if (progress == null) {
+            return false;
+        }
+        progress.cancel();
+        for (String sessionId : progress.getSessionIds()) {
+            fileUploadService.cancelUpload(sessionId, false);
+        }
+        logger.info("Batch cancelled: " + batchId);
+        return true;
+    }
+
+    /**
+     * Marks the batches left running by the last run as "Interrupted". Their queued files are queued again
+     * by {@link FileUploadService#restoreQueuedUploads()}, but are no longer counted by the batch.
+     *
+     * @return The number of interrupted batches.
+     */
+    public int markInterruptedBatches() {
+        List<UploadBatch> unfinished = uploadBatchRepository.findByStatusIn(List.of("Scanning", "Uploading"));
+        for (UploadBatch batch : unfinished) {
+            batch.setStatus("Interrupted");
+            uploadBatchRepository.save(batch);
+        }
+        if (!unfinished.isEmpty()) {
+            logger.warning(unfinished.size() + " upload batches were interrupted by the last shutdown.");
+        }
+        return unfinished.size();
+    }
+
+    /**
+     * Offers an upload to the upload queue, see {@link FileUploadService#offerUpload}.
+     */
+    @FunctionalInterface
+    private interface AdmissionOffer {
+        Optional<UploadSession> offer(long timeoutMs) throws InterruptedException;
+    }
+
+    /**
+     * Waits for a place in the upload queue on behalf of a walker, in steps of {@link #ADMISSION_POLL_MS} so a
+     * cancel of the batch is noticed.
+     */
+    private static class AdmissionBlocker implements ForkJoinPool.ManagedBlocker {
+        private final UploadBatchProgress progress;
+        private final AdmissionOffer offer;
+        private UploadSession session;
+
+        AdmissionBlocker(UploadBatchProgress progress, AdmissionOffer offer) {
+            this.progress = progress;
+            this.offer = offer;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            while (!isDone()) {
+                session = offer.offer(ADMISSION_POLL_MS).orElse(null);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (isDone()) {
+                return true;
+            }
+            try {
+                session = offer.offer(0).orElse(null);
+            } catch (InterruptedException e) {
+                // Left to block(), which waits interruptibly
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return session != null;
+        }
+
+        private boolean isDone() {
+            return session != null || progress.isCancelled();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Chunk state store keeping the completed chunks of a file in a {@link ChunkBitmap} on its
+ * {@code file_metadata} row instead of one {@code chunk_metadata} row per chunk.
+ * <p>
+ * The bitmaps of files being uploaded are cached, so a flush is a single update of the
+ * {@code chunk_bitmap} column. The chunk digests are kept in one {@code chunk_digest} row per chunk, so a
+ * flush writes only the digests of its own chunks, whatever the size of the file. Callers that still expect
+ * {@link ChunkMetadata} records get them synthesized from the bitmap through {@link #findChunks(Long)}.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.ChunkMetadata;
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BitmapChunkStateStore implements ChunkStateStore {
+
+    private static final byte[] EMPTY_DIGEST = new byte[ChunkDigests.DIGEST_LENGTH];
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final Map<Long, ChunkBitmap> bitmaps = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the store on top of the file metadata repository.
+     *
+     * @param fileMetadataRepository The repository for file metadata.
+     */
+    public BitmapChunkStateStore(FileMetadataRepository fileMetadataRepository) {
+        this.fileMetadataRepository = fileMetadataRepository;
+    }
+
+    @Override
+    public void initialize(FileMetadata metadata) {
+        bitmaps.computeIfAbsent(metadata.getId(),
+                id -> ChunkBitmap.decode(metadata.getTotalChunks(), metadata.getChunkBitmap()));
+    }
+
+    @Override
+    public BitSet findCompletedChunks(FileMetadata metadata) {
+        initialize(metadata);
+        return bitmaps.get(metadata.getId()).toBitSet();
+    }
+
+    @Override
+    public void markCompleted(Long fileId, List<Integer> chunkNumbers, List<byte[]> chunkDigests) {
+        ChunkBitmap bitmap = bitmaps.computeIfAbsent(fileId, this::load);
+        List<String> hexDigests = new ArrayList<>(chunkDigests.size());
+        for (byte[] digest : chunkDigests) {
+            hexDigests.add(ChunkDigests.toHex(digest));
+        }
+        // Digests first: a chunk whose bit is lost after a crash is transferred again, a set bit always has a digest
+        fileMetadataRepository.upsertChunkDigests(fileId, chunkNumbers, hexDigests);
+        for (int chunkNumber : chunkNumbers) {
+            bitmap.set(chunkNumber);
+        }
+        fileMetadataRepository.updateChunkBitmap(fileId, bitmap.encode());
+    }
+
+    @Override
+    public byte[][] findDigests(FileMetadata metadata) {
+        ChunkBitmap bitmap = bitmaps.get(metadata.getId());
+        if (bitmap == null) {
+            // Not being uploaded, the metadata passed in may predate the last flush
+            bitmap = load(metadata.getId());
+        }
+        byte[][] chunkDigests = unpack(metadata);
+        for (Object[] row : fileMetadataRepository.findChunkDigests(metadata.getId())) {
+            chunkDigests[(Integer) row[0]] = ChunkDigests.fromHex((String) row[1]);
+        }
+        for (int chunk = 0; chunk < bitmap.getTotalChunks(); chunk++) {
+            if (!bitmap.isCompleted(chunk)) {
+                chunkDigests[chunk] = null;
+            }
+        }
+        return chunkDigests;
+    }
+
+    @Override
+    public List<ChunkMetadata> findChunks(Long fileId) {
+        ChunkBitmap bitmap = bitmaps.containsKey(fileId) ? bitmaps.get(fileId) : load(fileId);
+        List<ChunkMetadata> chunks = new ArrayList<>(bitmap.getTotalChunks());
+        for (int i = 0; i < bitmap.getTotalChunks(); i++) {
+            boolean completed = bitmap.isCompleted(i);
+            chunks.add(new ChunkMetadata(fileId, i, completed ? "Completed" : "Pending", completed ? 100.0 : 0.0));
+        }
+        return chunks;
+    }
+
+    @Override
+    public void release(Long fileId) {
+        bitmaps.remove(fileId);
+    }
+
+    @Override
+    public void delete(Long fileId) {
+        bitmaps.remove(fileId);
+    }
+
+    /**
+     * Loads the bitmap of a file from its metadata record.
+     */
+    private ChunkBitmap load(Long fileId) {
+        FileMetadata metadata = fileMetadataRepository.findById(fileId)
+                .orElseThrow(() -> new IllegalStateException("File metadata not found: " + fileId));
+        return ChunkBitmap.decode(metadata.getTotalChunks(), metadata.getChunkBitmap());
+    }
+
+    /**
+     * Returns the digests packed into {@code chunk_digests} of a file recorded before digests had rows of their
+     * own, with null for all-zero slots, i.e. chunks completed before digests were recorded at all.
+     */
+    private static byte[][] unpack(FileMetadata metadata) {
+        byte[][] chunkDigests = new byte[metadata.getTotalChunks()][];
+        byte[] packed = metadata.getChunkDigests();
+        if (packed == null) {
+            return chunkDigests;
+        }
+        int chunks = Math.min(chunkDigests.length, packed.length / ChunkDigests.DIGEST_LENGTH);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            byte[] digest = Arrays.copyOfRange(packed, chunk * ChunkDigests.DIGEST_LENGTH,
+                    (chunk + 1) * ChunkDigests.DIGEST_LENGTH);
+            if (!Arrays.equals(digest, EMPTY_DIGEST)) {
+                chunkDigests[chunk] = digest;
+            }
+        }
+        return chunkDigests;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Compact representation of the completed chunks of a file.
+ * <p>
+ * One bit is kept per chunk. When stored, small bitmaps are written as raw bits, while bitmaps of large
+ * files are run-length encoded: an upload in progress is mostly made of long runs of completed and
+ * pending chunks, so the encoded form stays a few bytes long even for files with millions of chunks.
+ * </p>
+ *
+ * <h2>Encoding</h2>
+ * <ul>
+ *   <li><b>Raw:</b> the byte {@code 0} followed by the bits as produced by {@link BitSet#toByteArray()}.</li>
+ *   <li><b>Run-length:</b> the byte {@code 1} followed by variable-length run lengths, alternating
+ *   between pending and completed chunks and starting with pending chunks.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class ChunkBitmap {
+
+    /**
+     * Number of chunks from which the run-length encoding is considered.
+     */
+    static final int COMPRESSION_THRESHOLD = 4096;
+
+    private static final byte RAW = 0;
+    private static final byte RUN_LENGTH = 1;
+
+    private final int totalChunks;
+    private final BitSet completed;
+
+    /**
+     * Creates a bitmap in which no chunk is completed.
+     *
+     * @param totalChunks The total number of chunks of the file.
+     */
+    public ChunkBitmap(int totalChunks) {
+        this(totalChunks, new BitSet(totalChunks));
+    }
+
+    private ChunkBitmap(int totalChunks, BitSet completed) {
+        this.totalChunks = totalChunks;
+        this.completed = completed;
+    }
+
+    /**
+     * Restores a bitmap from its stored form.
+     *
+     * @param totalChunks The total number of chunks of the file.
+     * @param data The stored bitmap, or null if nothing has been stored yet.
+     * @return The decoded bitmap.
+     */
+    public static ChunkBitmap decode(int totalChunks, byte[] data) {
+        if (data == null || data.length == 0) {
+            return new ChunkBitmap(totalChunks);
+        }
+        if (data[0] == RAW) {
+            return new ChunkBitmap(totalChunks, BitSet.valueOf(Arrays.copyOfRange(data, 1, data.length)));
+        }
+        if (data[0] != RUN_LENGTH) {
+            throw new IllegalArgumentException("Unknown chunk bitmap encoding: " + data[0]);
+        }
+
+        BitSet bits = new BitSet(totalChunks);
+        ByteBuffer buffer = ByteBuffer.wrap(data, 1, data.length - 1);
+        int position = 0;
+        boolean set = false;
+        while (buffer.hasRemaining()) {
+            int run = readVarInt(buffer);
+            if (set) {
+                bits.set(position, position + run);
+            }
+            position += run;
+            set = !set;
+        }
+        return new ChunkBitmap(totalChunks, bits);
+    }
+
+    /**
+     * Encodes the bitmap for storage, using the run-length form when the file is large and it is smaller.
+     *
+     * @return The encoded bitmap.
+     */
+    public synchronized byte[] encode() {
+        byte[] raw = completed.toByteArray();
+        if (totalChunks >= COMPRESSION_THRESHOLD) {
+            byte[] runs = encodeRuns();
+            if (runs.length < raw.length + 1) {
+                return runs;
+            }
+        }
+        byte[] data = new byte[raw.length + 1];
+        data[0] = RAW;
+        System.arraycopy(raw, 0, data, 1, raw.length);
+        return data;
+    }
+
+    private byte[] encodeRuns() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(RUN_LENGTH);
+        int position = 0;
+        boolean set = false;
+        while (position < totalChunks) {
+            int next = set ? completed.nextClearBit(position) : completed.nextSetBit(position);
+            if (next < 0 || next > totalChunks) {
+                next = totalChunks;
+            }
+            writeVarInt(out, next - position);
+            position = next;
+            set = !set;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Marks a chunk as completed.
+     *
+     * @param chunkNumber The sequential number of the chunk.
+     */
+    public synchronized void set(int chunkNumber) {
+        completed.set(chunkNumber);
+    }
+
+    /**
+     * @param chunkNumber The sequential number of the chunk.
+     * @return true if the chunk is completed, false otherwise.
+     */
+    public synchronized boolean isCompleted(int chunkNumber) {
+        return completed.get(chunkNumber);
+    }
+
+    /**
+     * @return The number of completed chunks.
+     */
+    public synchronized int completedCount() {
+        return completed.cardinality();
+    }
+
+    /**
+     * @return The number of chunks completed without a gap from the start of the file.
+     */
+    public synchronized int contiguousCount() {
+        return Math.min(completed.nextClearBit(0), totalChunks);
+    }
+
+    /**
+     * @return The total number of chunks of the file.
+     */
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    /**
+     * @return A copy of the completed chunks as a {@link BitSet}.
+     */
+    public synchronized BitSet toBitSet() {
+        return (BitSet) completed.clone();
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
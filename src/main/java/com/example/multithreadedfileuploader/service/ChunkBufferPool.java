@@ -0,0 +1,68 @@
+/**
+ * Bounded pool of direct buffers holding the chunks of streamed uploads.
+ * <p>
+ * Streamed uploads read the request body into these buffers and hand them to the chunk writers. The pool
+ * holds at most {@code uploader.stream.buffers} buffers across all streamed uploads; a reader that finds
+ * no free buffer blocks until a chunk has been written, which stops reading from the connection and lets
+ * TCP flow control slow the client down. Memory therefore stays bounded by the chunks in flight instead
+ * of growing with the file size, and no temporary file is needed.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+@Component
+public class ChunkBufferPool {
+
+    private final Semaphore available;
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates the pool.
+     *
+     * @param buffers The maximum number of buffers handed out at the same time.
+     */
+    @Autowired
+    public ChunkBufferPool(@Value("${uploader.stream.buffers:8}") int buffers) {
+        if (buffers < 1) {
+            throw new IllegalArgumentException("The stream buffer pool needs at least one buffer");
+        }
+        this.available = new Semaphore(buffers);
+    }
+
+    /**
+     * Takes a buffer from the pool, waiting until one is free.
+     *
+     * @param size The number of bytes the buffer must hold.
+     * @return A cleared buffer whose limit is {@code size}.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public ByteBuffer acquire(int size) throws InterruptedException {
+        available.acquire();
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            // A buffer that is too small is dropped and replaced, so the pool never grows beyond its bound
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     *
+     * @param buffer A buffer obtained from {@link #acquire(int)}.
+     */
+    public void release(ByteBuffer buffer) {
+        freeBuffers.offer(buffer);
+        available.release();
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * SHA-256 helpers for chunk digests and the Merkle-tree digest of a file.
+ * <p>
+ * Every chunk is hashed by the thread that transfers it, so hashing is spread across the chunk threads
+ * alongside the I/O. The file digest is a binary Merkle tree over the chunk digests: verifying a
+ * completed file only combines the stored chunk digests, it never reads the file again.
+ * </p>
+ *
+ * <h2>Tree Layout</h2>
+ * <ul>
+ *   <li>Leaves are {@code SHA-256(0x00 || chunk digest)}, inner nodes are {@code SHA-256(0x01 || left || right)},
+ *   so a leaf can never be mistaken for an inner node.</li>
+ *   <li>A node without a sibling is promoted to the next level unchanged.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class ChunkDigests {
+
+    /**
+     * Length of a SHA-256 digest in bytes.
+     */
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private ChunkDigests() {
+    }
+
+    /**
+     * @return A new SHA-256 {@link MessageDigest}.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Hashes the remaining bytes of a buffer without consuming them.
+     *
+     * @param data The chunk data.
+     * @return The SHA-256 digest of the data.
+     */
+    public static byte[] digest(ByteBuffer data) {
+        MessageDigest digest = sha256();
+        digest.update(data.duplicate());
+        return digest.digest();
+    }
+
+    /**
+     * Computes the Merkle root of a file from the digests of its chunks.
+     *
+     * @param chunkDigests The digest of every chunk, in chunk order.
+     * @return The root digest, or null if a chunk digest is missing.
+     */
+    public static byte[] merkleRoot(byte[][] chunkDigests) {
+        if (chunkDigests.length == 0) {
+            return sha256().digest();
+        }
+        MessageDigest digest = sha256();
+        byte[][] level = new byte[chunkDigests.length][];
+        for (int i = 0; i < chunkDigests.length; i++) {
+            if (chunkDigests[i] == null) {
+                return null;
+            }
+            digest.update(LEAF_PREFIX);
+            digest.update(chunkDigests[i]);
+            level[i] = digest.digest();
+        }
+
+        int size = level.length;
+        while (size > 1) {
+            int next = 0;
+            for (int i = 0; i < size; i += 2) {
+                if (i + 1 == size) {
+                    level[next++] = level[i];
+                } else {
+                    digest.update(NODE_PREFIX);
+                    digest.update(level[i]);
+                    digest.update(level[i + 1]);
+                    level[next++] = digest.digest();
+                }
+            }
+            size = next;
+        }
+        return level[0];
+    }
+
+    /**
+     * @param digest A digest.
+     * @return The lowercase hex encoding of the digest, as stored in the database.
+     */
+    public static String toHex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * @param hex A hex-encoded digest, or null.
+     * @return The decoded digest, or null if none was given.
+     * @throws IllegalArgumentException If the value is not a hex-encoded SHA-256 digest.
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex == null) {
+            return null;
+        }
+        byte[] digest = HexFormat.of().parseHex(hex);
+        if (digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("Not a SHA-256 digest: " + hex);
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Offsets, lengths, and digests of the variable-size chunks of a file, as cut by the
+ * {@link ContentDefinedChunker}.
+ */
+package com.example.multithreadedfileuploader.service;
+
+public class ChunkLayout {
+
+    private final long[] offsets;
+    private final int[] lengths;
+    private final byte[][] digests;
+
+    /**
+     * Creates a layout.
+     *
+     * @param offsets The offset of each chunk in the file.
+     * @param lengths The length of each chunk in bytes.
+     * @param digests The SHA-256 digest of each chunk.
+     */
+    public ChunkLayout(long[] offsets, int[] lengths, byte[][] digests) {
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.digests = digests;
+    }
+
+    /**
+     * @return The number of chunks.
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The offset of the chunk in the file.
+     */
+    public long offset(int chunkNumber) {
+        return offsets[chunkNumber];
+    }
+
+    /**
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The length of the chunk in bytes.
+     */
+    public int length(int chunkNumber) {
+        return lengths[chunkNumber];
+    }
+
+    /**
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The SHA-256 digest of the chunk.
+     */
+    public byte[] digest(int chunkNumber) {
+        return digests[chunkNumber];
+    }
+
+    /**
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The hex-encoded SHA-256 digest of the chunk, as stored in {@code chunk_metadata.digest}.
+     */
+    public String hexDigest(int chunkNumber) {
+        return ChunkDigests.toHex(digests[chunkNumber]);
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * Write-behind layer for chunk progress.
+ * <p>
+ * Instead of three synchronous database round-trips per completed chunk, chunk completions are collected
+ * in memory per file and flushed in batches, either when a file has collected
+ * {@code uploader.metadata.flush-batch-size} completions or every {@code uploader.metadata.flush-interval-ms}.
+ * A flush hands the batch to the {@link ChunkStateStore} (a single multi-row chunk update, or a single
+ * bitmap update in bitmap mode) and issues a single {@code FileMetadata} update per file.
+ * </p>
+ * <p>
+ * With the {@link ProgressJournal} enabled ({@code uploader.journal.enabled}), every completion is appended to
+ * the journal first and the database becomes a checkpoint of it: completions are only flushed every
+ * {@code uploader.journal.checkpoint-interval-ms}, after which the journaled generations covered by the
+ * checkpoint are deleted. Completions journaled before a crash are replayed into the database when the
+ * writer starts, before any upload can resume.
+ * </p>
+ *
+ * <h2>Key Features</h2>
+ * <ul>
+ *   <li>Size- and time-based batching of chunk status updates, together with the chunk digests.</li>
+ *   <li>Explicit {@link #flush(Long)} used on completion, pause, and cancel so resume stays correct.</li>
+ *   <li>Failed flushes keep their completions pending and are retried on the next flush.</li>
+ *   <li>Optional write-ahead journaling with periodic checkpoints and replay after a crash.</li>
+ *   <li>Journaling a completion and adding it to the pending completions is atomic with respect to the
+ *   rotation of a checkpoint, so a checkpoint never deletes a completion it did not write.</li>
+ *   <li>The {@link UploadTarget}s holding the chunks of a batch are synced before the batch is written to the
+ *   database, as they are before a group commit of the journal, so no crash leaves a chunk recorded as
+ *   completed whose bytes were lost.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+@Component
+public class ChunkProgressWriter {
+
+    private static final Logger logger = Logger.getLogger(ChunkProgressWriter.class.getName());
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final ChunkStateStore chunkStateStore;
+    private final ProgressJournal journal;
+    private final int batchSize;
+    private final Map<Long, PendingProgress> pending = new ConcurrentHashMap<>();
+    // Shared by recordings, exclusive for a rotation, so every journaled completion is pending at a rotation
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Creates the writer, replays the journal left by a previous run, and starts the periodic flush.
+     *
+     * @param fileMetadataRepository The repository for file metadata.
+     * @param chunkStateStore The store keeping the chunk state of files.
+     * @param journal The write-ahead journal of chunk completions.
+     * @param batchSize The number of completions of a file that triggers a flush. Not used with the journal.
+     * @param flushIntervalMs The interval in milliseconds between periodic flushes.
+     * @param checkpointIntervalMs The interval in milliseconds between checkpoints with the journal.
+     */
+    @Autowired
+    public ChunkProgressWriter(FileMetadataRepository fileMetadataRepository,
+                               ChunkStateStore chunkStateStore,
+                               ProgressJournal journal,
+                               @Value("${uploader.metadata.flush-batch-size:64}") int batchSize,
+                               @Value("${uploader.metadata.flush-interval-ms:1000}") long flushIntervalMs,
+                               @Value("${uploader.journal.checkpoint-interval-ms:30000}") long checkpointIntervalMs) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.chunkStateStore = chunkStateStore;
+        this.journal = journal;
+        // The journal already makes every completion durable, so only checkpoints go to the database
+        this.batchSize = journal.isEnabled() ? Integer.MAX_VALUE : batchSize;
+        replayJournal();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chunk-progress-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (journal.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::checkpoint, checkpointIntervalMs, checkpointIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Records a completed chunk and its digest. The completion is journaled, and the database is updated by
+     * a later flush.
+     *
+     * @param fileId The ID of the file the chunk belongs to.
+     * @param chunkNumber The sequential number of the completed chunk.
+     * @param digest The SHA-256 digest of the chunk.
+     * @param uploadedChunks The number of chunks completed without a gap from the start of the file.
+     * @param target The target the chunk was written to, synced before the completion is made durable.
+     */
+    public void recordChunkCompleted(Long fileId, int chunkNumber, byte[] digest, int uploadedChunks,
+                                     UploadTarget target) {
+        boolean batchFull;
+        rotationLock.readLock().lock();
+        try {
+            journal.append(fileId, chunkNumber, uploadedChunks, digest, target);
+            batchFull = addPending(fileId, chunkNumber, digest, uploadedChunks, target);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        if (batchFull) {
+            flush(fileId);
+        }
+    }
+
+    /**
+     * Adds a completion to the pending completions of its file.
+     *
+     * @param target The target holding the chunk, or null for a completion replayed from the journal.
+     * @return true if the batch of the file is full and has to be flushed.
+     */
+    private boolean addPending(Long fileId, int chunkNumber, byte[] digest, int uploadedChunks, UploadTarget target) {
+        PendingProgress progress = pending.computeIfAbsent(fileId, id -> new PendingProgress());
+        synchronized (progress) {
+            progress.chunkNumbers.add(chunkNumber);
+            progress.digests.add(digest);
+            if (target != null) {
+                progress.targets.add(target);
+            }
+            progress.uploadedChunks = Math.max(progress.uploadedChunks, uploadedChunks);
+            return progress.chunkNumbers.size() >= batchSize;
+        }
+    }
+
+    /**
+     * Writes all pending completions of a file to the database.
+     *
+     * @param fileId The ID of the file to flush.
+     * @return true if nothing of the file is left pending, false if the flush failed.
+     */
+    public boolean flush(Long fileId) {
+        PendingProgress progress = pending.get(fileId);
+        if (progress == null) {
+            return true;
+        }
+
+        // Flushes of the same file are serialized so uploadedChunks is never written out of order
+        synchronized (progress.flushLock) {
+            List<Integer> chunkNumbers;
+            List<byte[]> digests;
+            Set<UploadTarget> targets;
+            int uploadedChunks;
+            synchronized (progress) {
+                if (progress.chunkNumbers.isEmpty()) {
+                    return true;
+                }
+                chunkNumbers = progress.chunkNumbers;
+                digests = progress.digests;
+                targets = progress.targets;
+                uploadedChunks = progress.uploadedChunks;
+                progress.targets = newTargetSet();
+                progress.chunkNumbers = new ArrayList<>();
+                progress.digests = new ArrayList<>();
+            }
+
+            try {
+                for (UploadTarget target : targets) {
+                    target.sync();
+                }
+                chunkStateStore.markCompleted(fileId, chunkNumbers, digests);
+                fileMetadataRepository.updateUploadedChunks(fileId, uploadedChunks);
+                return true;
+            } catch (Exception e) {
+                logger.severe("Failed to flush chunk progress for fileId: " + fileId + " - " + e.getMessage());
+                synchronized (progress) {
+                    progress.chunkNumbers.addAll(chunkNumbers);
+                    progress.digests.addAll(digests);
+                    progress.targets.addAll(targets);
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Writes the pending completions of a file and stops tracking it.
+     * Used when an upload completes, is paused, or is canceled.
+     *
+     * @param fileId The ID of the file to flush.
+     */
+    public void flushAndRelease(Long fileId) {
+        flush(fileId);
+        PendingProgress progress = pending.get(fileId);
+        if (progress != null) {
+            synchronized (progress) {
+                if (progress.chunkNumbers.isEmpty()) {
+                    pending.remove(fileId, progress);
+                }
+            }
+        }
+        chunkStateStore.release(fileId);
+    }
+
+    /**
+     * Drops the pending completions of a file without writing them, e.g. when its metadata is deleted.
+     *
+     * @param fileId The ID of the file to forget.
+     */
+    public void discard(Long fileId) {
+        pending.remove(fileId);
+    }
+
+    /**
+     * Writes the pending completions of all files.
+     *
+     * @return true if every flush succeeded.
+     */
+    public boolean flushAll() {
+        boolean flushed = true;
+        for (Long fileId : pending.keySet()) {
+            flushed &= flush(fileId);
+        }
+        return flushed;
+    }
+
+    /**
+     * Checkpoints the journal: writes all pending completions to the database and deletes the journal
+     * generations they were appended to. If a flush fails, the generations are kept until a later checkpoint.
+     */
+    public void checkpoint() {
+        // Completions recorded from here on go to the new generation. No recording is between its append and
+        // becoming pending during the rotation, so every completion of the older generations is pending already.
+        long generation;
+        rotationLock.writeLock().lock();
+        try {
+            generation = journal.rotate();
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+        if (flushAll()) {
+            journal.deleteBefore(generation);
+        }
+    }
+
+    /**
+     * Flushes all pending completions, stops the periodic flush, and closes the journal.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        if (journal.isEnabled()) {
+            checkpoint();
+            journal.close();
+        } else {
+            flushAll();
+        }
+    }
+
+    /**
+     * Writes the completions journaled before the last shutdown or crash to the database.
+     * <p>
+     * Completions of files that no longer exist are dropped. If a file cannot be written for another reason,
+     * its completions stay pending and the journal is kept until a later checkpoint succeeds.
+     * </p>
+     */
+    private void replayJournal() {
+        List<ProgressJournal.Entry> entries = journal.readAll();
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> completionsByFile = new LinkedHashMap<>();
+        for (ProgressJournal.Entry entry : entries) {
+            addPending(entry.getFileId(), entry.getChunkNumber(), entry.getDigest(), entry.getUploadedChunks(), null);
+            completionsByFile.merge(entry.getFileId(), 1, Integer::sum);
+        }
+        boolean replayed = true;
+        for (Map.Entry<Long, Integer> file : completionsByFile.entrySet()) {
+            Long fileId = file.getKey();
+            if (flush(fileId)) {
+                logger.info("Recovered " + file.getValue() + " journaled chunk completions for fileId: " + fileId);
+            } else if (!fileMetadataRepository.existsById(fileId)) {
+                logger.warning("Dropping journaled chunk completions of deleted fileId: " + fileId);
+                discard(fileId);
+            } else {
+                replayed = false;
+                continue;
+            }
+            pending.remove(fileId);
+            chunkStateStore.release(fileId);
+        }
+        if (replayed) {
+            journal.deleteBefore(journal.rotate());
+        }
+    }
+
+    /**
+     * Creates a set of targets compared by identity.
+     */
+    private static Set<UploadTarget> newTargetSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Completions of a single file waiting to be flushed.
+     */
+    private static class PendingProgress {
+        private final Object flushLock = new Object();
+        private List<Integer> chunkNumbers = new ArrayList<>();
+        private List<byte[]> digests = new ArrayList<>();
+        private Set<UploadTarget> targets = newTargetSet();
+        private int uploadedChunks;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Reads chunk regions of a source file and hands them to an {@link UploadTarget} without copying
+ * them through heap buffers.
+ * <p>
+ * Local targets receive read-only {@link MappedByteBuffer} slices of the source file, which they write
+ * straight from the page cache. Other targets are fed with {@link FileChannel#transferTo}, letting the
+ * JDK move the bytes with its own reusable direct buffers. Reading into a heap {@code byte[]} buffer is
+ * only used as a fallback when a region cannot be mapped, so the heap stays flat regardless of file size.
+ * </p>
+ * <p>
+ * Every region is hashed with SHA-256 on its way to the target, by the thread transferring it, so the
+ * chunk digests come for free with the transfer instead of a second pass over the file.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.logging.Logger;
+
+public class ChunkReader {
+
+    private static final Logger logger = Logger.getLogger(ChunkReader.class.getName());
+
+    private final FileChannel source;
+    private volatile boolean mappingSupported = true;
+
+    /**
+     * Creates a reader for the given source channel. The channel is not closed by the reader.
+     *
+     * @param source The channel of the file being uploaded.
+     */
+    public ChunkReader(FileChannel source) {
+        this.source = source;
+    }
+
+    /**
+     * Transfers a region of the source file into the target at the same offset.
+     *
+     * @param target The target receiving the file.
+     * @param offset The offset of the region in the source file.
+     * @param length The length of the region in bytes.
+     * @return The SHA-256 digest of the region.
+     * @throws IOException If the region cannot be read or written.
+     */
+    public byte[] transfer(UploadTarget target, long offset, int length) throws IOException {
+        if (target.isLocal() && mappingSupported) {
+            MappedByteBuffer region;
+            try {
+                region = source.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.warning("Memory mapping unavailable, falling back to heap buffers: " + e.getMessage());
+                mappingSupported = false;
+                return transferThroughHeap(target, offset, length);
+            }
+            // Hashing faults the pages in, so the write that follows is served from the page cache
+            byte[] digest = ChunkDigests.digest(region);
+            target.write(offset, region);
+            return digest;
+        } else if (!target.isLocal()) {
+            return transferToChannel(target, offset, length);
+        } else {
+            return transferThroughHeap(target, offset, length);
+        }
+    }
+
+    /**
+     * Streams a region into the target channel with {@link FileChannel#transferTo}, hashing the bytes
+     * as the channel receives them.
+     */
+    private byte[] transferToChannel(UploadTarget target, long offset, int length) throws IOException {
+        MessageDigest digest = ChunkDigests.sha256();
+        try (WritableByteChannel channel = new DigestingChannel(target.channel(offset), digest)) {
+            long transferred = 0;
+            while (transferred < length) {
+                long count = source.transferTo(offset + transferred, length - transferred, channel);
+                if (count <= 0) {
+                    throw new EOFException("Unexpected end of file at offset " + (offset + transferred));
+                }
+                transferred += count;
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Copies a region through a heap buffer. Only used when the region cannot be mapped.
+     */
+    private byte[] transferThroughHeap(UploadTarget target, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        buffer.flip();
+        byte[] digest = ChunkDigests.digest(buffer);
+        target.write(offset, buffer);
+        return digest;
+    }
+
+    /**
+     * Channel feeding every byte written to the target into a digest.
+     */
+    private static class DigestingChannel implements WritableByteChannel {
+        private final WritableByteChannel target;
+        private final MessageDigest digest;
+
+        DigestingChannel(WritableByteChannel target, MessageDigest digest) {
+            this.target = target;
+            this.digest = digest;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ByteBuffer written = src.duplicate();
+            int count = target.write(src);
+            written.limit(written.position() + count);
+            digest.update(written);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+}
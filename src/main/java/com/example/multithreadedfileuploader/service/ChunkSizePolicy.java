@@ -0,0 +1,132 @@
+/**
+ * Chooses the chunk size of each upload from the size of the file and the measured transfer throughput.
+ * <p>
+ * A fixed chunk size is a poor fit for every file: small files pay for chunks they do not need, while large
+ * files are cut into so many chunks that metadata updates and per-chunk latency dominate the transfer. The
+ * policy therefore targets a bounded number of chunks per file ({@code uploader.chunks.target-count}) and,
+ * on fast links, grows the chunks so that a single chunk still takes about
+ * {@code uploader.chunks.target-millis} to transfer. Chunk sizes are powers of two between
+ * {@code uploader.chunks.min-size} and {@code uploader.chunks.max-size}.
+ * </p>
+ * <p>
+ * The chosen size is stored on the {@link com.example.multithreadedfileuploader.entity.FileMetadata} of the
+ * upload, so resuming the upload later always uses the same chunk layout.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ChunkSizePolicy {
+
+    /**
+     * Weight of the latest measurement in the throughput estimate.
+     */
+    private static final double THROUGHPUT_SMOOTHING = 0.2;
+
+    private final long minChunkSize;
+    private final long maxChunkSize;
+    private final int targetChunkCount;
+    private final long targetChunkMillis;
+
+    /**
+     * Smoothed throughput of a single chunk transfer in bytes per second, 0 until the first measurement.
+     */
+    private volatile double throughput;
+
+    /**
+     * Creates the policy.
+     *
+     * @param minChunkSize The smallest chunk size in bytes.
+     * @param maxChunkSize The largest chunk size in bytes.
+     * @param targetChunkCount The number of chunks a file should be split into.
+     * @param targetChunkMillis The time a single chunk should take to transfer on a fast link.
+     */
+    @Autowired
+    public ChunkSizePolicy(@Value("${uploader.chunks.min-size:262144}") long minChunkSize,
+                           @Value("${uploader.chunks.max-size:16777216}") long maxChunkSize,
+                           @Value("${uploader.chunks.target-count:1024}") int targetChunkCount,
+                           @Value("${uploader.chunks.target-millis:250}") long targetChunkMillis) {
+        if (minChunkSize < 1 || maxChunkSize < minChunkSize || maxChunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 1 <= min <= max <= " + Integer.MAX_VALUE);
+        }
+        if (targetChunkCount < 1) {
+            throw new IllegalArgumentException("The target chunk count must be at least 1");
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetChunkCount = targetChunkCount;
+        this.targetChunkMillis = targetChunkMillis;
+    }
+
+    /**
+     * Chooses the chunk size of a new upload.
+     *
+     * @param fileSize The size of the file in bytes.
+     * @return The chunk size in bytes.
+     */
+    public long chooseChunkSize(long fileSize) {
+        // Enough to stay within the target chunk count
+        long size = ceilDiv(fileSize, targetChunkCount);
+
+        // Large enough that a chunk is not dominated by per-chunk latency on a fast link
+        double currentThroughput = throughput;
+        if (currentThroughput > 0) {
+            size = Math.max(size, (long) (currentThroughput * targetChunkMillis / 1000));
+        }
+
+        size = Math.min(Math.max(roundUpToPowerOfTwo(size), minChunkSize), maxChunkSize);
+
+        // Chunk numbers are ints, a huge file must never need more chunks than that
+        return Math.max(size, ceilDiv(fileSize, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of chunks of a file.
+     *
+     * @param fileSize The size of the file in bytes.
+     * @param chunkSize The chunk size in bytes.
+     * @return The number of chunks.
+     */
+    public static int totalChunks(long fileSize, long chunkSize) {
+        return Math.toIntExact(ceilDiv(fileSize, chunkSize));
+    }
+
+    /**
+     * Records the duration of a chunk transfer, refining the throughput estimate used for new uploads.
+     *
+     * @param bytes The number of bytes transferred.
+     * @param nanos The duration of the transfer in nanoseconds.
+     */
+    public void recordTransfer(long bytes, long nanos) {
+        if (bytes <= 0 || nanos <= 0) {
+            return;
+        }
+        double measured = bytes * 1_000_000_000.0 / nanos;
+        double previous = throughput;
+        // Lost updates between concurrent chunks only skip a sample, which the estimate tolerates
+        throughput = previous == 0 ? measured : previous + THROUGHPUT_SMOOTHING * (measured - previous);
+    }
+
+    /**
+     * @return The smoothed throughput of a single chunk transfer in bytes per second, 0 if unknown.
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return dividend <= 0 ? 0 : (dividend + divisor - 1) / divisor;
+    }
+
+    private static long roundUpToPowerOfTwo(long value) {
+        if (value <= 1) {
+            return 1;
+        }
+        long highest = Long.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
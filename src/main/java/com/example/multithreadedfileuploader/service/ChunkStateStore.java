@@ -0,0 +1,82 @@
+/**
+ * Storage for the per-chunk completion state of uploads.
+ * <p>
+ * The upload service and the {@link ChunkProgressWriter} only talk to this interface, so the chunk
+ * state can either live in one {@code chunk_metadata} row per chunk or in a compact bitmap on the
+ * {@code file_metadata} row, selected by {@code uploader.metadata.chunk-state}.
+ * </p>
+ *
+ * <h2>Implementations</h2>
+ * <ul>
+ *   <li><b>{@link RowChunkStateStore}:</b> One {@code ChunkMetadata} row per chunk (default).</li>
+ *   <li><b>{@link BitmapChunkStateStore}:</b> One {@link ChunkBitmap} per file in {@code file_metadata.chunk_bitmap}.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.ChunkMetadata;
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+
+import java.util.BitSet;
+import java.util.List;
+
+public interface ChunkStateStore {
+
+    /**
+     * Creates the chunk state of a file if it does not exist yet.
+     *
+     * @param metadata The metadata of the file.
+     */
+    void initialize(FileMetadata metadata);
+
+    /**
+     * Returns the chunks of a file that are already completed, used to resume exactly the missing chunks.
+     *
+     * @param metadata The metadata of the file.
+     * @return The completed chunk numbers.
+     */
+    BitSet findCompletedChunks(FileMetadata metadata);
+
+    /**
+     * Marks several chunks of a file as completed and stores their digests.
+     *
+     * @param fileId The ID of the file.
+     * @param chunkNumbers The numbers of the completed chunks.
+     * @param digests The SHA-256 digest of each completed chunk, in the order of {@code chunkNumbers}.
+     */
+    void markCompleted(Long fileId, List<Integer> chunkNumbers, List<byte[]> digests);
+
+    /**
+     * Returns the stored digests of the completed chunks of a file.
+     *
+     * @param metadata The metadata of the file.
+     * @return The SHA-256 digest of every chunk, or null for chunks that are not completed or were completed
+     *         without a digest.
+     */
+    byte[][] findDigests(FileMetadata metadata);
+
+    /**
+     * Returns the chunks of a file in the {@link ChunkMetadata} form used by existing callers.
+     *
+     * @param fileId The ID of the file.
+     * @return The chunks of the file.
+     */
+    List<ChunkMetadata> findChunks(Long fileId);
+
+    /**
+     * Releases any state cached for a file once its upload has stopped.
+     *
+     * @param fileId The ID of the file.
+     */
+    default void release(Long fileId) {
+        // Nothing cached by default
+    }
+
+    /**
+     * Deletes the chunk state of a file. Called before its {@code file_metadata} row is deleted, which
+     * removes its {@code chunk_metadata} rows by cascade.
+     *
+     * @param fileId The ID of the file.
+     */
+    void delete(Long fileId);
+}
@@ -0,0 +1,181 @@
+/**
+ * Cuts an incoming byte stream into chunks on the fly and writes them into an {@link UploadTarget}.
+ * <p>
+ * The calling thread reads the stream sequentially into buffers from the {@link ChunkBufferPool} and
+ * hands every filled chunk to the chunk executor, which writes it at its offset while the next chunk is
+ * being read. Reading blocks while all pool buffers are in flight, so the bytes held in memory are bounded
+ * by the pool and never by the size of the stream.
+ * </p>
+ * <p>
+ * Every chunk is granted by the {@link BandwidthScheduler} before it is handed over, so streamed uploads
+ * share the chunk slots and the bandwidth with all other uploads; waiting for a grant stops reading, which
+ * slows the sender down.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ChunkStreamer {
+
+    private final ChunkBufferPool bufferPool;
+    private final ExecutorService chunkExecutor;
+    private final BandwidthScheduler scheduler;
+    private final UploadTarget target;
+    private final long chunkSize;
+    private final ChunkTransferEngine.ChunkListener listener;
+
+    /**
+     * Creates a streamer writing into the given target.
+     *
+     * @param bufferPool The pool providing the chunk buffers.
+     * @param chunkExecutor The executor writing the chunks.
+     * @param scheduler The scheduler granting the chunks.
+     * @param target The target receiving the stream.
+     * @param chunkSize The size of a chunk in bytes.
+     * @param listener The listener notified when a chunk has been written.
+     */
+    public ChunkStreamer(ChunkBufferPool bufferPool, ExecutorService chunkExecutor, BandwidthScheduler scheduler,
+                         UploadTarget target, long chunkSize, ChunkTransferEngine.ChunkListener listener) {
+        this.bufferPool = bufferPool;
+        this.chunkExecutor = chunkExecutor;
+        this.scheduler = scheduler;
+        this.target = target;
+        this.chunkSize = chunkSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Streams the input into the target until all chunks are written or the session is canceled.
+     * <p>
+     * Chunks already completed by an earlier attempt are read from the stream but not written again.
+     * Pausing the session stops reading, which applies back-pressure to the sender until it is resumed.
+     * </p>
+     *
+     * @param input The stream to read, positioned at the first byte of the file.
+     * @param fileSize The number of bytes the stream is expected to deliver.
+     * @param completedChunks The chunks already completed by an earlier attempt.
+     * @param session The session of the upload.
+     * @return true if all chunks were written, false if the upload was canceled.
+     * @throws Exception If the stream ends early, or a chunk cannot be read or written.
+     */
+    public boolean stream(InputStream input, long fileSize, BitSet completedChunks, UploadSession session)
+            throws Exception {
+        int totalChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+        BitSet completed = (BitSet) completedChunks.clone();
+        int[] completedCount = {completed.cardinality()};
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<?>> inFlight = new ArrayList<>();
+        ReadableByteChannel channel = Channels.newChannel(input);
+
+        boolean finished = true;
+        try {
+            for (int chunkNumber = 0; chunkNumber < totalChunks; chunkNumber++) {
+                session.awaitResumed();
+                if (session.isCancelled()) {
+                    finished = false;
+                    break;
+                }
+                if (failure.get() != null) {
+                    break;
+                }
+
+                long offset = chunkNumber * chunkSize;
+                int length = (int) Math.min(chunkSize, fileSize - offset);
+                ByteBuffer buffer = bufferPool.acquire(length);
+                try {
+                    readFully(channel, buffer, offset, fileSize);
+                } catch (IOException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+
+                if (completed.get(chunkNumber)) {
+                    bufferPool.release(buffer);
+                    continue;
+                }
+
+                try {
+                    scheduler.acquire(session.getFlow(), length);
+                } catch (InterruptedException e) {
+                    bufferPool.release(buffer);
+                    throw e;
+                }
+
+                buffer.flip();
+                final int number = chunkNumber;
+                inFlight.removeIf(Future::isDone);
+                Runnable write = () -> {
+                    try {
+                        // Hashed on the chunk thread, so reading the stream never waits for it
+                        byte[] digest = ChunkDigests.digest(buffer);
+                        target.write(offset, buffer);
+                        synchronized (completed) {
+                            // Listeners observe the counters in a monotonically increasing order
+                            completed.set(number);
+                            completedCount[0]++;
+                            listener.onChunkCompleted(number, digest, completedCount[0],
+                                    Math.min(completed.nextClearBit(0), totalChunks));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        bufferPool.release(buffer);
+                        scheduler.release();
+                    }
+                };
+                try {
+                    inFlight.add(chunkExecutor.submit(write));
+                } catch (RejectedExecutionException e) {
+                    bufferPool.release(buffer);
+                    scheduler.release(session.getFlow(), length);
+                    throw e;
+                }
+            }
+        } finally {
+            // Never return while a chunk is still being written into the target
+            for (Future<?> future : inFlight) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                    // Recorded as the failure by the chunk itself
+                }
+            }
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof Exception) {
+            throw (Exception) error;
+        } else if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return finished;
+    }
+
+    /**
+     * Fills the buffer from the channel.
+     */
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer, long offset, long fileSize)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Stream ended at byte " + (offset + buffer.position()) + " of " + fileSize);
+            }
+        }
+    }
+}
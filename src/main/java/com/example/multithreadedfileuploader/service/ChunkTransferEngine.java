@@ -0,0 +1,433 @@
+/**
+ * Engine responsible for transferring the chunks of a file concurrently.
+ * <p>
+ * Instead of walking the chunks of a file one after another, the engine hands every chunk to a shared
+ * chunk executor. The number of chunks in flight is bounded per file and globally across all files,
+ * so a single large upload can use several cores and I/O streams without starving the other uploads.
+ * </p>
+ * <p>
+ * Transfers are event-driven: no thread waits on behalf of a transfer. New chunks are scheduled when a
+ * chunk finishes, when the {@link BandwidthScheduler} grants the next chunk, or when the transfer is resumed. A paused transfer
+ * therefore holds no thread at all, resuming reschedules it immediately, and canceling interrupts the
+ * chunk I/O in flight. A canceled transfer completes only once all of its chunk tasks have exited.
+ * </p>
+ *
+ * <h2>Key Features</h2>
+ * <ul>
+ *   <li>Configurable number of chunks in flight per file ({@code uploader.engine.chunks-per-file}).</li>
+ *   <li>Every chunk is granted by the {@link BandwidthScheduler}, which caps the chunks in flight across all
+ *   files ({@code uploader.engine.max-chunks-in-flight}) and the bandwidth, and shares both fairly by the
+ *   priority of each upload. The cap on chunks in flight also bounds the real I/O concurrency when chunks
+ *   run on virtual threads.</li>
+ *   <li>Skips chunks already completed by an earlier attempt, so resume transfers exactly the gaps.</li>
+ *   <li>Tracks chunks finishing out of order and reports the contiguous completed prefix for resume.</li>
+ *   <li>Pause, resume, and cancel signalled through the {@link ChunkTransfer} handle.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntToLongFunction;
+import java.util.logging.Logger;
+
+@Component
+public class ChunkTransferEngine {
+
+    private static final Logger logger = Logger.getLogger(ChunkTransferEngine.class.getName());
+
+    private final int chunksPerFile;
+    private final BandwidthScheduler scheduler;
+    private final ExecutorService chunkExecutor;
+
+    /**
+     * Creates the engine with its concurrency limits.
+     *
+     * @param chunksPerFile The maximum number of chunks of a single file transferred at the same time.
+     * @param scheduler The scheduler granting the chunks of all files.
+     * @param chunkExecutor The executor running the chunk transfers.
+     */
+    @Autowired
+    public ChunkTransferEngine(@Value("${uploader.engine.chunks-per-file:4}") int chunksPerFile,
+                               BandwidthScheduler scheduler,
+                               @Qualifier("chunkExecutor") ExecutorService chunkExecutor) {
+        if (chunksPerFile < 1) {
+            throw new IllegalArgumentException("Chunk concurrency limits must be at least 1");
+        }
+        this.chunksPerFile = chunksPerFile;
+        this.scheduler = scheduler;
+        this.chunkExecutor = chunkExecutor;
+        logger.info("Chunk transfer engine started with " + chunksPerFile + " chunks per file.");
+    }
+
+    /**
+     * Creates a transfer of the chunks of a file that are not completed yet.
+     * <p>
+     * The transfer does not run until {@link ChunkTransfer#start()} is called, so the caller can apply
+     * a pending pause or cancel first. Chunks may complete in any order; the listener is called once per
+     * completed chunk from the thread that transferred it.
+     * </p>
+     *
+     * @param flow The flow of the upload in the {@link BandwidthScheduler}.
+     * @param completedChunks The chunks already completed by an earlier attempt; they are skipped.
+     * @param totalChunks The total number of chunks of the file.
+     * @param chunkLength The number of bytes a chunk sends, charged to the bandwidth of the upload.
+     * @param task The task transferring a single chunk.
+     * @param listener The listener notified when a chunk has been transferred.
+     * @param pauseHandler Called once the transfer has paused and no chunk is in flight anymore.
+     * @return The {@link ChunkTransfer} handle.
+     */
+    public ChunkTransfer newTransfer(BandwidthScheduler.Flow flow, BitSet completedChunks, int totalChunks,
+                                     IntToLongFunction chunkLength, ChunkTask task, ChunkListener listener,
+                                     Runnable pauseHandler) {
+        return new ChunkTransfer(flow, completedChunks, totalChunks, chunkLength, task, listener, pauseHandler);
+    }
+
+    /**
+     * Shuts down the chunk executor and the scheduler.
+     */
+    public void shutdown() {
+        chunkExecutor.shutdown();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Transfers a single chunk of a file.
+     */
+    @FunctionalInterface
+    public interface ChunkTask {
+
+        /**
+         * Transfers the given chunk.
+         *
+         * @param chunkNumber The sequential number of the chunk.
+         * @return The SHA-256 digest of the chunk.
+         * @throws Exception If the chunk could not be transferred.
+         */
+        byte[] transfer(int chunkNumber) throws Exception;
+    }
+
+    /**
+     * Receives a notification for every transferred chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+
+        /**
+         * Called after a chunk has been transferred.
+         *
+         * @param chunkNumber The sequential number of the completed chunk.
+         * @param digest The SHA-256 digest of the chunk.
+         * @param completedChunks The number of chunks of the file completed so far.
+         * @param contiguousChunks The number of chunks completed without a gap from the start of the file,
+         *                         i.e. the chunk an upload can safely resume from.
+         */
+        void onChunkCompleted(int chunkNumber, byte[] digest, int completedChunks, int contiguousChunks);
+    }
+
+    /**
+     * Handle of a running file transfer.
+     * <p>
+     * All state changes happen under the handle's lock, while chunk tasks, released grants, and
+     * callbacks run outside of it. At most one grant is requested from the scheduler at a time.
+     * </p>
+     */
+    public class ChunkTransfer {
+        private final BandwidthScheduler.Flow flow;
+        private final int totalChunks;
+        private final IntToLongFunction chunkLength;
+        private final ChunkTask task;
+        private final ChunkListener listener;
+        private final Runnable pauseHandler;
+        private final BitSet skipped;
+        private final BitSet completed;
+        private final Map<Integer, ChunkRun> running = new HashMap<>();
+        private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+
+        private int nextChunk;
+        private int completedCount;
+        private boolean started;
+        private boolean paused;
+        private boolean pauseNotified;
+        private boolean cancelled;
+        private boolean awaitingGrant;
+        private boolean granted;
+        private long grantedBytes;
+        private boolean settled;
+        private Throwable failure;
+
+        private ChunkTransfer(BandwidthScheduler.Flow flow, BitSet completedChunks, int totalChunks,
+                              IntToLongFunction chunkLength, ChunkTask task, ChunkListener listener,
+                              Runnable pauseHandler) {
+            this.flow = flow;
+            this.totalChunks = totalChunks;
+            this.chunkLength = chunkLength;
+            this.task = task;
+            this.listener = listener;
+            this.pauseHandler = pauseHandler;
+            this.skipped = (BitSet) completedChunks.clone();
+            this.completed = (BitSet) completedChunks.clone();
+            this.completedCount = completed.cardinality();
+            this.nextChunk = skipped.nextClearBit(0);
+        }
+
+        /**
+         * @return A future completed with true when all chunks have been transferred, with false when the
+         * transfer was canceled, or exceptionally when a chunk failed.
+         */
+        public CompletableFuture<Boolean> completion() {
+            return completion;
+        }
+
+        /**
+         * Starts scheduling chunks.
+         */
+        public void start() {
+            synchronized (this) {
+                started = true;
+            }
+            pump();
+        }
+
+        /**
+         * Stops scheduling new chunks. The chunks in flight finish, then the pause handler is called.
+         */
+        public void pause() {
+            synchronized (this) {
+                paused = true;
+                pauseNotified = false;
+            }
+            pump();
+        }
+
+        /**
+         * Resumes scheduling chunks immediately.
+         */
+        public void resume() {
+            synchronized (this) {
+                paused = false;
+            }
+            pump();
+        }
+
+        /**
+         * Cancels the transfer and interrupts the chunk I/O in flight.
+         */
+        public void cancel() {
+            List<ChunkRun> inFlight;
+            synchronized (this) {
+                cancelled = true;
+                inFlight = new ArrayList<>(running.values());
+            }
+            for (ChunkRun chunk : inFlight) {
+                chunk.cancel();
+            }
+            pump();
+        }
+
+        /**
+         * Called by the scheduler when the queued request of the transfer has been granted.
+         */
+        private void onGrant() {
+            synchronized (this) {
+                awaitingGrant = false;
+                granted = true;
+            }
+            pump();
+        }
+
+        /**
+         * Schedules as many chunks as the limits allow and settles the transfer when nothing is in flight.
+         */
+        private void pump() {
+            List<ChunkRun> toSubmit = new ArrayList<>();
+            long unusedGrant = -1;
+            Runnable settlement;
+
+            synchronized (this) {
+                boolean schedulable = started && !paused && !cancelled && failure == null;
+                while (schedulable && !awaitingGrant && running.size() < chunksPerFile && nextChunk < totalChunks) {
+                    if (!granted) {
+                        grantedBytes = chunkLength.applyAsLong(nextChunk);
+                        // The scheduler never calls back into a transfer under its own lock
+                        if (!scheduler.tryAcquire(flow, grantedBytes, this::onGrant)) {
+                            awaitingGrant = true;
+                            break;
+                        }
+                    }
+                    granted = false;
+                    ChunkRun chunk = new ChunkRun(nextChunk);
+                    running.put(nextChunk, chunk);
+                    toSubmit.add(chunk);
+                    nextChunk = skipped.nextClearBit(nextChunk + 1);
+                }
+                if (!schedulable || nextChunk >= totalChunks) {
+                    // Paused, canceled, failed, or done: give up the queued request or return an unused grant
+                    if (awaitingGrant && scheduler.withdraw(flow)) {
+                        awaitingGrant = false;
+                    }
+                    if (granted) {
+                        granted = false;
+                        unusedGrant = grantedBytes;
+                    }
+                }
+                settlement = settle();
+            }
+
+            if (unusedGrant >= 0) {
+                scheduler.release(flow, unusedGrant);
+            }
+            for (ChunkRun chunk : toSubmit) {
+                try {
+                    chunkExecutor.execute(chunk);
+                } catch (RejectedExecutionException e) {
+                    chunk.reject(e);
+                }
+            }
+            if (settlement != null) {
+                settlement.run();
+            }
+        }
+
+        /**
+         * Decides, once no chunk is in flight, whether the transfer has finished or just paused.
+         *
+         * @return The action to run outside the lock, or null if there is nothing to do.
+         */
+        private Runnable settle() {
+            if (!started || settled || !running.isEmpty()) {
+                return null;
+            }
+            if (failure != null) {
+                settled = true;
+                Throwable error = failure;
+                return () -> completion.completeExceptionally(error);
+            }
+            if (cancelled) {
+                settled = true;
+                return () -> completion.complete(false);
+            }
+            if (nextChunk >= totalChunks) {
+                settled = true;
+                return () -> completion.complete(true);
+            }
+            if (paused && !pauseNotified) {
+                pauseNotified = true;
+                return pauseHandler;
+            }
+            return null;
+        }
+
+        /**
+         * Runs a chunk and records its completion.
+         */
+        private void runChunk(int chunkNumber) throws Exception {
+            byte[] digest = task.transfer(chunkNumber);
+            synchronized (completed) {
+                // Listeners observe the counters in a monotonically increasing order
+                completed.set(chunkNumber);
+                completedCount++;
+                listener.onChunkCompleted(chunkNumber, digest, completedCount,
+                        Math.min(completed.nextClearBit(0), totalChunks));
+            }
+        }
+
+        /**
+         * Called exactly once per scheduled chunk, whether it succeeded, failed, or was canceled, and only once
+         * its task can no longer touch the source, the target, or the progress of the file.
+         */
+        private void onChunkDone(int chunkNumber, Throwable error) {
+            synchronized (this) {
+                running.remove(chunkNumber);
+                if (error != null && !cancelled && failure == null) {
+                    failure = error;
+                }
+            }
+            // The next chunk is queued before the slot is released, so it competes for the slot fairly
+            pump();
+            scheduler.release();
+        }
+
+        /**
+         * A single scheduled chunk. It reports its outcome exactly once: from its own {@code finally} once the
+         * task has exited, or right away if it is canceled or rejected before it starts. The transfer therefore
+         * never settles while a chunk task is still reading or writing.
+         */
+        private class ChunkRun implements Runnable {
+            private final int chunkNumber;
+            private final AtomicBoolean claimed = new AtomicBoolean();
+            private Thread runner;
+            private boolean cancelRequested;
+
+            ChunkRun(int chunkNumber) {
+                this.chunkNumber = chunkNumber;
+            }
+
+            @Override
+            public void run() {
+                if (!claimed.compareAndSet(false, true)) {
+                    // Canceled or rejected before it started, and already reported
+                    return;
+                }
+                Throwable error = null;
+                try {
+                    synchronized (this) {
+                        if (cancelRequested) {
+                            throw new CancellationException("Chunk " + chunkNumber + " canceled");
+                        }
+                        runner = Thread.currentThread();
+                    }
+                    runChunk(chunkNumber);
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    synchronized (this) {
+                        runner = null;
+                    }
+                    // Clear an interrupt from a cancel that raced with the end of the task
+                    Thread.interrupted();
+                    onChunkDone(chunkNumber, error);
+                }
+            }
+
+            /**
+             * Cancels the chunk: a chunk that has not started is reported at once, a running one is interrupted
+             * and reports itself when its task has exited.
+             */
+            void cancel() {
+                if (claimed.compareAndSet(false, true)) {
+                    onChunkDone(chunkNumber, new CancellationException("Chunk " + chunkNumber + " canceled"));
+                    return;
+                }
+                synchronized (this) {
+                    cancelRequested = true;
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+
+            /**
+             * Reports a chunk that the executor refused to run.
+             */
+            void reject(Throwable error) {
+                if (claimed.compareAndSet(false, true)) {
+                    onChunkDone(chunkNumber, error);
+                }
+            }
+        }
+    }
+}
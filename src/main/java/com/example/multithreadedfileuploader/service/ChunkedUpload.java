@@ -0,0 +1,135 @@
+/**
+ * State of a file uploaded chunk by chunk by a client through the chunked-upload protocol.
+ * <p>
+ * The client pushes the chunks itself, in any order and over as many connections as it likes, so the
+ * upload has no thread of its own: it only tracks which chunks have arrived and keeps the target open
+ * between requests. Chunk writes hold the read side of the upload's lock and run in parallel, while
+ * completing or aborting the upload takes the write side, so the target is never closed under a write.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class ChunkedUpload {
+
+    private final FileMetadata metadata;
+    private final BitSet completed;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private UploadTarget target;
+    private int completedCount;
+
+    /**
+     * Creates the state of an upload.
+     *
+     * @param metadata The metadata of the file.
+     * @param completedChunks The chunks already received.
+     * @param target The target receiving the file, or null if the upload is already completed.
+     */
+    ChunkedUpload(FileMetadata metadata, BitSet completedChunks, UploadTarget target) {
+        this.metadata = metadata;
+        this.completed = (BitSet) completedChunks.clone();
+        this.completedCount = completed.cardinality();
+        this.target = target;
+    }
+
+    /**
+     * @return The ID of the upload, which is the ID of its file metadata record.
+     */
+    public Long getId() {
+        return metadata.getId();
+    }
+
+    /**
+     * @return The metadata of the file.
+     */
+    public FileMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return The size of a chunk in bytes. Only the last chunk may be shorter.
+     */
+    public long getChunkSize() {
+        return metadata.getChunkSize();
+    }
+
+    /**
+     * @return The total number of chunks of the file.
+     */
+    public int getTotalChunks() {
+        return metadata.getTotalChunks();
+    }
+
+    /**
+     * Returns the expected length of a chunk.
+     *
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The length of the chunk in bytes.
+     */
+    public int chunkLength(int chunkNumber) {
+        long offset = chunkNumber * getChunkSize();
+        return (int) Math.min(getChunkSize(), metadata.getFileSize() - offset);
+    }
+
+    /**
+     * @return The numbers of the chunks that have not been received yet, in ascending order.
+     */
+    public synchronized List<Integer> getMissingChunks() {
+        List<Integer> missing = new ArrayList<>();
+        for (int chunk = completed.nextClearBit(0); chunk < getTotalChunks(); chunk = completed.nextClearBit(chunk + 1)) {
+            missing.add(chunk);
+        }
+        return missing;
+    }
+
+    /**
+     * Records a received chunk.
+     *
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The number of chunks received without a gap from the start of the file.
+     */
+    synchronized int markCompleted(int chunkNumber) {
+        if (!completed.get(chunkNumber)) {
+            completed.set(chunkNumber);
+            completedCount++;
+        }
+        return Math.min(completed.nextClearBit(0), getTotalChunks());
+    }
+
+    /**
+     * @return true if every chunk has been received.
+     */
+    public synchronized boolean isComplete() {
+        return completedCount >= getTotalChunks();
+    }
+
+    /**
+     * @return The lock guarding the target: shared by chunk writes, exclusive for completion and abort.
+     */
+    ReadWriteLock lock() {
+        return lock;
+    }
+
+    /**
+     * @return The target receiving the file, or null once the upload has been completed or aborted.
+     */
+    UploadTarget getTarget() {
+        return target;
+    }
+
+    /**
+     * Detaches the target once the upload has been completed or aborted. Must hold the write lock.
+     */
+    void clearTarget() {
+        this.target = null;
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Service implementing the resumable chunked-upload protocol.
+ * <p>
+ * Instead of sending a whole file in one request, a client creates an upload, pushes its chunks
+ * individually, and completes the upload once every chunk has arrived. Chunks are addressed by number,
+ * so they can be sent in parallel over several connections, and writing a chunk twice is harmless, so a
+ * client whose connection dropped only retries the chunks the server reports as missing.
+ * </p>
+ *
+ * <h2>Key Features</h2>
+ * <ul>
+ *   <li>Builds on the {@link com.example.multithreadedfileuploader.entity.FileMetadata} and chunk state of
+ *   regular uploads: the upload ID is the file metadata ID, and received chunks are recorded through the
+ *   {@link ChunkProgressWriter}.</li>
+ *   <li>Writes every chunk straight into its final position in the {@link UploadSink}; completing the
+ *   upload only finalizes the target, no assembly pass is needed.</li>
+ *   <li>Survives restarts: an upload not held in memory is reloaded from its metadata and chunk state.</li>
+ *   <li>Hashes every received chunk, optionally checks it against the digest sent by the client, and seals
+ *   the completed upload with the Merkle root of its chunk digests.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+import com.example.multithreadedfileuploader.storage.UploadSink;
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Logger;
+
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = Logger.getLogger(ChunkedUploadService.class.getName());
+
+    @Autowired
+    private FileUploadService fileUploadService;
+
+    @Autowired
+    private FileMetadataRepository fileMetadataRepository;
+
+    @Autowired
+    private UploadSink uploadSink;
+
+    @Autowired
+    private ChunkProgressWriter chunkProgressWriter;
+
+    @Autowired
+    private ChunkStateStore chunkStateStore;
+
+    @Autowired
+    private ChunkBufferPool chunkBufferPool;
+
+    private final Map<Long, ChunkedUpload> activeUploads = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an upload, or returns the existing upload of the same file so a client can resume it.
+     * <p>
+     * Uploads are identified by a {@link FileFingerprint} over the name, the size, and the fingerprint sent
+     * by the client, so a client that fingerprints its content never resumes an upload of an older version
+     * of the file. Without a client fingerprint, a new upload is always created; it is resumed by its ID.
+     * </p>
+     *
+     * @param fileName The name of the file.
+     * @param fileSize The size of the file in bytes.
+     * @param clientFingerprint A fingerprint of the file computed by the client, or null.
+     * @return The upload.
+     * @throws IOException If the upload target cannot be opened.
+     */
+    public ChunkedUpload createUpload(String fileName, long fileSize, String clientFingerprint) throws IOException {
+        FileMetadata metadata = fileUploadService.findOrCreateMetadata(fileName, fileSize,
+                FileFingerprint.ofStream(fileName, fileSize, clientFingerprint));
+        ChunkedUpload upload = load(metadata);
+        logger.info("Chunked upload " + upload.getId() + " ready for file: " + fileName);
+        return upload;
+    }
+
+    /**
+     * Finds an upload by its ID, reloading it from the database if it is not held in memory.
+     *
+     * @param id The ID of the upload.
+     * @return An {@link Optional} containing the upload, or empty if no upload matches.
+     * @throws IOException If the upload target cannot be opened.
+     */
+    public Optional<ChunkedUpload> findUpload(Long id) throws IOException {
+        ChunkedUpload upload = activeUploads.get(id);
+        if (upload != null) {
+            return Optional.of(upload);
+        }
+        Optional<FileMetadata> metadata = fileMetadataRepository.findById(id);
+        if (metadata.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(load(metadata.get()));
+    }
+
+    /**
+     * Writes a chunk of an upload. Writing a chunk that has already been received overwrites it with the
+     * same bytes, so clients can safely retry.
+     *
+     * @param upload The upload.
+     * @param chunkNumber The sequential number of the chunk.
+     * @param input The chunk contents, exactly as long as the chunk.
+     * @param expectedDigest The SHA-256 digest of the chunk computed by the client, or null to skip the check.
+     * @throws IOException If the chunk cannot be read or written.
+     * @throws InterruptedException If the thread is interrupted while waiting for a chunk buffer.
+     * @throws IllegalArgumentException If the chunk number is out of range, the chunk has the wrong length,
+     *                                  or it does not match the expected digest.
+     * @throws IllegalStateException If the upload has already been completed or aborted.
+     */
+    public void writeChunk(ChunkedUpload upload, int chunkNumber, InputStream input, byte[] expectedDigest)
+            throws IOException, InterruptedException {
+        if (chunkNumber < 0 || chunkNumber >= upload.getTotalChunks()) {
+            throw new IllegalArgumentException("Chunk " + chunkNumber + " is out of range 0.."
+                    + (upload.getTotalChunks() - 1));
+        }
+
+        int length = upload.chunkLength(chunkNumber);
+        ByteBuffer buffer = chunkBufferPool.acquire(length);
+        try {
+            // Read the whole chunk before touching the target, so a broken request never leaves a torn chunk
+            readChunk(input, buffer, chunkNumber);
+            buffer.flip();
+            byte[] digest = ChunkDigests.digest(buffer);
+            if (expectedDigest != null && !MessageDigest.isEqual(digest, expectedDigest)) {
+                throw new IllegalArgumentException("Chunk " + chunkNumber + " does not match its digest");
+            }
+
+            Lock lock = upload.lock().readLock();
+            lock.lock();
+            try {
+                UploadTarget target = upload.getTarget();
+                if (target == null) {
+                    throw new IllegalStateException("Upload " + upload.getId() + " is no longer accepting chunks");
+                }
+                target.write(chunkNumber * upload.getChunkSize(), buffer);
+                int contiguousChunks = upload.markCompleted(chunkNumber);
+                chunkProgressWriter.recordChunkCompleted(upload.getId(), chunkNumber, digest, contiguousChunks, target);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            chunkBufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Completes an upload whose chunks have all been received.
+     *
+     * @param upload The upload.
+     * @param expectedMerkleRoot The hex-encoded Merkle root computed by the client, or null to skip the check.
+     * @throws IOException If the target cannot be finalized.
+     * @throws IllegalStateException If chunks are still missing, or the chunks do not match the expected root.
+     */
+    public void completeUpload(ChunkedUpload upload, String expectedMerkleRoot) throws IOException {
+        Lock lock = upload.lock().writeLock();
+        lock.lock();
+        try {
+            UploadTarget target = upload.getTarget();
+            if (target == null) {
+                // Completing twice is not an error, the client may have lost the first response
+                return;
+            }
+            if (!upload.isComplete()) {
+                throw new IllegalStateException("Upload " + upload.getId() + " is missing "
+                        + upload.getMissingChunks().size() + " chunks");
+            }
+
+            chunkProgressWriter.flushAndRelease(upload.getId());
+            String merkleRoot = fileUploadService.verifyChunkDigests(upload.getMetadata());
+            if (expectedMerkleRoot != null && !merkleRoot.equalsIgnoreCase(expectedMerkleRoot)) {
+                // The target stays open, the client can resend chunks or abort the upload
+                throw new IllegalStateException("Upload " + upload.getId() + " has the Merkle root " + merkleRoot
+                        + " instead of " + expectedMerkleRoot);
+            }
+            try (UploadTarget completedTarget = target) {
+                completedTarget.complete();
+            }
+            upload.clearTarget();
+
+            FileMetadata metadata = upload.getMetadata();
+            metadata.setUploadedChunks(metadata.getTotalChunks());
+            metadata.setStatus("Completed");
+            fileMetadataRepository.save(metadata);
+            logger.info("Chunked upload completed: " + metadata.getFileName());
+        } finally {
+            lock.unlock();
+            activeUploads.remove(upload.getId(), upload);
+        }
+    }
+
+    /**
+     * Aborts an upload and removes its stored bytes and metadata.
+     *
+     * @param upload The upload.
+     */
+    public void abortUpload(ChunkedUpload upload) {
+        Lock lock = upload.lock().writeLock();
+        lock.lock();
+        try {
+            UploadTarget target = upload.getTarget();
+            if (target != null) {
+                try {
+                    target.close();
+                } catch (IOException e) {
+                    logger.warning("Failed to close upload target: " + e.getMessage());
+                }
+                upload.clearTarget();
+            }
+            fileUploadService.discardUpload(upload.getMetadata());
+            logger.info("Chunked upload aborted: " + upload.getMetadata().getFileName());
+        } finally {
+            lock.unlock();
+            activeUploads.remove(upload.getId(), upload);
+        }
+    }
+
+    /**
+     * Loads the state of an upload and keeps it in memory until the upload is completed or aborted.
+     */
+    private ChunkedUpload load(FileMetadata metadata) throws IOException {
+        synchronized (activeUploads) {
+            ChunkedUpload upload = activeUploads.get(metadata.getId());
+            if (upload != null) {
+                return upload;
+            }
+
+            if ("Completed".equals(metadata.getStatus())) {
+                // The target has been finalized, only the status can be reported
+                BitSet all = new BitSet();
+                all.set(0, metadata.getTotalChunks());
+                return new ChunkedUpload(metadata, all, null);
+            }
+
+            chunkStateStore.initialize(metadata);
+            BitSet completedChunks = fileUploadService.findVerifiedChunks(metadata);
+            UploadTarget target = uploadSink.open(fileUploadService.storageKey(metadata), metadata.getFileSize());
+            upload = new ChunkedUpload(metadata, completedChunks, target);
+            activeUploads.put(metadata.getId(), upload);
+            return upload;
+        }
+    }
+
+    /**
+     * Reads exactly one chunk from the input and rejects inputs of the wrong length.
+     */
+    private static void readChunk(InputStream input, ByteBuffer buffer, int chunkNumber) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(input);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Chunk " + chunkNumber + " is shorter than " + buffer.limit() + " bytes");
+            }
+        }
+        if (input.read() >= 0) {
+            throw new IllegalArgumentException("Chunk " + chunkNumber + " is longer than " + buffer.limit() + " bytes");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Cuts a file into variable-size chunks at boundaries defined by its content.
+ * <p>
+ * Fixed-offset chunking shifts every chunk after an insert or delete, so a file that differs from an
+ * earlier upload by a single byte shares no chunk with it. Here a Gear rolling hash runs over the bytes
+ * and a chunk ends wherever the hash matches a mask, so boundaries move with the content and the chunks
+ * around an edit stay identical to the earlier upload. Each chunk is hashed with SHA-256 during the same
+ * sequential pass, which gives the digests the {@link DeduplicationIndex} looks up.
+ * </p>
+ * <p>
+ * The scan is a full pass over the file before its first chunk is sent, so it reports its position to a
+ * {@link ScanListener} after every buffer, which lets the caller show progress and stop a canceled scan.
+ * </p>
+ *
+ * <h2>Chunk Sizes</h2>
+ * <ul>
+ *   <li>Chunks are at least a quarter and at most four times the average size.</li>
+ *   <li>Normalized chunking uses a stricter mask below the average size and a looser one above it, which
+ *   keeps most chunks close to the average.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public final class ContentDefinedChunker {
+
+    /**
+     * Size of the buffer the file is scanned with.
+     */
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Random values of the Gear hash, one per byte value. The seed must never change: chunk boundaries,
+     * and therefore deduplication across uploads, depend on it.
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private ContentDefinedChunker() {
+    }
+
+    /**
+     * Receives the progress of a scan.
+     */
+    @FunctionalInterface
+    public interface ScanListener {
+
+        /**
+         * Called after each buffer of the file has been scanned. May block to pause the scan, or throw to
+         * stop it.
+         *
+         * @param scannedBytes The number of bytes scanned so far.
+         * @throws InterruptedException If the thread is interrupted while the scan is paused.
+         */
+        void scanned(long scannedBytes) throws InterruptedException;
+    }
+
+    /**
+     * Scans a file and returns its content-defined chunks.
+     *
+     * @param source The channel of the file. Its position is not changed.
+     * @param fileSize The size of the file in bytes.
+     * @param averageSize The average chunk size in bytes.
+     * @param listener The listener receiving the progress of the scan.
+     * @return The layout of the chunks.
+     * @throws IOException If the file cannot be read.
+     * @throws InterruptedException If the thread is interrupted while the scan is paused.
+     */
+    public static ChunkLayout split(FileChannel source, long fileSize, long averageSize, ScanListener listener)
+            throws IOException, InterruptedException {
+        int bits = Math.max(64 - Long.numberOfLeadingZeros(averageSize - 1), 4);
+        long average = 1L << bits;
+        long minSize = average / 4;
+        long maxSize = Math.min(average * 4, Integer.MAX_VALUE);
+        long strictMask = mask(bits + 2);
+        long looseMask = mask(bits - 2);
+
+        MessageDigest digest = ChunkDigests.sha256();
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        List<byte[]> digests = new ArrayList<>();
+
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long position = 0;
+        long chunkStart = 0;
+        long hash = 0;
+
+        while (position < fileSize) {
+            buffer.clear();
+            int read = source.read(buffer, position);
+            if (read <= 0) {
+                throw new EOFException("Unexpected end of file at offset " + position);
+            }
+
+            int segmentStart = 0;
+            for (int i = 0; i < read; i++) {
+                hash = (hash << 1) + GEAR[bytes[i] & 0xff];
+                long chunkLength = position + i + 1 - chunkStart;
+                if (chunkLength < minSize) {
+                    continue;
+                }
+                long mask = chunkLength < average ? strictMask : looseMask;
+                if ((hash & mask) == 0 || chunkLength >= maxSize) {
+                    digest.update(bytes, segmentStart, i + 1 - segmentStart);
+                    offsets.add(chunkStart);
+                    lengths.add((int) chunkLength);
+                    digests.add(digest.digest());
+                    chunkStart = position + i + 1;
+                    segmentStart = i + 1;
+                    hash = 0;
+                }
+            }
+            digest.update(bytes, segmentStart, read - segmentStart);
+            position += read;
+            listener.scanned(position);
+        }
+
+        if (chunkStart < fileSize) {
+            offsets.add(chunkStart);
+            lengths.add((int) (fileSize - chunkStart));
+            digests.add(digest.digest());
+        }
+
+        long[] offsetArray = new long[offsets.size()];
+        int[] lengthArray = new int[lengths.size()];
+        for (int i = 0; i < offsetArray.length; i++) {
+            offsetArray[i] = offsets.get(i);
+            lengthArray[i] = lengths.get(i);
+        }
+        return new ChunkLayout(offsetArray, lengthArray, digests.toArray(new byte[0][]));
+    }
+
+    /**
+     * Returns a mask selecting the given number of high bits of the hash, the bits that depend on the most
+     * recent bytes.
+     */
+    private static long mask(int bits) {
+        return bits <= 0 ? 0 : -1L << (64 - Math.min(bits, 63));
+    }
+}
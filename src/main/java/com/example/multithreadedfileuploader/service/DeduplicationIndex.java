@@ -0,0 +1,181 @@
+/**
+ * Index of stored chunks by content digest, used to skip chunks the sink already holds.
+ * <p>
+ * The index lives in {@code chunk_metadata}: content-defined uploads store the offset, length, and SHA-256
+ * digest of every chunk on its row, and a completed chunk of a completed file is a valid source for any
+ * later chunk with the same digest. Such a chunk is copied inside the {@link com.example.multithreadedfileuploader.storage.UploadSink}
+ * instead of being transferred from the source again.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.ChunkMetadata;
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.repository.ChunkMetadataRepository;
+import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+@Component
+public class DeduplicationIndex {
+
+    private static final Logger logger = Logger.getLogger(DeduplicationIndex.class.getName());
+
+    /**
+     * Upper bound for the chunks of a single layout update or digest lookup.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final ChunkMetadataRepository chunkMetadataRepository;
+    private final ChunkStateStore chunkStateStore;
+
+    /**
+     * Creates the index.
+     *
+     * @param fileMetadataRepository The repository for file metadata.
+     * @param chunkMetadataRepository The repository for chunk metadata, which holds the index.
+     * @param chunkStateStore The store creating the chunk rows of a file.
+     */
+    @Autowired
+    public DeduplicationIndex(FileMetadataRepository fileMetadataRepository,
+                              ChunkMetadataRepository chunkMetadataRepository,
+                              ChunkStateStore chunkStateStore) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.chunkMetadataRepository = chunkMetadataRepository;
+        this.chunkStateStore = chunkStateStore;
+    }
+
+    /**
+     * Creates the chunk rows of a content-defined upload and stores their layout and digests.
+     * <p>
+     * When the upload is resumed, the rows already exist and the layout of the file must still match them;
+     * a different chunk count means the file changed since its upload started.
+     * </p>
+     *
+     * @param metadata The metadata of the file.
+     * @param layout The content-defined chunks of the file.
+     * @throws IllegalStateException If the file no longer matches the stored chunks.
+     */
+    public void register(FileMetadata metadata, ChunkLayout layout) {
+        if (chunkMetadataRepository.existsByFileId(metadata.getId())) {
+            if (metadata.getTotalChunks() != layout.size()) {
+                throw new IllegalStateException("File " + metadata.getFileName() + " no longer matches the chunks of its earlier upload");
+            }
+            return;
+        }
+
+        metadata.setTotalChunks(layout.size());
+        fileMetadataRepository.save(metadata);
+        chunkStateStore.initialize(metadata);
+
+        for (int from = 0; from < layout.size(); from += MAX_BATCH_SIZE) {
+            int to = Math.min(from + MAX_BATCH_SIZE, layout.size());
+            List<Integer> numbers = new ArrayList<>(to - from);
+            List<Long> offsets = new ArrayList<>(to - from);
+            List<Integer> lengths = new ArrayList<>(to - from);
+            List<String> digests = new ArrayList<>(to - from);
+            for (int chunk = from; chunk < to; chunk++) {
+                numbers.add(chunk);
+                offsets.add(layout.offset(chunk));
+                lengths.add(layout.length(chunk));
+                digests.add(layout.hexDigest(chunk));
+            }
+            chunkMetadataRepository.updateChunkLayout(metadata.getId(), numbers, offsets, lengths, digests);
+        }
+    }
+
+    /**
+     * Finds the chunks of a file that are already stored as part of another completed file.
+     *
+     * @param metadata The metadata of the file being uploaded.
+     * @param layout The content-defined chunks of the file.
+     * @return The stored copy of each duplicate chunk, keyed by chunk number.
+     */
+    public Map<Integer, StoredChunk> findDuplicates(FileMetadata metadata, ChunkLayout layout) {
+        Map<String, List<Integer>> chunksByDigest = new HashMap<>();
+        for (int chunk = 0; chunk < layout.size(); chunk++) {
+            chunksByDigest.computeIfAbsent(layout.hexDigest(chunk), digest -> new ArrayList<>()).add(chunk);
+        }
+
+        Map<String, ChunkMetadata> storedByDigest = new HashMap<>();
+        List<String> digests = new ArrayList<>(chunksByDigest.keySet());
+        for (int from = 0; from < digests.size(); from += MAX_BATCH_SIZE) {
+            List<String> slice = digests.subList(from, Math.min(from + MAX_BATCH_SIZE, digests.size()));
+            for (ChunkMetadata stored : chunkMetadataRepository.findCompletedChunksByDigests(slice, metadata.getId())) {
+                storedByDigest.putIfAbsent(stored.getDigest(), stored);
+            }
+        }
+        if (storedByDigest.isEmpty()) {
+            return Map.of();
+        }
+
+        Set<Long> fileIds = new HashSet<>();
+        storedByDigest.values().forEach(stored -> fileIds.add(stored.getFileId()));
+        Map<Long, FileMetadata> files = new HashMap<>();
+        fileMetadataRepository.findAllById(fileIds).forEach(file -> files.put(file.getId(), file));
+
+        Map<Integer, StoredChunk> duplicates = new HashMap<>();
+        long duplicateBytes = 0;
+        for (Map.Entry<String, ChunkMetadata> entry : storedByDigest.entrySet()) {
+            ChunkMetadata stored = entry.getValue();
+            FileMetadata file = files.get(stored.getFileId());
+            if (file == null || stored.getChunkOffset() == null || stored.getChunkLength() == null) {
+                continue;
+            }
+            for (Integer chunk : chunksByDigest.get(entry.getKey())) {
+                if (layout.length(chunk) == stored.getChunkLength()) {
+                    duplicates.put(chunk, new StoredChunk(file, stored.getChunkOffset(), stored.getChunkLength()));
+                    duplicateBytes += stored.getChunkLength();
+                }
+            }
+        }
+        logger.info("Found " + duplicates.size() + " of " + layout.size() + " chunks (" + duplicateBytes
+                + " bytes) of " + metadata.getFileName() + " already stored.");
+        return duplicates;
+    }
+
+    /**
+     * A chunk held by the sink as part of a completed file.
+     */
+    public static class StoredChunk {
+        private final FileMetadata file;
+        private final long offset;
+        private final int length;
+
+        StoredChunk(FileMetadata file, long offset, int length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return The metadata of the completed file holding the chunk.
+         */
+        public FileMetadata getFile() {
+            return file;
+        }
+
+        /**
+         * @return The offset of the chunk in that file.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The length of the chunk in bytes.
+         */
+        public int getLength() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Computes the identity under which the progress of an upload is stored and resumed.
+ * <p>
+ * Keying resume on the file name lets two different files with the same name collide, and lets a file
+ * that changed since its upload started "resume" with stale chunks. A fingerprint changes whenever the
+ * file does, so a changed file simply starts a fresh upload, while the unique index on
+ * {@code file_metadata.fingerprint} keeps the lookup to a single index probe.
+ * </p>
+ *
+ * <h2>Fingerprints</h2>
+ * <ul>
+ *   <li><b>Local files:</b> SHA-256 over the size, the modification time, and the first and last
+ *   {@value #EDGE_BLOCK_SIZE} bytes. Reading two blocks is cheap regardless of the file size.</li>
+ *   <li><b>Local files, full hash</b> ({@code uploader.fingerprint.full-hash=true}): SHA-256 over the size and
+ *   the whole content. Costs a full read before the upload, but survives a touched yet unchanged file.</li>
+ *   <li><b>Streamed files:</b> the bytes are not available before the upload, so the fingerprint covers the
+ *   name and size combined with a fingerprint of the content supplied by the client. Name and size alone
+ *   would let two different files resume each other's chunks, so a stream without a client fingerprint
+ *   gets a unique fingerprint and always starts a fresh upload.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.UUID;
+
+public final class FileFingerprint {
+
+    /**
+     * Size of the blocks hashed at the start and the end of a file.
+     */
+    static final int EDGE_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Size of the buffer used for a full hash.
+     */
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    private FileFingerprint() {
+    }
+
+    /**
+     * Fingerprints a local file.
+     *
+     * @param source The channel of the file. Its position is not changed.
+     * @param fileSize The size of the file in bytes.
+     * @param lastModified The modification time of the file in milliseconds since the epoch.
+     * @param fullHash true to hash the whole content instead of the first and last blocks.
+     * @return The hex-encoded fingerprint.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String ofFile(FileChannel source, long fileSize, long lastModified, boolean fullHash)
+            throws IOException {
+        MessageDigest digest = ChunkDigests.sha256();
+        if (fullHash) {
+            digest.update(header("content", fileSize, 0));
+            hashRegion(source, digest, 0, fileSize);
+        } else {
+            digest.update(header("edges", fileSize, lastModified));
+            long head = Math.min(EDGE_BLOCK_SIZE, fileSize);
+            hashRegion(source, digest, 0, head);
+            long tailStart = Math.max(head, fileSize - EDGE_BLOCK_SIZE);
+            hashRegion(source, digest, tailStart, fileSize - tailStart);
+        }
+        return ChunkDigests.toHex(digest.digest());
+    }
+
+    /**
+     * Fingerprints a file streamed by a client.
+     *
+     * @param fileName The name of the file.
+     * @param fileSize The size of the file in bytes.
+     * @param clientFingerprint A fingerprint of the content computed by the client, or null if the client
+     *                          sent none.
+     * @return The hex-encoded fingerprint, unique to this call if the client sent no fingerprint.
+     */
+    public static String ofStream(String fileName, long fileSize, String clientFingerprint) {
+        MessageDigest digest = ChunkDigests.sha256();
+        digest.update(header("stream", fileSize, 0));
+        digest.update(fileName.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        // Without a client fingerprint nothing tells this stream apart from another file of the same name and size
+        String identity = clientFingerprint != null ? clientFingerprint : "unidentified-" + UUID.randomUUID();
+        digest.update(identity.getBytes(StandardCharsets.UTF_8));
+        return ChunkDigests.toHex(digest.digest());
+    }
+
+    /**
+     * Encodes the kind of fingerprint and the file attributes it covers, so fingerprints of different
+     * kinds never collide.
+     */
+    private static ByteBuffer header(String kind, long fileSize, long lastModified) {
+        byte[] name = kind.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate(name.length + 1 + 2 * Long.BYTES);
+        header.put(name).put((byte) 0).putLong(fileSize).putLong(lastModified);
+        return header.flip();
+    }
+
+    /**
+     * Feeds a region of the file into the digest.
+     */
+    private static void hashRegion(FileChannel source, MessageDigest digest, long offset, long length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(HASH_BUFFER_SIZE, Math.max(length, 1)));
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = source.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at offset " + position);
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * A pack of small files uploaded together as one file.
+ * <p>
+ * The pack is the concatenation of its members in order, so a member is found in the stored pack by its
+ * offset and size. The pack is uploaded through the same chunk pipeline as any streamed file, and its members
+ * are then recorded in bulk, each with the offset of its bytes inside the pack. A thousand 4 KB files thus
+ * cost a single upload with a few chunks instead of a thousand uploads with a chunk each.
+ * </p>
+ *
+ * <h2>Rules</h2>
+ * <ul>
+ *   <li>The members are read from disk only while the pack is uploaded, never held in memory as a whole.</li>
+ *   <li>A member that changed after it was packed fails the pack, as its offsets would no longer hold.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class FilePack {
+
+    /**
+     * A file of a pack.
+     */
+    public static class Member {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+        private final String fingerprint;
+        private long offset;
+
+        /**
+         * Creates a member of a pack.
+         *
+         * @param path The path of the file.
+         * @param size The size of the file in bytes.
+         * @param lastModified The modification time of the file when it was packed.
+         * @param fingerprint The {@link FileFingerprint} of the file.
+         */
+        public Member(Path path, long size, long lastModified, String fingerprint) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return The path of the file.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return The size of the file in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return The fingerprint of the file.
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return The offset of the file's bytes in the pack.
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    private final String name;
+    private final List<Member> members;
+    private final long size;
+
+    /**
+     * Creates a pack of the given files, laid out in order.
+     *
+     * @param name The name of the pack, unique across all packs.
+     * @param members The files of the pack.
+     */
+    FilePack(String name, List<Member> members) {
+        this.name = name;
+        this.members = Collections.unmodifiableList(members);
+        long offset = 0;
+        for (Member member : members) {
+            member.offset = offset;
+            offset += member.size;
+        }
+        this.size = offset;
+    }
+
+    /**
+     * Returns a pack of the members of this pack whose fingerprint is not in the given set, laid out anew.
+     *
+     * @param fingerprints The fingerprints of the members to leave out.
+     * @return The new pack.
+     */
+    FilePack without(Collection<String> fingerprints) {
+        return new FilePack(name, members.stream().filter(member -> !fingerprints.contains(member.fingerprint)).toList());
+    }
+
+    /**
+     * @return The name of the pack.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a fingerprint of the content of the pack, computed over the {@link FileFingerprint} of its
+     * members in order.
+     *
+     * @return The hex-encoded fingerprint.
+     */
+    public String getFingerprint() {
+        MessageDigest digest = ChunkDigests.sha256();
+        for (Member member : members) {
+            digest.update(member.fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return ChunkDigests.toHex(digest.digest());
+    }
+
+    /**
+     * @return The files of the pack, in the order of their bytes.
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return The size of the pack in bytes, the sum of the sizes of its files.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Opens a stream delivering the bytes of the pack, reading one member at a time.
+     *
+     * @return The stream of the pack.
+     */
+    InputStream openStream() {
+        return new PackInputStream();
+    }
+
+    /**
+     * Reads the members in order, each exactly as large as when it was packed.
+     */
+    private class PackInputStream extends InputStream {
+        private int next;
+        private InputStream current;
+        private long remaining;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (!openNext()) {
+                    return -1;
+                }
+            }
+            int read = current.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new IOException("File changed after it was packed: " + members.get(next - 1).path);
+            }
+            remaining -= read;
+            return read;
+        }
+
+        /**
+         * Closes the current member and opens the next one.
+         *
+         * @return false if all members have been read.
+         */
+        private boolean openNext() throws IOException {
+            close();
+            if (next == members.size()) {
+                return false;
+            }
+            Member member = members.get(next++);
+            if (Files.size(member.path) != member.size
+                    || Files.getLastModifiedTime(member.path).toMillis() != member.lastModified) {
+                throw new IOException("File changed after it was packed: " + member.path);
+            }
+            current = Files.newInputStream(member.path);
+            remaining = member.size;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+}
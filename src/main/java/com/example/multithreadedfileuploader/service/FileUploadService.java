@@ -2,33 +2,69 @@
  * Service class responsible for handling the logic of file uploads.
  * <p>
  * This service provides methods for uploading files in chunks, pausing, resuming,
- * and canceling uploads, and managing metadata in the database. It uses a fixed thread pool
- * to perform file upload operations concurrently and ensures the upload process is tracked
- * and managed efficiently.
+ * and canceling uploads, and managing metadata in the database. It runs file uploads concurrently
+ * on the upload executor (a fixed thread pool or virtual threads, see {@code ExecutorConfig}) and
+ * delegates the chunks of each file to the {@link ChunkTransferEngine}, which transfers several
+ * chunks of the same file in parallel.
  * </p>
  *
  * <h2>Key Features</h2>
  * <ul>
  *   <li>Supports large file uploads by splitting files into manageable chunks.</li>
- *   <li>Allows pausing, resuming, and canceling uploads with real-time status updates.</li>
- *   <li>Maintains upload progress and metadata in a database.</li>
+ *   <li>Transfers the chunks of a file concurrently, bounded per file and across all files.</li>
+ *   <li>Streams the chunk bytes into the configured {@link UploadSink} through a zero-copy {@link ChunkReader}.</li>
+ *   <li>Optionally cuts files at content-defined boundaries and copies chunks the sink already holds
+ *   instead of transferring them again ({@code uploader.chunking.mode=content-defined}).</li>
+ *   <li>Ingests files streamed by clients chunk by chunk through a {@link ChunkStreamer}, without staging
+ *   them in a temporary file.</li>
+ *   <li>Uploads packs of small files as one streamed file and records their files in bulk (see {@link FilePack}).</li>
+ *   <li>Allows pausing, resuming, and canceling each upload independently through its {@link UploadSession}.</li>
+ *   <li>Admits uploads through the {@link UploadQueue} by priority, bounding the running and waiting uploads,
+ *   and queues the uploads that were waiting at shutdown again on startup.</li>
+ *   <li>Shares the chunk slots and the bandwidth between uploads by priority and rate limit through the
+ *   {@link BandwidthScheduler}, adjustable while the uploads run.</li>
+ *   <li>Maintains upload progress and metadata in a database, batching chunk updates through the
+ *   {@link ChunkProgressWriter}.</li>
+ *   <li>Hashes every chunk while it is transferred and seals completed uploads with a Merkle root over
+ *   the chunk digests (see {@link ChunkDigests}).</li>
  *   <li>Provides cleanup mechanisms for canceled uploads.</li>
  * </ul>
  */
 package com.example.multithreadedfileuploader.service;
 
-import com.example.multithreadedfileuploader.entity.ChunkMetadata;
 import com.example.multithreadedfileuploader.entity.FileMetadata;
-import com.example.multithreadedfileuploader.repository.ChunkMetadataRepository;
 import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+import com.example.multithreadedfileuploader.storage.UploadSink;
+import com.example.multithreadedfileuploader.storage.UploadTarget;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.BooleanSupplier;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
+import java.util.function.IntToLongFunction;
+import java.util.regex.Pattern;
 import java.util.logging.Logger;
 
 @Service
@@ -36,198 +72,1063 @@ public class FileUploadService {
 
     private static final Logger logger = Logger.getLogger(FileUploadService.class.getName());
 
+    /**
+     * Value of {@code uploader.chunking.mode} selecting content-defined chunking.
+     */
+    public static final String CONTENT_DEFINED_CHUNKING = "content-defined";
+
+    /**
+     * Status of a streamed upload that was not admitted by the {@link UploadQueue} in time.
+     */
+    public static final String QUEUE_TIMEOUT_STATUS = "Upload Timed Out In Queue";
+
+    /**
+     * Session IDs a client may choose for a streamed upload, e.g. a UUID.
+     */
+    private static final Pattern CLIENT_SESSION_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /**
+     * Interval in milliseconds at which a queued stream checks whether it was canceled.
+     */
+    private static final long ADMISSION_POLL_MS = 100;
+
     @Autowired
     private FileMetadataRepository fileMetadataRepository;
 
     @Autowired
-    private ChunkMetadataRepository chunkMetadataRepository;
+    private ChunkTransferEngine chunkTransferEngine;
+
+    @Autowired
+    private BandwidthScheduler bandwidthScheduler;
+
+    @Autowired
+    private UploadSink uploadSink;
+
+    @Autowired
+    private ChunkProgressWriter chunkProgressWriter;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(5);
+    @Autowired
+    private ChunkStateStore chunkStateStore;
+
+    @Autowired
+    private UploadSessionRegistry uploadSessionRegistry;
+
+    @Autowired
+    private UploadQueue uploadQueue;
+
+    @Autowired
+    private ChunkBufferPool chunkBufferPool;
+
+    @Autowired
+    private ChunkSizePolicy chunkSizePolicy;
 
-    private volatile boolean isPaused = false;
-    private volatile boolean isCancelled = false;
-    private volatile boolean isUploading = false; // To track upload state
-    private volatile File currentFile = null; // To track the current file
+    @Autowired
+    private DeduplicationIndex deduplicationIndex;
+
+    @Value("${uploader.chunking.mode:fixed}")
+    private String chunkingMode;
+
+    @Value("${uploader.fingerprint.full-hash:false}")
+    private boolean fullHashFingerprint;
+
+    @Value("${uploader.queue.admission-timeout-ms:30000}")
+    private long admissionTimeoutMs;
+
+    private final Object metadataLock = new Object();
+
+    @Autowired
+    @Qualifier("uploadExecutor")
+    private ExecutorService executorService;
+
+    @Autowired
+    @Qualifier("chunkExecutor")
+    private ExecutorService chunkExecutor;
 
     /**
      * Uploads a file in chunks and tracks the progress in real-time.
+     * <p>
+     * The upload runs in its own {@link UploadSession}, registered in the {@link UploadSessionRegistry}
+     * and controlled through {@link #pauseUpload(String)}, {@link #resumeUpload(String)}, and
+     * {@link #cancelUpload(String, boolean)} by its ID. It waits in the {@link UploadQueue} until it is
+     * admitted, recorded with the status "Queued" so it is queued again after a restart.
+     * </p>
      *
      * @param file The file to upload.
      * @param progressCallback A callback to report the upload progress (0.0 to 1.0).
      * @param statusCallback A callback to report the status of the upload (e.g., "Completed", "Cancelled").
-     * @param pauseCheck A supplier to check if the upload should be paused.
-     * @param cancelCheck A supplier to check if the upload should be canceled.
+     * @return The session of the started upload.
+     * @throws RejectedExecutionException If the upload queue is full.
      */
-    public void uploadFile(
-            File file,
-            Consumer<Double> progressCallback,
-            Consumer<String> statusCallback,
-            BooleanSupplier pauseCheck,
-            BooleanSupplier cancelCheck
-    ) {
-        // Reset progress and upload state when a new file is selected
-        if (currentFile != null && !currentFile.equals(file)) {
-            resetUploadState();
-            resetProgress(progressCallback);
+    public UploadSession uploadFile(File file, Consumer<Double> progressCallback, Consumer<String> statusCallback) {
+        UploadSession session = new UploadSession(file, bandwidthScheduler.newFlow(), progressCallback, statusCallback);
+        uploadQueue.reserve(session);
+        startQueued(session, null);
+        return session;
+    }
+
+    /**
+     * Uploads a file as part of a batch, waiting for a place in the {@link UploadQueue} instead of being
+     * rejected while the queue is full.
+     *
+     * @param file The file to upload.
+     * @param batchId The ID of the batch the file belongs to.
+     * @param timeoutMs The maximum time in milliseconds to wait for a place in the queue.
+     * @param progressCallback A callback to report the upload progress (0.0 to 1.0).
+     * @param statusCallback A callback to report the status of the upload (e.g., "Completed", "Cancelled").
+     * @return The session of the started upload, or empty if the queue stayed full.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public Optional<UploadSession> offerUpload(File file, Long batchId, long timeoutMs,
+                                               Consumer<Double> progressCallback, Consumer<String> statusCallback)
+            throws InterruptedException {
+        UploadSession session = new UploadSession(file, bandwidthScheduler.newFlow(), progressCallback, statusCallback);
+        if (!uploadQueue.tryReserve(session, timeoutMs, TimeUnit.MILLISECONDS)) {
+            return Optional.empty();
         }
+        startQueued(session, batchId);
+        return Optional.of(session);
+    }
 
-        currentFile = file;
+    /**
+     * Registers an upload that has a place in the {@link UploadQueue} and queues it on an upload thread.
+     *
+     * @param session The session of the upload.
+     * @param batchId The ID of the batch the file belongs to, or null.
+     */
+    private void startQueued(UploadSession session, Long batchId) {
+        uploadSessionRegistry.register(session);
+        session.reportProgress(0.0);
+        executorService.submit(() -> queueUpload(session, batchId));
+    }
 
-        if (isCancelled || !isUploading) {
-            resetProgress(progressCallback);
+    /**
+     * Records an upload as queued and submits it to the {@link UploadQueue}, running it right away if it is
+     * admitted.
+     *
+     * @param session The session to queue.
+     * @param batchId The ID of the batch the file belongs to, or null.
+     */
+    private void queueUpload(UploadSession session, Long batchId) {
+        File file = session.getFile();
+        FileMetadata metadata = null;
+        try {
+            long lastModified = file.lastModified();
+            metadata = prepareMetadata(file, "Queued", batchId);
+            session.setFileId(metadata.getId());
+            if (metadata.getPackId() != null) {
+                // Already stored in a pack, there is nothing to transfer
+                session.reportProgress(1.0);
+                session.reportStatus("Upload Completed!");
+                session.markFinished();
+                uploadQueue.release(session);
+                return;
+            }
+            session.reportStatus("Queued");
+
+            final FileMetadata queuedMetadata = metadata;
+            if (uploadQueue.submit(session, remainingBytes(metadata),
+                    () -> executorService.submit(() -> runUpload(session, queuedMetadata, lastModified)))) {
+                runUpload(session, metadata, lastModified);
+            }
+        } catch (CancellationException e) {
+            finishQueuedUpload(session, metadata);
+        } catch (Exception e) {
+            logger.severe("Upload failed: " + e.getMessage());
+            session.reportStatus("Upload Failed: " + e.getMessage());
+            session.markFinished();
+            uploadQueue.release(session);
         }
+    }
 
-        isUploading = true;
+    /**
+     * Uploads a pack of small files as one file, waiting for a place in the {@link UploadQueue} instead of
+     * being rejected while the queue is full.
+     * <p>
+     * The pack is not recorded while it waits, so a pack queued at shutdown is not queued again; the
+     * {@link FileMetadata} of its files is only created, in bulk, once the pack has been stored.
+     * </p>
+     *
+     * @param pack The pack to upload.
+     * @param batchId The ID of the batch the files belong to.
+     * @param timeoutMs The maximum time in milliseconds to wait for a place in the queue.
+     * @param progressCallback A callback to report the upload progress of the pack (0.0 to 1.0).
+     * @param statusCallback A callback to report the status of the upload (e.g., "Completed", "Cancelled").
+     * @return The session of the started upload, or empty if the queue stayed full.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public Optional<UploadSession> offerPack(FilePack pack, Long batchId, long timeoutMs,
+                                             Consumer<Double> progressCallback, Consumer<String> statusCallback)
+            throws InterruptedException {
+        UploadSession session = new UploadSession(pack, bandwidthScheduler.newFlow(), progressCallback, statusCallback);
+        if (!uploadQueue.tryReserve(session, timeoutMs, TimeUnit.MILLISECONDS)) {
+            return Optional.empty();
+        }
+        uploadSessionRegistry.register(session);
+        session.reportProgress(0.0);
+        executorService.submit(() -> queuePack(session, batchId));
+        return Optional.of(session);
+    }
 
-        executorService.submit(() -> {
-            try {
-                final long CHUNK_SIZE = 1024 * 1024; // 1 MB
-                long totalChunks = (file.length() + CHUNK_SIZE - 1) / CHUNK_SIZE;
-
-                FileMetadata metadata = fileMetadataRepository.findByFileName(file.getName())
-                        .orElseGet(() -> {
-                            FileMetadata newMetadata = new FileMetadata();
-                            newMetadata.setFileName(file.getName());
-                            newMetadata.setFileSize(file.length());
-                            newMetadata.setStatus("Uploading");
-                            newMetadata.setUploadedChunks(0);
-                            newMetadata.setTotalChunks((int) totalChunks);
-                            return fileMetadataRepository.save(newMetadata);
-                        });
-
-                if (chunkMetadataRepository.findByFileId(metadata.getId()).isEmpty()) {
-                    for (int i = 0; i < totalChunks; i++) {
-                        chunkMetadataRepository.save(new ChunkMetadata(metadata.getId(), i, "Pending", 0.0));
-                    }
-                }
+    /**
+     * Submits a pack to the {@link UploadQueue}, running it right away if it is admitted.
+     *
+     * @param session The session of the pack.
+     * @param batchId The ID of the batch the files belong to.
+     */
+    private void queuePack(UploadSession session, Long batchId) {
+        try {
+            session.reportStatus("Queued");
+            if (uploadQueue.submit(session, session.getPack().getSize(),
+                    () -> executorService.submit(() -> runPack(session, batchId)))) {
+                runPack(session, batchId);
+            }
+        } catch (CancellationException e) {
+            finishQueuedUpload(session, null);
+        } catch (Exception e) {
+            logger.severe("Upload failed: " + e.getMessage());
+            session.reportStatus("Upload Failed: " + e.getMessage());
+            session.markFinished();
+            uploadQueue.release(session);
+        }
+    }
 
-                for (int i = metadata.getUploadedChunks(); i < totalChunks; i++) {
-                    if (cancelCheck.getAsBoolean()) {
-                        statusCallback.accept("Upload Cancelled");
-                        metadata.setStatus("Cancelled");
-                        fileMetadataRepository.save(metadata);
-                        resetProgress(progressCallback);
-                        isUploading = false;
-                        return;
-                    }
+    /**
+     * Uploads a pack once it has been admitted by the {@link UploadQueue}: the files are read one after the
+     * other into a {@link ChunkStreamer}, and recorded in bulk once the pack has been stored.
+     *
+     * @param session The session of the pack.
+     * @param batchId The ID of the batch the files belong to.
+     */
+    private void runPack(UploadSession session, Long batchId) {
+        FilePack pack = session.getPack();
+        FileMetadata metadata = null;
+        try {
+            metadata = findOrCreateMetadata(pack.getName(), pack.getSize(),
+                    FileFingerprint.ofStream(pack.getName(), pack.getSize(), pack.getFingerprint()));
+            metadata.setBatchId(batchId);
+            metadata.setStatus("Uploading");
+            metadata = fileMetadataRepository.save(metadata);
+            session.setFileId(metadata.getId());
+            session.reportStatus("Uploading");
 
-                    while (pauseCheck.getAsBoolean()) {
-                        Thread.sleep(500);
-                    }
+            boolean finished;
+            try (InputStream input = pack.openStream()) {
+                finished = streamChunks(session, metadata, pack.getSize(), input);
+            }
+            if (finished) {
+                recordPackedFiles(metadata, pack);
+                reportCompleted(session, metadata);
+            }
+        } catch (Exception e) {
+            logger.severe("Upload of pack " + pack.getName() + " failed: " + e.getMessage());
+            session.reportStatus("Upload Failed: " + e.getMessage());
+        } finally {
+            session.markFinished();
+            uploadQueue.release(session);
+            if (session.isCancelled() && session.isDiscardOnCancel() && metadata != null) {
+                discardUpload(metadata);
+            }
+        }
+    }
 
-                    Thread.sleep(10);
+    /**
+     * Records the files of a stored pack in one bulk insert, each with the offset of its bytes in the pack.
+     *
+     * @param packMetadata The metadata of the stored pack.
+     * @param pack The pack.
+     */
+    private void recordPackedFiles(FileMetadata packMetadata, FilePack pack) {
+        List<FilePack.Member> members = pack.getMembers();
+        List<String> fileNames = new ArrayList<>(members.size());
+        List<String> sourcePaths = new ArrayList<>(members.size());
+        List<String> fingerprints = new ArrayList<>(members.size());
+        List<Long> fileSizes = new ArrayList<>(members.size());
+        List<Long> packOffsets = new ArrayList<>(members.size());
+        for (FilePack.Member member : members) {
+            fileNames.add(member.getPath().getFileName().toString());
+            sourcePaths.add(member.getPath().toAbsolutePath().toString());
+            fingerprints.add(member.getFingerprint());
+            fileSizes.add(member.getSize());
+            packOffsets.add(member.getOffset());
+        }
+        int recorded = fileMetadataRepository.insertPackedFiles(packMetadata.getId(), packMetadata.getBatchId(),
+                packMetadata.getChunkSize(), fileNames, sourcePaths, fingerprints, fileSizes, packOffsets);
+        logger.info("Recorded " + recorded + " files stored in pack " + pack.getName() + ".");
+    }
 
-                    double progress = (double) (i + 1) / totalChunks;
-                    progressCallback.accept(progress);
+    /**
+     * Finishes an upload canceled before it was admitted by the {@link UploadQueue}.
+     *
+     * @param session The session of the upload.
+     * @param metadata The metadata of the file, or null if it was not prepared yet.
+     */
+    private void finishQueuedUpload(UploadSession session, FileMetadata metadata) {
+        try {
+            if (metadata != null) {
+                reportCancelled(session, metadata);
+            } else {
+                session.reportProgress(0.0);
+                session.reportStatus("Upload Cancelled");
+            }
+        } catch (Exception e) {
+            logger.severe("Failed to record canceled upload: " + e.getMessage());
+        } finally {
+            session.markFinished();
+            if (session.isDiscardOnCancel() && metadata != null) {
+                discardUpload(metadata);
+            }
+        }
+    }
 
-                    metadata.setUploadedChunks(i + 1);
-                    fileMetadataRepository.save(metadata);
+    /**
+     * Starts the upload of a session on an upload thread, once it has been admitted by the {@link UploadQueue}.
+     * <p>
+     * The upload thread only prepares the transfer; the chunks are then scheduled by the
+     * {@link ChunkTransferEngine} and the upload is finished by {@link #finishUpload} once the transfer
+     * completes, so no thread is held while the upload is paused.
+     * </p>
+     *
+     * @param session The session to run.
+     * @param queuedMetadata The metadata of the file, recorded when the upload was queued.
+     * @param lastModified The modification time of the file when the upload was queued.
+     */
+    private void runUpload(UploadSession session, FileMetadata queuedMetadata, long lastModified) {
+        File file = session.getFile();
+        FileMetadata metadata = queuedMetadata;
+        FileChannel source = null;
+        UploadTarget target = null;
+        try {
+            if (file.lastModified() != lastModified || file.length() != metadata.getFileSize()) {
+                // Changed while queued, so it is a different upload now
+                metadata.setStatus("Pending");
+                fileMetadataRepository.save(metadata);
+                metadata = prepareMetadata(file, "Uploading", metadata.getBatchId());
+            } else {
+                metadata.setStatus("Uploading");
+                fileMetadataRepository.save(metadata);
+            }
+            source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            long chunkSize = metadata.getChunkSize();
+            session.setFileId(metadata.getId());
+            session.reportStatus("Uploading");
 
-                    ChunkMetadata chunk = chunkMetadataRepository.findByFileIdAndChunkNumber(metadata.getId(), i)
-                            .orElseThrow(() -> new IllegalStateException("Chunk metadata not found"));
+            final FileMetadata fileMetadata = metadata;
 
-                    chunk.setStatus("Completed");
-                    chunk.setProgress(100.0);
-                    chunkMetadataRepository.save(chunk);
-                }
+            ChunkLayout layout = null;
+            Map<Integer, DeduplicationIndex.StoredChunk> storedChunks = Map.of();
+            if (CONTENT_DEFINED_CHUNKING.equals(chunkingMode)) {
+                // Cut the file at content-defined boundaries and look up the chunks the sink already holds
+                session.reportStatus("Scanning");
+                long scanSize = file.length();
+                layout = ContentDefinedChunker.split(source, scanSize, chunkSize,
+                        scannedBytes -> scanned(session, scannedBytes, scanSize));
+                session.reportProgress(0.0);
+                session.reportStatus("Uploading");
+                deduplicationIndex.register(metadata, layout);
+                storedChunks = deduplicationIndex.findDuplicates(metadata, layout);
+            } else {
+                chunkStateStore.initialize(metadata);
+            }
+            int totalChunks = metadata.getTotalChunks();
+            BitSet completedChunks = findVerifiedChunks(metadata);
 
-                metadata.setStatus("Completed");
-                fileMetadataRepository.save(metadata);
-                statusCallback.accept("Upload Completed!");
-                isUploading = false;
+            target = uploadSink.open(storageKey(metadata), file.length());
+            final FileChannel fileSource = source;
+            final UploadTarget fileTarget = target;
+            ChunkReader reader = new ChunkReader(source);
+
+            final ChunkLayout chunkLayout = layout;
+            final Map<Integer, DeduplicationIndex.StoredChunk> duplicates = storedChunks;
+            ChunkTransferEngine.ChunkTask task = chunkLayout == null
+                    ? chunkNumber -> transferChunk(reader, fileTarget, chunkNumber, chunkSize, fileMetadata.getFileSize())
+                    : chunkNumber -> transferLayoutChunk(reader, fileTarget, chunkLayout, duplicates, chunkNumber);
+            // Chunks copied from a duplicate inside the sink cost no bandwidth
+            IntToLongFunction chunkLength = chunkLayout == null
+                    ? chunkNumber -> Math.min(chunkSize, fileMetadata.getFileSize() - chunkNumber * chunkSize)
+                    : chunkNumber -> duplicates.containsKey(chunkNumber) ? 0 : chunkLayout.length(chunkNumber);
 
-            } catch (Exception e) {
-                logger.severe("Upload failed: " + e.getMessage());
-                statusCallback.accept("Upload Failed: " + e.getMessage());
-                isUploading = false;
+            ChunkTransferEngine.ChunkTransfer transfer = chunkTransferEngine.newTransfer(
+                    session.getFlow(),
+                    completedChunks,
+                    totalChunks,
+                    chunkLength,
+                    task,
+                    (chunkNumber, digest, completedCount, contiguousChunks) -> {
+                        session.reportProgress((double) completedCount / totalChunks);
+                        fileMetadata.setUploadedChunks(contiguousChunks);
+                        chunkProgressWriter.recordChunkCompleted(fileMetadata.getId(), chunkNumber, digest,
+                                contiguousChunks, fileTarget);
+                    },
+                    // Persist the resume point as soon as a paused upload has gone idle
+                    () -> chunkProgressWriter.flush(fileMetadata.getId())
+            );
+            transfer.completion().whenCompleteAsync(
+                    (finished, error) -> finishUpload(session, fileMetadata, fileSource, fileTarget, finished, error),
+                    executorService);
+            session.attach(transfer);
+            transfer.start();
+
+        } catch (CancellationException e) {
+            // Canceled while the file was being scanned, before any chunk was sent
+            closeQuietly(source);
+            closeQuietly(target);
+            chunkProgressWriter.flushAndRelease(metadata.getId());
+            finishQueuedUpload(session, metadata);
+            uploadQueue.release(session);
+        } catch (Exception e) {
+            logger.severe("Upload failed: " + e.getMessage());
+            session.reportStatus("Upload Failed: " + e.getMessage());
+            closeQuietly(source);
+            closeQuietly(target);
+            if (metadata != null) {
+                chunkProgressWriter.flushAndRelease(metadata.getId());
             }
-        });
+            session.markFinished();
+            uploadQueue.release(session);
+            if (session.isCancelled() && session.isDiscardOnCancel()) {
+                discardUpload(metadata);
+            }
+        }
     }
 
     /**
-     * Pauses the ongoing file upload.
+     * Reports the progress of a content-defined scan, waiting while the upload is paused.
+     *
+     * @param session The session of the upload.
+     * @param scannedBytes The number of bytes scanned so far.
+     * @param fileSize The size of the file in bytes.
+     * @throws CancellationException If the upload was canceled.
+     * @throws InterruptedException If the thread was interrupted while the upload is paused.
      */
-    public void pauseUpload() {
-        if (isUploading && !isPaused) {
-            isPaused = true;
-            logger.info("Upload paused.");
+    private void scanned(UploadSession session, long scannedBytes, long fileSize) throws InterruptedException {
+        session.awaitResumed();
+        if (session.isCancelled()) {
+            throw new CancellationException("Upload cancelled while scanning");
         }
+        session.reportProgress((double) scannedBytes / fileSize);
     }
 
     /**
-     * Resumes a paused file upload.
+     * Finishes an upload once its chunk transfer has completed, been canceled, or failed.
+     *
+     * @param session The session of the upload.
+     * @param metadata The metadata of the uploaded file.
+     * @param source The channel of the file being uploaded.
+     * @param target The target receiving the file.
+     * @param finished true if all chunks were transferred, false if the transfer was canceled.
+     * @param error The failure of the transfer, or null if it did not fail.
+     */
+    private void finishUpload(UploadSession session, FileMetadata metadata, FileChannel source, UploadTarget target,
+                              Boolean finished, Throwable error) {
+        try {
+            // Final flush so completion, cancel, and failures leave a correct resume point
+            chunkProgressWriter.flushAndRelease(metadata.getId());
+            closeQuietly(source);
+
+            if (error != null) {
+                closeQuietly(target);
+                logger.severe("Upload failed: " + error.getMessage());
+                session.reportStatus("Upload Failed: " + error.getMessage());
+                return;
+            }
+
+            if (!finished) {
+                closeQuietly(target);
+                reportCancelled(session, metadata);
+                return;
+            }
+
+            try (UploadTarget completedTarget = target) {
+                verifyChunkDigests(metadata);
+                completedTarget.complete();
+            }
+            reportCompleted(session, metadata);
+
+        } catch (Exception e) {
+            logger.severe("Upload failed: " + e.getMessage());
+            session.reportStatus("Upload Failed: " + e.getMessage());
+        } finally {
+            session.markFinished();
+            uploadQueue.release(session);
+            if (session.isCancelled() && session.isDiscardOnCancel()) {
+                discardUpload(metadata);
+            }
+        }
+    }
+
+    /**
+     * Uploads a file streamed by a client, cutting the stream into chunks as it arrives.
+     * <p>
+     * The stream is read on the calling thread and never staged in a temporary file: every chunk is
+     * written into the {@link UploadSink} while the next one is being read, and the bytes held in memory
+     * are bounded by the {@link ChunkBufferPool}. The method returns once the stream has been consumed,
+     * the upload canceled, or a chunk failed. Pausing the session stops reading the stream until it is
+     * resumed. The stream is only read once the upload has been admitted by the {@link UploadQueue}; an
+     * upload not admitted within {@code uploader.queue.admission-timeout-ms} ends with the status
+     * {@link #QUEUE_TIMEOUT_STATUS}, so the client can retry later.
+     * </p>
+     * <p>
+     * As the method only returns once the stream has been consumed, a client that wants to pause or cancel
+     * its upload while sending it chooses the session ID itself and addresses the session by it meanwhile.
+     * </p>
+     *
+     * @param sessionId The session ID chosen by the client (letters, digits, '-' and '_', at most 64), or null
+     *                  to generate one.
+     * @param fileName The name of the streamed file.
+     * @param fileSize The size of the file in bytes, as announced by the client.
+     * @param clientFingerprint A fingerprint of the file content computed by the client, or null. Only an
+     *                          upload with the same name, size, and fingerprint is resumed; without one, the
+     *                          upload always starts afresh.
+     * @param input The stream delivering the file contents.
+     * @param statusCallback A callback to report the status of the upload (e.g., "Completed", "Cancelled").
+     * @return The session of the upload.
+     * @throws IllegalArgumentException If the session ID is malformed.
+     * @throws IllegalStateException If a session with the session ID already exists.
+     * @throws RejectedExecutionException If the upload queue is full.
+     */
+    public UploadSession uploadStream(String sessionId, String fileName, long fileSize, String clientFingerprint,
+                                      InputStream input, Consumer<String> statusCallback) {
+        UploadSession session;
+        if (sessionId == null) {
+            session = new UploadSession(fileName, bandwidthScheduler.newFlow(), null, statusCallback);
+        } else if (CLIENT_SESSION_ID.matcher(sessionId).matches()) {
+            session = new UploadSession(sessionId, fileName, bandwidthScheduler.newFlow(), null, statusCallback);
+        } else {
+            throw new IllegalArgumentException("Invalid upload session ID: " + sessionId);
+        }
+        // Registered first, so the session can be paused or canceled while it waits for admission
+        uploadSessionRegistry.register(session);
+        try {
+            uploadQueue.reserve(session);
+        } catch (RejectedExecutionException e) {
+            uploadSessionRegistry.remove(session.getId());
+            throw e;
+        }
+        session.reportProgress(0.0);
+        FileMetadata metadata = null;
+        try {
+            metadata = findOrCreateMetadata(fileName, fileSize,
+                    FileFingerprint.ofStream(fileName, fileSize, clientFingerprint));
+            session.setFileId(metadata.getId());
+            session.reportStatus("Queued");
+            awaitAdmission(session, remainingBytes(metadata));
+            session.reportStatus("Uploading");
+
+            if (streamChunks(session, metadata, fileSize, input)) {
+                reportCompleted(session, metadata);
+            }
+
+        } catch (CancellationException e) {
+            reportCancelled(session, metadata);
+        } catch (TimeoutException e) {
+            logger.warning("Upload of " + fileName + " not admitted: " + e.getMessage());
+            session.reportStatus(QUEUE_TIMEOUT_STATUS);
+        } catch (Exception e) {
+            logger.severe("Upload failed: " + e.getMessage());
+            session.reportStatus("Upload Failed: " + e.getMessage());
+        } finally {
+            session.markFinished();
+            uploadQueue.release(session);
+            if (session.isCancelled() && session.isDiscardOnCancel() && metadata != null) {
+                discardUpload(metadata);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Cuts a stream into chunks and writes them into the {@link UploadSink} through a {@link ChunkStreamer},
+     * skipping the chunks completed by an earlier attempt.
+     *
+     * @param session The session of the upload.
+     * @param metadata The metadata of the file.
+     * @param fileSize The number of bytes the stream delivers.
+     * @param input The stream delivering the file contents.
+     * @return true if the file has been stored, false if the upload was canceled and recorded as such.
+     * @throws Exception If the stream ends early, or a chunk cannot be read or written.
      */
-    public void resumeUpload() {
-        if (isUploading && isPaused) {
-            isPaused = false;
-            logger.info("Upload resumed.");
+    private boolean streamChunks(UploadSession session, FileMetadata metadata, long fileSize, InputStream input)
+            throws Exception {
+        chunkStateStore.initialize(metadata);
+        BitSet completedChunks = findVerifiedChunks(metadata);
+        int totalChunks = metadata.getTotalChunks();
+
+        try (UploadTarget target = uploadSink.open(storageKey(metadata), fileSize)) {
+            ChunkStreamer streamer = new ChunkStreamer(chunkBufferPool, chunkExecutor, bandwidthScheduler, target,
+                    metadata.getChunkSize(),
+                    (chunkNumber, digest, completedCount, contiguousChunks) -> {
+                        session.reportProgress((double) completedCount / totalChunks);
+                        metadata.setUploadedChunks(contiguousChunks);
+                        chunkProgressWriter.recordChunkCompleted(metadata.getId(), chunkNumber, digest,
+                                contiguousChunks, target);
+                    });
+
+            boolean finished;
+            try {
+                finished = streamer.stream(input, fileSize, completedChunks, session);
+            } finally {
+                // Final flush so completion, cancel, and failures leave a correct resume point
+                chunkProgressWriter.flushAndRelease(metadata.getId());
+            }
+
+            if (!finished) {
+                reportCancelled(session, metadata);
+                return false;
+            }
+            verifyChunkDigests(metadata);
+            target.complete();
         }
+        return true;
     }
 
     /**
-     * Cancels the ongoing file upload and resets the upload state.
+     * Waits on the calling thread until a streamed upload is admitted by the {@link UploadQueue}.
+     *
+     * @param session The session of the upload, reserved in the queue.
+     * @param remainingBytes The number of bytes the upload still has to transfer.
+     * @throws CancellationException If the upload was canceled while waiting.
+     * @throws TimeoutException If the upload was not admitted within the admission timeout.
+     * @throws InterruptedException If the thread was interrupted while waiting.
      */
-    public void cancelUpload() {
-        if (isUploading) {
-            isCancelled = true;
-            logger.info("Upload cancelled.");
-            resetProgress(null);
-            resetUploadState();
+    private void awaitAdmission(UploadSession session, long remainingBytes)
+            throws TimeoutException, InterruptedException {
+        CountDownLatch admitted = new CountDownLatch(1);
+        if (uploadQueue.submit(session, remainingBytes, admitted::countDown)) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(admissionTimeoutMs);
+        // Woken up regularly, as a cancel only flags the session
+        while (!admitted.await(ADMISSION_POLL_MS, TimeUnit.MILLISECONDS)) {
+            boolean cancelled = session.isCancelled();
+            if ((cancelled || System.nanoTime() - deadline >= 0) && uploadQueue.remove(session)) {
+                if (cancelled) {
+                    throw new CancellationException("Upload cancelled while queued");
+                }
+                throw new TimeoutException("Timed out after " + admissionTimeoutMs + " ms in the upload queue");
+            }
         }
     }
 
     /**
-     * Cleans up metadata for a canceled upload.
+     * Records the source of a file and finds or creates its metadata with the given status.
      *
-     * @param file The file whose metadata should be removed.
+     * @param file The file to upload.
+     * @param status The status to record, "Queued" or "Uploading".
+     * @param batchId The ID of the batch the file belongs to, or null.
+     * @return The saved metadata of the file.
+     * @throws IOException If the file cannot be read.
      */
+    private FileMetadata prepareMetadata(File file, String status, Long batchId) throws IOException {
+        String fingerprint = fingerprint(file);
+        synchronized (metadataLock) {
+            FileMetadata metadata = createMetadataIfAbsent(file.getName(), file.length(), fingerprint);
+            if (metadata.getPackId() != null) {
+                // Stored in a pack, which holds the only record of its bytes
+                return metadata;
+            }
+            metadata.setSourcePath(file.getAbsolutePath());
+            metadata.setStatus(status);
+            if (batchId != null) {
+                metadata.setBatchId(batchId);
+            }
+            return fileMetadataRepository.save(metadata);
+        }
+    }
+
     /**
-     * Cleans up metadata for a canceled upload by removing all associated database entries.
+     * Computes the {@link FileFingerprint} of a local file, as configured by {@code uploader.fingerprint.full-hash}.
      *
-     * @param file The file whose metadata should be removed.
+     * @param file The file.
+     * @return The hex-encoded fingerprint.
+     * @throws IOException If the file cannot be read.
      */
-    public void cleanupCanceledUpload(File file) {
-        if (file != null) {
-            try {
-                // Find the file metadata by file name
-                FileMetadata metadata = fileMetadataRepository.findByFileName(file.getName()).orElse(null);
+    public String fingerprint(File file) throws IOException {
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return FileFingerprint.ofFile(source, file.length(), file.lastModified(), fullHashFingerprint);
+        }
+    }
 
-                if (metadata != null) {
-                    // Delete associated chunk metadata
-                    chunkMetadataRepository.deleteByFileId(metadata.getId());
+    /**
+     * Finds which of the given fingerprints already have an upload, in a single query.
+     *
+     * @param fingerprints The fingerprints to look up.
+     * @return The fingerprints that already have an upload.
+     */
+    public Set<String> findKnownFingerprints(Collection<String> fingerprints) {
+        if (fingerprints.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(fileMetadataRepository.findKnownFingerprints(fingerprints));
+    }
 
-                    // Delete file metadata
-                    fileMetadataRepository.deleteById(metadata.getId());
+    /**
+     * Estimates the bytes an upload still has to transfer from its resume point, used to order the
+     * {@link UploadQueue}.
+     */
+    private static long remainingBytes(FileMetadata metadata) {
+        long uploaded = Math.min(metadata.getFileSize(), (long) metadata.getUploadedChunks() * metadata.getChunkSize());
+        return metadata.getFileSize() - uploaded;
+    }
 
-                    logger.info("Successfully removed file and chunk metadata for file: " + file.getName());
-                } else {
-                    logger.warning("No metadata found for file: " + file.getName());
+    /**
+     * Finds the metadata of a file by its {@link FileFingerprint}, creating it if the file has not been
+     * uploaded before.
+     * <p>
+     * A file whose content changed since its upload started has a different fingerprint and starts a fresh
+     * upload. New uploads get their chunk size from the {@link ChunkSizePolicy}; existing uploads keep the
+     * chunk size stored in their metadata, so a resumed upload always uses the same chunk layout.
+     * </p>
+     *
+     * @param fileName The name of the file.
+     * @param fileSize The size of the file in bytes.
+     * @param fingerprint The fingerprint of the file.
+     * @return The metadata of the file.
+     */
+    FileMetadata findOrCreateMetadata(String fileName, long fileSize, String fingerprint) {
+        // Serialized so two sessions of the same file never race on the unique fingerprint
+        synchronized (metadataLock) {
+            return createMetadataIfAbsent(fileName, fileSize, fingerprint);
+        }
+    }
+
+    /**
+     * Looks up the metadata of a fingerprint and creates it if it does not exist. Must hold the metadata lock.
+     */
+    private FileMetadata createMetadataIfAbsent(String fileName, long fileSize, String fingerprint) {
+        return fileMetadataRepository.findByFingerprint(fingerprint)
+                .orElseGet(() -> {
+                    long chunkSize = chunkSizePolicy.chooseChunkSize(fileSize);
+                    FileMetadata newMetadata = new FileMetadata();
+                    newMetadata.setFileName(fileName);
+                    newMetadata.setFingerprint(fingerprint);
+                    newMetadata.setFileSize(fileSize);
+                    newMetadata.setStatus("Uploading");
+                    newMetadata.setUploadedChunks(0);
+                    newMetadata.setChunkSize(chunkSize);
+                    newMetadata.setTotalChunks(ChunkSizePolicy.totalChunks(fileSize, chunkSize));
+                    logger.info("Uploading " + fileName + " in chunks of " + chunkSize + " bytes.");
+                    return fileMetadataRepository.save(newMetadata);
+                });
+    }
+
+    /**
+     * Records and reports a canceled upload.
+     *
+     * @param session The session of the upload.
+     * @param metadata The metadata of the file.
+     */
+    private void reportCancelled(UploadSession session, FileMetadata metadata) {
+        metadata.setStatus("Cancelled");
+        fileMetadataRepository.save(metadata);
+        session.reportProgress(0.0);
+        session.reportStatus("Upload Cancelled");
+    }
+
+    /**
+     * Records and reports a completed upload.
+     *
+     * @param session The session of the upload.
+     * @param metadata The metadata of the file.
+     */
+    private void reportCompleted(UploadSession session, FileMetadata metadata) {
+        metadata.setStatus("Completed");
+        fileMetadataRepository.save(metadata);
+        session.reportStatus("Upload Completed!");
+    }
+
+    /**
+     * Closes a resource, logging instead of propagating a failure.
+     *
+     * @param closeable The resource to close, may be null.
+     */
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close upload resource: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Transfers a chunk from the source file into the upload target.
+     *
+     * @param reader The reader serving chunk regions of the file being uploaded.
+     * @param target The target receiving the file.
+     * @param chunkNumber The sequential number of the chunk.
+     * @param chunkSize The size of a chunk in bytes.
+     * @param fileSize The size of the file in bytes.
+     * @return The SHA-256 digest of the chunk.
+     * @throws IOException If the chunk cannot be read or written.
+     */
+    private byte[] transferChunk(ChunkReader reader, UploadTarget target, int chunkNumber, long chunkSize, long fileSize)
+            throws IOException {
+        long offset = chunkNumber * chunkSize;
+        int length = (int) Math.min(chunkSize, fileSize - offset);
+        return transferRegion(reader, target, offset, length);
+    }
+
+    /**
+     * Transfers a content-defined chunk into the upload target, copying it inside the sink when the sink
+     * already holds a chunk with the same digest.
+     *
+     * @param reader The reader serving chunk regions of the file being uploaded.
+     * @param target The target receiving the file.
+     * @param layout The content-defined chunks of the file.
+     * @param storedChunks The chunks already held by the sink, keyed by chunk number.
+     * @param chunkNumber The sequential number of the chunk.
+     * @return The SHA-256 digest of the chunk.
+     * @throws IOException If the chunk cannot be read or written, or has changed since the file was scanned.
+     */
+    private byte[] transferLayoutChunk(ChunkReader reader, UploadTarget target, ChunkLayout layout,
+                                       Map<Integer, DeduplicationIndex.StoredChunk> storedChunks, int chunkNumber)
+            throws IOException {
+        long offset = layout.offset(chunkNumber);
+        int length = layout.length(chunkNumber);
+        DeduplicationIndex.StoredChunk stored = storedChunks.get(chunkNumber);
+        if (stored != null) {
+            try {
+                if (uploadSink.copy(storageKey(stored.getFile()), stored.getOffset(), length, target, offset)) {
+                    return layout.digest(chunkNumber);
                 }
-            } catch (Exception e) {
-                logger.severe("Error during cleanup for file: " + file.getName() + " - " + e.getMessage());
+            } catch (IOException e) {
+                logger.warning("Stored chunk unavailable, transferring it instead: " + e.getMessage());
             }
         }
+        byte[] digest = transferRegion(reader, target, offset, length);
+        if (!MessageDigest.isEqual(digest, layout.digest(chunkNumber))) {
+            throw new IOException("Chunk " + chunkNumber + " has changed since the file was scanned");
+        }
+        return digest;
+    }
+
+    /**
+     * Transfers a region of the source file into the upload target and feeds its duration to the
+     * {@link ChunkSizePolicy}.
+     *
+     * @return The SHA-256 digest of the region.
+     */
+    private byte[] transferRegion(ChunkReader reader, UploadTarget target, long offset, int length) throws IOException {
+        long start = System.nanoTime();
+        byte[] digest = reader.transfer(target, offset, length);
+        chunkSizePolicy.recordTransfer(length, System.nanoTime() - start);
+        return digest;
+    }
+
+    /**
+     * Returns the completed chunks of a file that can be trusted on resume.
+     * <p>
+     * A chunk marked as completed without a stored digest, e.g. one completed before digests were recorded,
+     * cannot be verified and is transferred again instead. Every other chunk is covered by the Merkle root
+     * computed when the upload completes.
+     * </p>
+     *
+     * @param metadata The metadata of the file.
+     * @return The completed chunks that have a digest.
+     */
+    BitSet findVerifiedChunks(FileMetadata metadata) {
+        BitSet completed = chunkStateStore.findCompletedChunks(metadata);
+        byte[][] digests = chunkStateStore.findDigests(metadata);
+        int suspect = 0;
+        for (int chunk = completed.nextSetBit(0); chunk >= 0; chunk = completed.nextSetBit(chunk + 1)) {
+            if (digests[chunk] == null) {
+                completed.clear(chunk);
+                suspect++;
+            }
+        }
+        if (suspect > 0) {
+            logger.warning("Transferring " + suspect + " chunks of " + metadata.getFileName()
+                    + " again, they have no recorded digest.");
+        }
+        return completed;
+    }
+
+    /**
+     * Combines the stored chunk digests of a file into its Merkle root and stores it on the metadata.
+     * <p>
+     * Only the digests are read, never the file, so verifying a completed upload costs O(chunks).
+     * </p>
+     *
+     * @param metadata The metadata of the file, whose chunk progress has been flushed.
+     * @return The hex-encoded Merkle root.
+     * @throws IOException If a chunk of the file has no recorded digest.
+     */
+    String verifyChunkDigests(FileMetadata metadata) throws IOException {
+        byte[] root = ChunkDigests.merkleRoot(chunkStateStore.findDigests(metadata));
+        if (root == null) {
+            throw new IOException("Chunk digests of " + metadata.getFileName() + " are incomplete");
+        }
+        String merkleRoot = ChunkDigests.toHex(root);
+        metadata.setMerkleRoot(merkleRoot);
+        return merkleRoot;
+    }
+
+    /**
+     * Returns the key under which a file is stored in the {@link UploadSink}. The key is prefixed with the
+     * metadata ID, so different files with the same name never overwrite each other.
+     *
+     * @param metadata The metadata of the file.
+     * @return The storage key of the file.
+     */
+    String storageKey(FileMetadata metadata) {
+        return metadata.getId() + "-" + metadata.getFileName();
+    }
+
+    /**
+     * Pauses an ongoing file upload.
+     *
+     * @param sessionId The ID of the upload session.
+     * @return true if the session exists, false otherwise.
+     */
+    public boolean pauseUpload(String sessionId) {
+        return uploadSessionRegistry.find(sessionId).map(session -> {
+            if (!session.isFinished() && !session.isPaused()) {
+                session.setPaused(true);
+                logger.info("Upload paused: " + sessionId);
+            }
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Resumes a paused file upload.
+     *
+     * @param sessionId The ID of the upload session.
+     * @return true if the session exists, false otherwise.
+     */
+    public boolean resumeUpload(String sessionId) {
+        return uploadSessionRegistry.find(sessionId).map(session -> {
+            if (!session.isFinished() && session.isPaused()) {
+                session.setPaused(false);
+                logger.info("Upload resumed: " + sessionId);
+            }
+            return true;
+        }).orElse(false);
     }
 
+    /**
+     * Changes the priority of a file upload, i.e. its weight in the fair share of the bandwidth.
+     *
+     * @param sessionId The ID of the upload session.
+     * @param priority The new priority, between {@link BandwidthScheduler#MIN_PRIORITY} and
+     *                 {@link BandwidthScheduler#MAX_PRIORITY}.
+     * @return true if the session exists, false otherwise.
+     * @throws IllegalArgumentException If the priority is out of range.
+     */
+    public boolean setPriority(String sessionId, int priority) {
+        return uploadSessionRegistry.find(sessionId).map(session -> {
+            session.getFlow().setPriority(priority);
+            logger.info("Upload priority set to " + priority + ": " + sessionId);
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Changes the maximum bandwidth of a file upload.
+     *
+     * @param sessionId The ID of the upload session.
+     * @param bytesPerSecond The new rate limit in bytes per second, or 0 for no cap.
+     * @return true if the session exists, false otherwise.
+     * @throws IllegalArgumentException If the rate limit is negative.
+     */
+    public boolean setRateLimit(String sessionId, long bytesPerSecond) {
+        return uploadSessionRegistry.find(sessionId).map(session -> {
+            session.getFlow().setRateLimit(bytesPerSecond);
+            logger.info("Upload rate limit set to " + bytesPerSecond + " bytes per second: " + sessionId);
+            return true;
+        }).orElse(false);
+    }
 
     /**
-     * Resets the upload state to its default values.
+     * Cancels an ongoing file upload.
+     *
+     * @param sessionId The ID of the upload session.
+     * @param discardProgress true to remove the metadata and stored bytes of the upload once it has stopped.
+     * @return true if the session exists, false otherwise.
      */
-    public void resetUploadState() {
-        isUploading = false;
-        isPaused = false;
-        isCancelled = false;
-        currentFile = null;
+    public boolean cancelUpload(String sessionId, boolean discardProgress) {
+        return uploadSessionRegistry.find(sessionId).map(session -> {
+            if (!session.isFinished()) {
+                session.cancel(discardProgress);
+                logger.info("Upload cancelled: " + sessionId);
+                // A queued stream notices the cancel itself, a queued file or pack has no thread to do so
+                if ((session.getFile() != null || session.getPack() != null) && uploadQueue.remove(session)) {
+                    FileMetadata metadata = session.getFileId() == null ? null
+                            : fileMetadataRepository.findById(session.getFileId()).orElse(null);
+                    executorService.submit(() -> finishQueuedUpload(session, metadata));
+                }
+            }
+            return true;
+        }).orElse(false);
     }
 
     /**
-     * Resets the progress callback to 0.
+     * Queues the uploads that were still waiting when the application stopped.
+     * <p>
+     * Uploads whose source file no longer exists are recorded as "Cancelled". If the {@link UploadQueue} is
+     * full, the remaining uploads stay queued for the next start.
+     * </p>
      *
-     * @param progressCallback The progress callback to reset.
+     * @return The number of queued uploads.
      */
-    public void resetProgress(Consumer<Double> progressCallback) {
-        if (progressCallback != null) {
-            progressCallback.accept(0.0);
+    public int restoreQueuedUploads() {
+        List<FileMetadata> queued = fileMetadataRepository.findByStatusOrderByIdAsc("Queued");
+        int restored = 0;
+        for (FileMetadata metadata : queued) {
+            File file = metadata.getSourcePath() == null ? null : new File(metadata.getSourcePath());
+            if (file == null || !file.isFile()) {
+                metadata.setStatus("Cancelled");
+                fileMetadataRepository.save(metadata);
+                logger.warning("Queued upload " + metadata.getFileName() + " dropped, its source file is gone.");
+                continue;
+            }
+            // Queueing again records whichever metadata matches the file now
+            metadata.setStatus("Pending");
+            fileMetadataRepository.save(metadata);
+            try {
+                UploadSession session = new UploadSession(file, bandwidthScheduler.newFlow(), null, null);
+                uploadQueue.reserve(session);
+                startQueued(session, metadata.getBatchId());
+            } catch (RejectedExecutionException e) {
+                metadata.setStatus("Queued");
+                fileMetadataRepository.save(metadata);
+                logger.warning("Upload queue full, the remaining queued uploads wait for the next start.");
+                break;
+            }
+            restored++;
+        }
+        if (restored > 0) {
+            logger.info("Queued " + restored + " uploads again.");
+        }
+        return restored;
+    }
+
+    /**
+     * Finds an upload session by its ID.
+     *
+     * @param sessionId The ID of the upload session.
+     * @return An {@link Optional} containing the session, or empty if no session matches.
+     */
+    public Optional<UploadSession> findSession(String sessionId) {
+        return uploadSessionRegistry.find(sessionId);
+    }
+
+    /**
+     * Cleans up a canceled upload by removing its stored bytes and all associated database entries.
+     *
+     * @param metadata The metadata of the canceled file.
+     */
+    void discardUpload(FileMetadata metadata) {
+        try {
+            // Delete the partially uploaded bytes
+            uploadSink.delete(storageKey(metadata));
+
+            deleteFileMetadataAndChunks(metadata.getId());
+            logger.info("Successfully removed file and chunk metadata for file: " + metadata.getFileName());
+        } catch (Exception e) {
+            logger.severe("Error during cleanup for file: " + metadata.getFileName() + " - " + e.getMessage());
         }
     }
 
@@ -238,7 +1139,8 @@ public class FileUploadService {
      */
     public void deleteFileMetadataAndChunks(Long fileId) {
         try {
-            chunkMetadataRepository.deleteByFileId(fileId);
+            chunkProgressWriter.discard(fileId);
+            chunkStateStore.delete(fileId);
             fileMetadataRepository.deleteById(fileId);
             logger.info("Deleted file metadata and chunks for fileId: " + fileId);
         } catch (Exception e) {
@@ -251,5 +1153,7 @@ public class FileUploadService {
      */
     public void shutdown() {
         executorService.shutdown();
+        chunkTransferEngine.shutdown();
+        chunkProgressWriter.shutdown();
     }
 }
@@ -0,0 +1,135 @@
+/**
+ * Walks a directory tree in parallel and hands every regular file to a visitor as soon as it is found.
+ * <p>
+ * Every directory is listed by its own fork/join task, and subdirectories are forked the moment they are
+ * listed, so idle workers steal whole subtrees and a tree with hundreds of thousands of files is enumerated
+ * by all workers at once. Files are visited while the walk is still running, never collected into a full
+ * listing first; a visitor that blocks, e.g. waiting for room in the {@link UploadQueue}, slows the walk
+ * down to the pace of the uploads.
+ * </p>
+ *
+ * <h2>Rules</h2>
+ * <ul>
+ *   <li>Symbolic links are not followed, so a link cycle cannot make the walk endless.</li>
+ *   <li>A directory that cannot be read is logged and skipped; the rest of the tree is still walked.</li>
+ *   <li>Once {@code cancelled} returns true, no further files are visited.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+public class ParallelDirectoryWalker {
+
+    private static final Logger logger = Logger.getLogger(ParallelDirectoryWalker.class.getName());
+
+    /**
+     * Receives the files found by the walk. Called concurrently from several walker threads.
+     */
+    @FunctionalInterface
+    public interface FileVisitor {
+        /**
+         * Visits a regular file.
+         *
+         * @param file The path of the file.
+         * @param size The size of the file in bytes.
+         * @throws InterruptedException If the walk was interrupted while visiting the file.
+         */
+        void visitFile(Path file, long size) throws InterruptedException;
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a walker running on the given pool.
+     *
+     * @param pool The pool whose workers list the directories.
+     */
+    public ParallelDirectoryWalker(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Starts walking a directory tree.
+     *
+     * @param root The root directory of the tree.
+     * @param visitor The visitor receiving the files.
+     * @param cancelled Tells whether the walk has been cancelled.
+     * @return A future completed once the whole tree has been walked or the walk was cancelled.
+     */
+    public CompletableFuture<Void> walk(Path root, FileVisitor visitor, BooleanSupplier cancelled) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        pool.execute(() -> {
+            try {
+                new DirectoryTask(root, visitor, cancelled).invoke();
+                done.complete(null);
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Lists one directory, visiting its files and forking a task per subdirectory.
+     */
+    private static class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final FileVisitor visitor;
+        private final BooleanSupplier cancelled;
+
+        DirectoryTask(Path directory, FileVisitor visitor, BooleanSupplier cancelled) {
+            this.directory = directory;
+            this.visitor = visitor;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (cancelled.getAsBoolean()) {
+                        break;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        logger.warning("Skipping unreadable entry " + entry + ": " + e.getMessage());
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        // Forked right away, so other workers can take the subtree while this listing goes on
+                        DirectoryTask subdirectory = new DirectoryTask(entry, visitor, cancelled);
+                        subdirectory.fork();
+                        subdirectories.add(subdirectory);
+                    } else if (attributes.isRegularFile()) {
+                        visitor.visitFile(entry, attributes.size());
+                    }
+                }
+            } catch (IOException e) {
+                logger.warning("Skipping unreadable directory " + directory + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (DirectoryTask subdirectory : subdirectories) {
+                subdirectory.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/**
+ * Append-only write-ahead journal of chunk completions.
+ * <p>
+ * Every completed chunk is appended to a local journal file before it reaches the database, and a sync
+ * thread makes the journal durable with one {@code fsync} per {@code uploader.journal.sync-interval-ms}
+ * covering all records appended since the last one (group commit). The database then only has to be
+ * updated at checkpoints, in large batches, and a crash loses nothing that was synced: the journal is
+ * replayed into the database before the first upload starts.
+ * </p>
+ * <p>
+ * A replayed completion skips its chunk on resume, so it must never be durable before the chunk itself.
+ * Appended records are therefore held in memory until the group commit, which first syncs the
+ * {@link UploadTarget}s holding their chunks, then writes the records and syncs the journal.
+ * </p>
+ *
+ * <h2>Files</h2>
+ * <ul>
+ *   <li>The journal is a sequence of generation files {@code progress-<n>.journal} in
+ *   {@code uploader.journal.directory}. Records are only ever appended to the newest generation.</li>
+ *   <li>A checkpoint starts a new generation, writes the pending completions to the database, and then deletes
+ *   the older generations.</li>
+ *   <li>Records have a fixed size and a CRC32, so a record torn by a crash is detected and ignored.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+@Component
+public class ProgressJournal {
+
+    private static final Logger logger = Logger.getLogger(ProgressJournal.class.getName());
+
+    /**
+     * Size of a record: file ID, chunk number, uploaded chunks, digest, and CRC32.
+     */
+    static final int RECORD_SIZE = Long.BYTES + 2 * Integer.BYTES + ChunkDigests.DIGEST_LENGTH + Integer.BYTES;
+
+    private static final String PREFIX = "progress-";
+    private static final String SUFFIX = ".journal";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Object lock = new Object();
+    // Held by the group commit, so records are written to the generation they were appended to
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService syncer;
+
+    private FileChannel channel;
+    private long generation;
+    private List<ByteBuffer> records = new ArrayList<>();
+    private Set<UploadTarget> targets = newTargetSet();
+
+    /**
+     * Creates the journal and opens a new generation after the existing ones, which are kept for
+     * {@link #readAll()}.
+     *
+     * @param enabled Whether chunk completions are journaled.
+     * @param directory The directory holding the journal files.
+     * @param syncIntervalMs The interval in milliseconds between group-commit syncs.
+     * @throws IOException If the journal cannot be opened.
+     */
+    @Autowired
+    public ProgressJournal(@Value("${uploader.journal.enabled:true}") boolean enabled,
+                           @Value("${uploader.journal.directory:./data/journal}") String directory,
+                           @Value("${uploader.journal.sync-interval-ms:10}") long syncIntervalMs) throws IOException {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        if (!enabled) {
+            this.syncer = null;
+            return;
+        }
+
+        Files.createDirectories(this.directory);
+        TreeMap<Long, Path> existing = generations();
+        openGeneration(existing.isEmpty() ? 1 : existing.lastKey() + 1);
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if chunk completions are journaled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a chunk completion. The record becomes durable with the next group-commit sync, after the chunk.
+     *
+     * @param fileId The ID of the file the chunk belongs to.
+     * @param chunkNumber The sequential number of the completed chunk.
+     * @param uploadedChunks The number of chunks completed without a gap from the start of the file.
+     * @param digest The SHA-256 digest of the chunk.
+     * @param target The target the chunk was written to.
+     */
+    public void append(Long fileId, int chunkNumber, int uploadedChunks, byte[] digest, UploadTarget target) {
+        if (!enabled) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putLong(fileId).putInt(chunkNumber).putInt(uploadedChunks).put(digest);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue()).flip();
+
+        synchronized (lock) {
+            records.add(record);
+            targets.add(target);
+        }
+    }
+
+    /**
+     * Starts a new generation. Completions appended from now on go to the new generation.
+     *
+     * @return The new generation; every older generation may be deleted once the completions pending at
+     *         the time of this call have reached the database.
+     */
+    public long rotate() {
+        if (!enabled) {
+            return 0;
+        }
+        synchronized (syncLock) {
+            // The records appended so far belong to the generation being closed
+            commit();
+            synchronized (lock) {
+                try {
+                    channel.close();
+                    openGeneration(generation + 1);
+                } catch (IOException e) {
+                    logger.severe("Failed to rotate progress journal: " + e.getMessage());
+                }
+                return generation;
+            }
+        }
+    }
+
+    /**
+     * Deletes the generations older than the given one, whose completions have reached the database.
+     *
+     * @param generation The oldest generation to keep.
+     */
+    public void deleteBefore(long generation) {
+        if (!enabled) {
+            return;
+        }
+        for (Path file : generations().headMap(generation).values()) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warning("Failed to delete journal file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the records of all generations older than the current one, i.e. the completions journaled before
+     * the last shutdown or crash that may not have reached the database.
+     *
+     * @return The intact records, in the order they were appended.
+     */
+    public List<Entry> readAll() {
+        List<Entry> entries = new ArrayList<>();
+        if (!enabled) {
+            return entries;
+        }
+        for (Path file : generations().headMap(generation).values()) {
+            try (FileChannel journal = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+                while (true) {
+                    record.clear();
+                    while (record.hasRemaining() && journal.read(record) >= 0) {
+                        // Fill the record
+                    }
+                    if (record.hasRemaining()) {
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(record.array(), 0, RECORD_SIZE - Integer.BYTES);
+                    record.flip();
+                    long fileId = record.getLong();
+                    int chunkNumber = record.getInt();
+                    int uploadedChunks = record.getInt();
+                    byte[] digest = new byte[ChunkDigests.DIGEST_LENGTH];
+                    record.get(digest);
+                    if (record.getInt() != (int) crc.getValue()) {
+                        // Torn by a crash, nothing after it was synced
+                        break;
+                    }
+                    entries.add(new Entry(fileId, chunkNumber, uploadedChunks, digest));
+                }
+            } catch (IOException e) {
+                logger.severe("Failed to read journal file " + file + ": " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Syncs the journal and stops the group-commit thread.
+     */
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        syncer.shutdown();
+        synchronized (syncLock) {
+            commit();
+            synchronized (lock) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.warning("Failed to close progress journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a group commit from the sync thread.
+     */
+    private void sync() {
+        synchronized (syncLock) {
+            commit();
+        }
+    }
+
+    /**
+     * Makes all appended records durable: syncs the targets holding their chunks, then writes the records and
+     * syncs the journal with a single {@code fsync}. Must hold the sync lock.
+     */
+    private void commit() {
+        List<ByteBuffer> batch;
+        Set<UploadTarget> batchTargets;
+        FileChannel current;
+        synchronized (lock) {
+            if (records.isEmpty()) {
+                return;
+            }
+            batch = records;
+            batchTargets = targets;
+            current = channel;
+            records = new ArrayList<>();
+            targets = newTargetSet();
+        }
+        try {
+            // Outside the lock, so appends never wait for the disk
+            for (UploadTarget target : batchTargets) {
+                target.sync();
+            }
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+            long remaining = (long) buffers.length * RECORD_SIZE;
+            while (remaining > 0) {
+                remaining -= current.write(buffers);
+            }
+            current.force(false);
+        } catch (IOException e) {
+            // Retried with the next sync; a record written twice only marks its chunk completed twice on replay
+            logger.severe("Failed to sync progress journal: " + e.getMessage());
+            synchronized (lock) {
+                for (ByteBuffer record : batch) {
+                    record.rewind();
+                }
+                records.addAll(0, batch);
+                targets.addAll(batchTargets);
+            }
+        }
+    }
+
+    /**
+     * Creates a set of targets compared by identity.
+     */
+    private static Set<UploadTarget> newTargetSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Opens a new generation file for appending. Must hold the lock, or be called from the constructor.
+     */
+    private void openGeneration(long newGeneration) throws IOException {
+        channel = FileChannel.open(directory.resolve(PREFIX + newGeneration + SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        generation = newGeneration;
+    }
+
+    /**
+     * Lists the journal files by generation.
+     */
+    private TreeMap<Long, Path> generations() {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    logger.warning("Ignoring unexpected journal file: " + file);
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to list journal files: " + e.getMessage());
+        }
+        return files;
+    }
+
+    /**
+     * A journaled chunk completion.
+     */
+    public static class Entry {
+        private final Long fileId;
+        private final int chunkNumber;
+        private final int uploadedChunks;
+        private final byte[] digest;
+
+        Entry(Long fileId, int chunkNumber, int uploadedChunks, byte[] digest) {
+            this.fileId = fileId;
+            this.chunkNumber = chunkNumber;
+            this.uploadedChunks = uploadedChunks;
+            this.digest = digest;
+        }
+
+        /**
+         * @return The ID of the file the chunk belongs to.
+         */
+        public Long getFileId() {
+            return fileId;
+        }
+
+        /**
+         * @return The sequential number of the completed chunk.
+         */
+        public int getChunkNumber() {
+            return chunkNumber;
+        }
+
+        /**
+         * @return The number of chunks completed without a gap from the start of the file.
+         */
+        public int getUploadedChunks() {
+            return uploadedChunks;
+        }
+
+        /**
+         * @return The SHA-256 digest of the chunk.
+         */
+        public byte[] getDigest() {
+            return digest;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Chunk state store keeping one {@code chunk_metadata} row per chunk.
+ * <p>
+ * Rows are bulk-created when a file is first seen and updated with multi-row statements by the
+ * {@link ChunkProgressWriter}, which also stores the digest of every completed chunk on its row.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.ChunkMetadata;
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.repository.ChunkMetadataRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+public class RowChunkStateStore implements ChunkStateStore {
+
+    /**
+     * Upper bound for the chunks of a single multi-row update.
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final ChunkMetadataRepository chunkMetadataRepository;
+
+    /**
+     * Creates the store on top of the chunk metadata repository.
+     *
+     * @param chunkMetadataRepository The repository for chunk metadata.
+     */
+    public RowChunkStateStore(ChunkMetadataRepository chunkMetadataRepository) {
+        this.chunkMetadataRepository = chunkMetadataRepository;
+    }
+
+    @Override
+    public void initialize(FileMetadata metadata) {
+        // The check only saves the insert on resume; the insert itself ignores rows created concurrently
+        if (!chunkMetadataRepository.existsByFileId(metadata.getId())) {
+            chunkMetadataRepository.insertPendingChunks(metadata.getId(), metadata.getTotalChunks());
+        }
+    }
+
+    @Override
+    public BitSet findCompletedChunks(FileMetadata metadata) {
+        // Read the pending chunks, served by a partial index that shrinks as the upload progresses
+        BitSet completed = new BitSet(metadata.getTotalChunks());
+        completed.set(0, metadata.getTotalChunks());
+        for (Integer chunkNumber : chunkMetadataRepository.findPendingChunkNumbersByFileId(metadata.getId())) {
+            completed.clear(chunkNumber);
+        }
+        return completed;
+    }
+
+    @Override
+    public void markCompleted(Long fileId, List<Integer> chunkNumbers, List<byte[]> digests) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < chunkNumbers.size(); from += MAX_BATCH_SIZE) {
+            int to = Math.min(from + MAX_BATCH_SIZE, chunkNumbers.size());
+            List<String> hexDigests = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                hexDigests.add(ChunkDigests.toHex(digests.get(i)));
+            }
+            chunkMetadataRepository.updateCompletedChunks(fileId, chunkNumbers.subList(from, to), hexDigests, now);
+        }
+    }
+
+    @Override
+    public byte[][] findDigests(FileMetadata metadata) {
+        byte[][] digests = new byte[metadata.getTotalChunks()][];
+        for (Object[] row : chunkMetadataRepository.findCompletedDigestsByFileId(metadata.getId())) {
+            digests[(Integer) row[0]] = ChunkDigests.fromHex((String) row[1]);
+        }
+        return digests;
+    }
+
+    @Override
+    public List<ChunkMetadata> findChunks(Long fileId) {
+        return chunkMetadataRepository.findByFileId(fileId);
+    }
+
+    @Override
+    public void delete(Long fileId) {
+        // The rows are removed with their file_metadata row by ON DELETE CASCADE
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Collects the small files of a batch into {@link FilePack}s.
+ * <p>
+ * Files are added concurrently by the walker threads as they are found. A pack is sealed and handed back
+ * once it reaches the pack size or the file limit, and the last, partial pack is taken with {@link #flush()}
+ * when the walk has finished.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SmallFilePacker {
+
+    private final String namePrefix;
+    private final long packSize;
+    private final int maxFiles;
+
+    private List<FilePack.Member> members = new ArrayList<>();
+    private long size;
+    private int packCount;
+
+    /**
+     * Creates a packer.
+     *
+     * @param namePrefix The prefix of the pack names, unique for the batch.
+     * @param packSize The size in bytes at which a pack is sealed.
+     * @param maxFiles The number of files at which a pack is sealed.
+     */
+    public SmallFilePacker(String namePrefix, long packSize, int maxFiles) {
+        this.namePrefix = namePrefix;
+        this.packSize = packSize;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Adds a file to the open pack.
+     *
+     * @param member The file to add.
+     * @return The pack sealed by this file, or null if the pack is still open.
+     */
+    public synchronized FilePack add(FilePack.Member member) {
+        members.add(member);
+        size += member.getSize();
+        if (size >= packSize || members.size() >= maxFiles) {
+            return seal();
+        }
+        return null;
+    }
+
+    /**
+     * Seals the open pack, however small.
+     *
+     * @return The sealed pack, or null if no file is waiting.
+     */
+    public synchronized FilePack flush() {
+        return members.isEmpty() ? null : seal();
+    }
+
+    private FilePack seal() {
+        FilePack pack = new FilePack(namePrefix + "-pack-" + (++packCount) + ".pack", members);
+        members = new ArrayList<>();
+        size = 0;
+        return pack;
+    }
+}
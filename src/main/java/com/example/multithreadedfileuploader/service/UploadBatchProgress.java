@@ -0,0 +1,224 @@
+/**
+ * Live progress of a running {@code UploadBatch}, aggregated incrementally from its files.
+ * <p>
+ * The counters are updated by the walker threads as files are discovered and by the upload threads
+ * as files progress and finish, all without locks, so a single batch progress bar can be read at any
+ * time, even while the directory is still being walked.
+ * </p>
+ *
+ * <h2>Counters</h2>
+ * <ul>
+ *   <li>Discovered files and bytes, which grow until the walk has finished.</li>
+ *   <li>Uploaded bytes, summed from the progress of every file.</li>
+ *   <li>Completed, failed, and cancelled files; the batch is finished once the walk has finished and
+ *   every discovered file is in one of them.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class UploadBatchProgress {
+
+    private final Long batchId;
+    private final String name;
+    private final AtomicLong discoveredFiles = new AtomicLong();
+    private final AtomicLong discoveredBytes = new AtomicLong();
+    private final LongAdder uploadedBytes = new LongAdder();
+    private final AtomicLong completedFiles = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+    private final AtomicLong cancelledFiles = new AtomicLong();
+    private final Queue<String> sessionIds = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean scanning = true;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates the progress of a batch.
+     *
+     * @param batchId The ID of the batch.
+     * @param name The name of the batch, the absolute path of the uploaded directory.
+     */
+    public UploadBatchProgress(Long batchId, String name) {
+        this.batchId = batchId;
+        this.name = name;
+    }
+
+    /**
+     * @return The ID of the batch.
+     */
+    public Long getBatchId() {
+        return batchId;
+    }
+
+    /**
+     * @return The name of the batch, the absolute path of the uploaded directory.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts a file found by the walk.
+     *
+     * @param size The size of the file in bytes.
+     */
+    void fileDiscovered(long size) {
+        discoveredBytes.addAndGet(size);
+        discoveredFiles.incrementAndGet();
+    }
+
+    /**
+     * Adds to the uploaded bytes. Negative when a file's progress is reset, e.g. on cancel.
+     *
+     * @param bytes The change of the uploaded bytes.
+     */
+    void addUploadedBytes(long bytes) {
+        uploadedBytes.add(bytes);
+    }
+
+    /**
+     * Counts files uploaded successfully, one or a whole pack.
+     *
+     * @param count The number of files.
+     */
+    void filesCompleted(long count) {
+        completedFiles.addAndGet(count);
+    }
+
+    /**
+     * Counts files whose upload failed.
+     *
+     * @param count The number of files.
+     */
+    void filesFailed(long count) {
+        failedFiles.addAndGet(count);
+    }
+
+    /**
+     * Counts files whose upload was cancelled.
+     *
+     * @param count The number of files.
+     */
+    void filesCancelled(long count) {
+        cancelledFiles.addAndGet(count);
+    }
+
+    /**
+     * Remembers the session of a file of the batch, so the batch can be cancelled.
+     *
+     * @param sessionId The ID of the upload session.
+     */
+    void addSession(String sessionId) {
+        sessionIds.add(sessionId);
+    }
+
+    /**
+     * @return The IDs of the upload sessions of the batch.
+     */
+    Iterable<String> getSessionIds() {
+        return sessionIds;
+    }
+
+    /**
+     * Marks the walk of the directory as finished, so no further files are discovered.
+     */
+    void scanFinished() {
+        scanning = false;
+    }
+
+    /**
+     * Cancels the batch: the walk stops and no further files are submitted.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Marks the batch as finished.
+     *
+     * @return true for the first call only, so a batch is finished exactly once.
+     */
+    boolean markFinished() {
+        return finished.compareAndSet(false, true);
+    }
+
+    /**
+     * @return true if the walk has finished and every discovered file has finished.
+     */
+    public boolean isComplete() {
+        return !scanning
+                && completedFiles.get() + failedFiles.get() + cancelledFiles.get() >= discoveredFiles.get();
+    }
+
+    /**
+     * @return true while the directory is still being walked.
+     */
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    /**
+     * @return true if the batch has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return The number of files discovered so far.
+     */
+    public long getDiscoveredFiles() {
+        return discoveredFiles.get();
+    }
+
+    /**
+     * @return The total size of the files discovered so far, in bytes.
+     */
+    public long getDiscoveredBytes() {
+        return discoveredBytes.get();
+    }
+
+    /**
+     * @return The number of bytes uploaded so far.
+     */
+    public long getUploadedBytes() {
+        return uploadedBytes.sum();
+    }
+
+    /**
+     * @return The number of files uploaded successfully.
+     */
+    public long getCompletedFiles() {
+        return completedFiles.get();
+    }
+
+    /**
+     * @return The number of files whose upload failed.
+     */
+    public long getFailedFiles() {
+        return failedFiles.get();
+    }
+
+    /**
+     * @return The number of files whose upload was cancelled.
+     */
+    public long getCancelledFiles() {
+        return cancelledFiles.get();
+    }
+
+    /**
+     * @return The uploaded share of the discovered bytes (0.0 to 1.0); it can drop while new files are discovered.
+     */
+    public double getProgress() {
+        long total = discoveredBytes.get();
+        if (total == 0) {
+            return isComplete() ? 1.0 : 0.0;
+        }
+        return Math.min(1.0, (double) getUploadedBytes() / total);
+    }
+}
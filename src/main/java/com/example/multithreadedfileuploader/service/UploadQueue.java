@@ -0,0 +1,325 @@
+/**
+ * Admission queue of the uploads, bounding how many run at once and how many may wait.
+ * <p>
+ * Handing every upload to the upload executor starts them in submission order and queues the rest
+ * without bound, so a huge upload submitted first delays every small one behind it. The queue instead
+ * admits at most {@code uploader.queue.max-active} uploads at a time and picks the next one by priority,
+ * and at most {@code uploader.queue.capacity} uploads may wait: beyond that, new uploads are rejected
+ * right away, so callers can back off instead of waiting forever.
+ * </p>
+ *
+ * <h2>Admission Order</h2>
+ * <ul>
+ *   <li>Higher priority first, using the priority of the upload's {@link BandwidthScheduler.Flow}, so changing
+ *   the priority of a waiting upload moves it in the queue.</li>
+ *   <li>Among equal priorities, {@code uploader.queue.policy=fifo} admits in submission order, while
+ *   {@code shortest-first} admits the upload with the fewest remaining bytes first.</li>
+ * </ul>
+ *
+ * <h2>Lifecycle of an Entry</h2>
+ * <ul>
+ *   <li>{@link #reserve(UploadSession)} claims a place in the queue before the upload is prepared, or
+ *   {@link #tryReserve(UploadSession, long, TimeUnit)} waits for one, so a producer of many uploads is slowed
+ *   down to the pace of the queue instead of being rejected.</li>
+ *   <li>{@link #submit(UploadSession, long, Runnable)} makes the prepared upload eligible for admission.</li>
+ *   <li>{@link #release(UploadSession)} removes it once it has finished, admitting the next upload. A paused
+ *   upload stays admitted.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@Component
+public class UploadQueue {
+
+    private static final Logger logger = Logger.getLogger(UploadQueue.class.getName());
+
+    /**
+     * Value of {@code uploader.queue.policy} admitting uploads of equal priority in submission order.
+     */
+    public static final String FIFO = "fifo";
+
+    /**
+     * Value of {@code uploader.queue.policy} admitting the upload with the fewest remaining bytes first.
+     */
+    public static final String SHORTEST_FIRST = "shortest-first";
+
+    private final int maxActive;
+    private final int capacity;
+    private final String policy;
+    private final Comparator<Entry> admissionOrder;
+    private final Map<UploadSession, Entry> entries = new LinkedHashMap<>();
+
+    private int activeCount;
+    private long sequence;
+
+    /**
+     * Creates the queue with its limits.
+     *
+     * @param maxActive The maximum number of uploads running at the same time.
+     * @param capacity The maximum number of uploads waiting for admission.
+     * @param policy The order of uploads with equal priority, {@code fifo} or {@code shortest-first}.
+     */
+    @Autowired
+    public UploadQueue(@Value("${uploader.queue.max-active:5}") int maxActive,
+                       @Value("${uploader.queue.capacity:100}") int capacity,
+                       @Value("${uploader.queue.policy:fifo}") String policy) {
+        if (maxActive < 1 || capacity < 0) {
+            throw new IllegalArgumentException("Upload queue limits must be positive");
+        }
+        Comparator<Entry> byPriority = Comparator.comparingInt(entry -> -entry.session.getFlow().getPriority());
+        switch (policy) {
+            case FIFO:
+                admissionOrder = byPriority.thenComparingLong(entry -> entry.sequence);
+                break;
+            case SHORTEST_FIRST:
+                admissionOrder = byPriority.thenComparingLong((Entry entry) -> entry.remainingBytes)
+                        .thenComparingLong(entry -> entry.sequence);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown upload queue policy: " + policy);
+        }
+        this.maxActive = maxActive;
+        this.capacity = capacity;
+        this.policy = policy;
+        logger.info("Upload queue admits " + maxActive + " uploads at a time, " + capacity + " may wait ("
+                + policy + ").");
+    }
+
+    /**
+     * Claims a place in the queue for an upload that is about to be prepared.
+     *
+     * @param session The session of the upload.
+     * @throws RejectedExecutionException If the queue is full.
+     */
+    public synchronized void reserve(UploadSession session) {
+        if (entries.size() - activeCount >= capacity) {
+            throw new RejectedExecutionException("The upload queue is full, " + capacity + " uploads are waiting.");
+        }
+        entries.put(session, new Entry(session, sequence++));
+    }
+
+    /**
+     * Claims a place in the queue for an upload that is about to be prepared, waiting while the queue is full.
+     *
+     * @param session The session of the upload.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of the timeout.
+     * @return true if a place was claimed, false if the queue stayed full.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    public synchronized boolean tryReserve(UploadSession session, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (entries.size() - activeCount >= capacity) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        entries.put(session, new Entry(session, sequence++));
+        return true;
+    }
+
+    /**
+     * Makes a prepared upload eligible for admission.
+     * <p>
+     * If the upload is admitted right away, the caller starts it itself and {@code start} is not called.
+     * Otherwise {@code start} is called once it is admitted, on the thread that released its slot, and
+     * should only hand the upload over to an executor.
+     * </p>
+     *
+     * @param session The session of the upload, reserved before.
+     * @param remainingBytes The number of bytes the upload still has to transfer.
+     * @param start Starts the upload once it is admitted later.
+     * @return true if the upload was admitted right away, false if it is waiting.
+     * @throws CancellationException If the upload was removed from the queue while it was prepared.
+     */
+    public boolean submit(UploadSession session, long remainingBytes, Runnable start) {
+        boolean admitted;
+        List<Runnable> started;
+        synchronized (this) {
+            Entry entry = entries.get(session);
+            if (entry == null) {
+                throw new CancellationException("The upload was removed from the queue.");
+            }
+            entry.remainingBytes = remainingBytes;
+            entry.start = start;
+            entry.state = State.WAITING;
+            admitted = next() == entry;
+            if (admitted) {
+                entry.state = State.ACTIVE;
+                activeCount++;
+                notifyAll();
+            }
+            started = admitWaiting();
+        }
+        started.forEach(Runnable::run);
+        return admitted;
+    }
+
+    /**
+     * Removes an upload that has not been admitted yet, e.g. because it was canceled.
+     *
+     * @param session The session of the upload.
+     * @return true if the upload was waiting for admission, false if it was still being prepared, already
+     *         admitted, or unknown.
+     */
+    public synchronized boolean remove(UploadSession session) {
+        Entry entry = entries.get(session);
+        if (entry == null || entry.state == State.ACTIVE) {
+            return false;
+        }
+        entries.remove(session);
+        notifyAll();
+        return entry.state == State.WAITING;
+    }
+
+    /**
+     * Removes a finished upload from the queue and admits the next one if it held a slot.
+     *
+     * @param session The session of the upload.
+     */
+    public void release(UploadSession session) {
+        List<Runnable> started;
+        synchronized (this) {
+            Entry entry = entries.remove(session);
+            if (entry == null) {
+                return;
+            }
+            if (entry.state == State.ACTIVE) {
+                activeCount--;
+            } else {
+                notifyAll();
+            }
+            started = admitWaiting();
+        }
+        started.forEach(Runnable::run);
+    }
+
+    /**
+     * @return The uploads waiting for admission, in the order they would be admitted now.
+     */
+    public synchronized List<Entry> findWaiting() {
+        List<Entry> waiting = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.state == State.WAITING) {
+                waiting.add(entry);
+            }
+        }
+        waiting.sort(admissionOrder);
+        return waiting;
+    }
+
+    /**
+     * @return The number of uploads admitted and not finished yet.
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return The maximum number of uploads running at the same time.
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * @return The maximum number of uploads waiting for admission.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The order of uploads with equal priority, {@code fifo} or {@code shortest-first}.
+     */
+    public String getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Admits waiting uploads while slots are free. Must hold the lock.
+     *
+     * @return The start actions of the admitted uploads, to run outside the lock.
+     */
+    private List<Runnable> admitWaiting() {
+        List<Runnable> started = new ArrayList<>();
+        Entry entry;
+        while (activeCount < maxActive && (entry = next()) != null) {
+            entry.state = State.ACTIVE;
+            activeCount++;
+            started.add(entry.start);
+        }
+        if (!started.isEmpty()) {
+            // Places in the queue were freed
+            notifyAll();
+        }
+        return started;
+    }
+
+    /**
+     * Finds the waiting upload to admit next, or null if no slot is free or none is waiting. Must hold the lock.
+     */
+    private Entry next() {
+        if (activeCount >= maxActive) {
+            return null;
+        }
+        Entry next = null;
+        for (Entry entry : entries.values()) {
+            if (entry.state == State.WAITING && (next == null || admissionOrder.compare(entry, next) < 0)) {
+                next = entry;
+            }
+        }
+        return next;
+    }
+
+    private enum State {
+        RESERVED, WAITING, ACTIVE
+    }
+
+    /**
+     * An upload in the queue.
+     */
+    public static class Entry {
+        private final UploadSession session;
+        private final long sequence;
+        private State state = State.RESERVED;
+        private long remainingBytes;
+        private Runnable start;
+
+        private Entry(UploadSession session, long sequence) {
+            this.session = session;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return The session of the upload.
+         */
+        public UploadSession getSession() {
+            return session;
+        }
+
+        /**
+         * @return The number of bytes the upload still has to transfer.
+         */
+        public long getRemainingBytes() {
+            return remainingBytes;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * State of a single upload, addressed by its session ID.
+ * <p>
+ * Every upload gets its own session holding its pause, cancel, and progress state, so concurrent
+ * uploads no longer share global flags: pausing or canceling one session leaves all others untouched.
+ * </p>
+ * <p>
+ * Once the upload has started, pause, resume, and cancel are forwarded to its
+ * {@link ChunkTransferEngine.ChunkTransfer}, so they take effect immediately instead of being polled.
+ * </p>
+ * <p>
+ * The bandwidth share of the upload is its {@link BandwidthScheduler.Flow}, whose priority and rate limit
+ * can be changed while the upload runs.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public class UploadSession {
+
+    private final String id;
+    private final File file;
+    private final String fileName;
+    private final FilePack pack;
+    private final BandwidthScheduler.Flow flow;
+    private final Consumer<Double> progressCallback;
+    private final Consumer<String> statusCallback;
+
+    private volatile Long fileId;
+    private volatile String status = "Pending";
+    private volatile double progress = 0.0;
+    private volatile boolean paused = false;
+    private volatile boolean cancelled = false;
+    private volatile boolean discardOnCancel = false;
+    private volatile boolean finished = false;
+    private volatile long finishedAt;
+    private ChunkTransferEngine.ChunkTransfer transfer;
+
+    /**
+     * Creates a session for the given file.
+     *
+     * @param file The file to upload.
+     * @param flow The flow of the upload in the {@link BandwidthScheduler}.
+     * @param progressCallback A callback to report the upload progress (0.0 to 1.0).
+     * @param statusCallback A callback to report the status of the upload.
+     */
+    public UploadSession(File file, BandwidthScheduler.Flow flow, Consumer<Double> progressCallback,
+                         Consumer<String> statusCallback) {
+        this.id = UUID.randomUUID().toString();
+        this.file = file;
+        this.fileName = file.getName();
+        this.pack = null;
+        this.flow = flow;
+        this.progressCallback = progressCallback;
+        this.statusCallback = statusCallback;
+    }
+
+    /**
+     * Creates a session for a file streamed by a client, which has no local file.
+     *
+     * @param fileName The name of the streamed file.
+     * @param flow The flow of the upload in the {@link BandwidthScheduler}.
+     * @param progressCallback A callback to report the upload progress (0.0 to 1.0).
+     * @param statusCallback A callback to report the status of the upload.
+     */
+    public UploadSession(String fileName, BandwidthScheduler.Flow flow, Consumer<Double> progressCallback,
+                         Consumer<String> statusCallback) {
+        this(UUID.randomUUID().toString(), fileName, flow, progressCallback, statusCallback);
+    }
+
+    /**
+     * Creates a session with an ID chosen by the client for a file it streams, so the client can address the
+     * upload while it is still sending the file.
+     *
+     * @param id The ID of the session.
+     * @param fileName The name of the streamed file.
+     * @param flow The flow of the upload in the {@link BandwidthScheduler}.
+     * @param progressCallback A callback to report the upload progress (0.0 to 1.0).
+     * @param statusCallback A callback to report the status of the upload.
+     */
+    public UploadSession(String id, String fileName, BandwidthScheduler.Flow flow,
+                         Consumer<Double> progressCallback, Consumer<String> statusCallback) {
+        this.id = id;
+        this.file = null;
+        this.fileName = fileName;
+        this.pack = null;
+        this.flow = flow;
+        this.progressCallback = progressCallback;
+        this.statusCallback = statusCallback;
+    }
+
+    /**
+     * Creates a session for a pack of small files, uploaded as one file.
+     *
+     * @param pack The pack to upload.
+     * @param flow The flow of the upload in the {@link BandwidthScheduler}.
+     * @param progressCallback A callback to report the upload progress (0.0 to 1.0).
+     * @param statusCallback A callback to report the status of the upload.
+     */
+    public UploadSession(FilePack pack, BandwidthScheduler.Flow flow, Consumer<Double> progressCallback,
+                         Consumer<String> statusCallback) {
+        this.id = UUID.randomUUID().toString();
+        this.file = null;
+        this.fileName = pack.getName();
+        this.pack = pack;
+        this.flow = flow;
+        this.progressCallback = progressCallback;
+        this.statusCallback = statusCallback;
+    }
+
+    /**
+     * @return The unique ID of the session.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The file being uploaded, or null if the file is streamed by a client or the session uploads a pack.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The pack being uploaded, or null if the session uploads a single file.
+     */
+    public FilePack getPack() {
+        return pack;
+    }
+
+    /**
+     * @return The name of the file being uploaded.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return The flow of the upload in the {@link BandwidthScheduler}, holding its priority and rate limit.
+     */
+    public BandwidthScheduler.Flow getFlow() {
+        return flow;
+    }
+
+    /**
+     * @return The ID of the file metadata record, or null if the upload has not started yet.
+     */
+    public Long getFileId() {
+        return fileId;
+    }
+
+    /**
+     * Sets the ID of the file metadata record of the upload.
+     * @param fileId The file metadata ID.
+     */
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    /**
+     * @return The last reported status of the upload.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The last reported progress of the upload (0.0 to 1.0).
+     */
+    public double getProgress() {
+        return progress;
+    }
+
+    /**
+     * Records and reports the progress of the upload.
+     * @param progress The progress (0.0 to 1.0).
+     */
+    public void reportProgress(double progress) {
+        this.progress = progress;
+        if (progressCallback != null) {
+            progressCallback.accept(progress);
+        }
+    }
+
+    /**
+     * Records and reports the status of the upload.
+     * @param status The new status.
+     */
+    public void reportStatus(String status) {
+        this.status = status;
+        if (statusCallback != null) {
+            statusCallback.accept(status);
+        }
+    }
+
+    /**
+     * @return true if the upload is paused, false otherwise.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Pauses or resumes the upload.
+     * @param paused true to pause the upload, false to resume it.
+     */
+    public synchronized void setPaused(boolean paused) {
+        // Forwarded under the session lock so concurrent pause and resume calls reach the transfer in order
+        this.paused = paused;
+        notifyAll();
+        if (transfer != null) {
+            if (paused) {
+                transfer.pause();
+            } else {
+                transfer.resume();
+            }
+        }
+    }
+
+    /**
+     * Waits while the upload is paused. Used by uploads that are driven by a reading thread rather than
+     * by a chunk transfer.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized void awaitResumed() throws InterruptedException {
+        while (paused && !cancelled) {
+            wait();
+        }
+    }
+
+    /**
+     * @return true if the upload is canceled, false otherwise.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the upload.
+     * @param discardProgress true to delete the metadata and stored bytes once the upload has stopped.
+     */
+    public synchronized void cancel(boolean discardProgress) {
+        this.discardOnCancel = discardProgress;
+        this.cancelled = true;
+        notifyAll();
+        if (transfer != null) {
+            transfer.cancel();
+        }
+    }
+
+    /**
+     * Attaches the chunk transfer of the upload and applies a pause or cancel requested before it existed.
+     * @param transfer The chunk transfer, not started yet.
+     */
+    public synchronized void attach(ChunkTransferEngine.ChunkTransfer transfer) {
+        this.transfer = transfer;
+        if (cancelled) {
+            transfer.cancel();
+        } else if (paused) {
+            transfer.pause();
+        }
+    }
+
+    /**
+     * @return true if the metadata and stored bytes should be deleted after cancellation.
+     */
+    public boolean isDiscardOnCancel() {
+        return discardOnCancel;
+    }
+
+    /**
+     * @return true if the upload has completed, failed, or been canceled.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Marks the upload as finished.
+     */
+    public void markFinished() {
+        this.finishedAt = System.currentTimeMillis();
+        this.finished = true;
+    }
+
+    /**
+     * @return The time in milliseconds at which the upload finished, or 0 if it is still running.
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+}
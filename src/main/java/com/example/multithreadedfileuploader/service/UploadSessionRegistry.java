@@ -0,0 +1,83 @@
+/**
+ * Registry of the upload sessions known to the application, keyed by session ID.
+ * <p>
+ * Sessions are kept in a concurrent map so the REST endpoints and the UI can look up and control any
+ * upload by its ID. Finished sessions stay available for status queries for
+ * {@code uploader.sessions.retention-ms} and are then purged.
+ * </p>
+ */
+package com.example.multithreadedfileuploader.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class UploadSessionRegistry {
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final long retentionMs;
+
+    /**
+     * Creates the registry.
+     *
+     * @param retentionMs How long finished sessions stay registered, in milliseconds.
+     */
+    public UploadSessionRegistry(@Value("${uploader.sessions.retention-ms:600000}") long retentionMs) {
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Registers a new session.
+     *
+     * @param session The session to register.
+     * @return The registered session.
+     * @throws IllegalStateException If a session with the same ID is registered, e.g. a client-chosen ID in use.
+     */
+    public UploadSession register(UploadSession session) {
+        purgeFinished();
+        if (sessions.putIfAbsent(session.getId(), session) != null) {
+            throw new IllegalStateException("Upload session already exists: " + session.getId());
+        }
+        return session;
+    }
+
+    /**
+     * Finds a session by its ID.
+     *
+     * @param id The session ID.
+     * @return An {@link Optional} containing the session, or empty if no session matches.
+     */
+    public Optional<UploadSession> find(String id) {
+        return Optional.ofNullable(sessions.get(id));
+    }
+
+    /**
+     * Removes a session from the registry.
+     *
+     * @param id The session ID.
+     */
+    public void remove(String id) {
+        sessions.remove(id);
+    }
+
+    /**
+     * @return A snapshot of all registered sessions.
+     */
+    public Collection<UploadSession> findAll() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * Removes the sessions that finished longer ago than the retention period.
+     */
+    private void purgeFinished() {
+        long threshold = System.currentTimeMillis() - retentionMs;
+        sessions.values().removeIf(session -> session.isFinished() && session.getFinishedAt() < threshold);
+    }
+}
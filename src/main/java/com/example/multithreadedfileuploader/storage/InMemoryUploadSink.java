@@ -0,0 +1,93 @@
+package com.example.multithreadedfileuploader.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Upload sink that keeps uploaded files in memory.
+ * <p>
+ * It is intended for benchmarking the chunk pipeline without disk noise, so files are limited to
+ * {@link Integer#MAX_VALUE} bytes and are lost when the application stops.
+ * </p>
+ */
+public class InMemoryUploadSink implements UploadSink {
+
+    private final Map<String, ByteBuffer> files = new ConcurrentHashMap<>();
+
+    @Override
+    public UploadTarget open(String storageKey, long fileSize) throws IOException {
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("File too large for the in-memory sink: " + fileSize + " bytes");
+        }
+        ByteBuffer buffer = files.computeIfAbsent(storageKey, key -> ByteBuffer.allocateDirect((int) fileSize));
+        if (buffer.capacity() != fileSize) {
+            throw new IOException("Stored file " + storageKey + " has a different size");
+        }
+        return new MemoryTarget(buffer);
+    }
+
+    @Override
+    public void delete(String storageKey) {
+        files.remove(storageKey);
+    }
+
+    @Override
+    public boolean copy(String sourceKey, long sourceOffset, int length, UploadTarget target, long targetOffset)
+            throws IOException {
+        ByteBuffer source = files.get(sourceKey);
+        if (source == null || sourceOffset + length > source.capacity()) {
+            throw new IOException("Stored file " + sourceKey + " does not hold the requested region");
+        }
+        ByteBuffer region = source.asReadOnlyBuffer();
+        region.position((int) sourceOffset).limit((int) sourceOffset + length);
+        target.write(targetOffset, region);
+        return true;
+    }
+
+    /**
+     * Returns a read-only view of a stored file.
+     *
+     * @param storageKey The key of the file.
+     * @return The stored bytes, or null if no file is stored under the key.
+     */
+    public ByteBuffer get(String storageKey) {
+        ByteBuffer buffer = files.get(storageKey);
+        return buffer != null ? buffer.asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Target writing the chunks of one file into its memory buffer.
+     */
+    private static class MemoryTarget implements UploadTarget {
+        private final ByteBuffer buffer;
+
+        MemoryTarget(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(long offset, ByteBuffer data) {
+            // Each write works on its own view so concurrent chunks do not share a position
+            ByteBuffer view = buffer.duplicate();
+            view.position((int) offset);
+            view.put(data);
+        }
+
+        @Override
+        public boolean isLocal() {
+            return true;
+        }
+
+        @Override
+        public void complete() {
+            // Nothing to finalize, the bytes are already in place
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+}
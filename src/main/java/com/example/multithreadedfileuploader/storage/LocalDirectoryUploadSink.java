@@ -0,0 +1,139 @@
+package com.example.multithreadedfileuploader.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Upload sink that stores files in a local directory.
+ * <p>
+ * Chunks are written straight into their final position of a {@code .part} file with positional
+ * {@link FileChannel} writes, so they can arrive in any order and no concatenation pass is needed.
+ * When the upload completes, the {@code .part} file is renamed to the final file name.
+ * </p>
+ */
+public class LocalDirectoryUploadSink implements UploadSink {
+
+    private static final Logger logger = Logger.getLogger(LocalDirectoryUploadSink.class.getName());
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final Path directory;
+
+    /**
+     * Creates a sink storing files in the given directory.
+     *
+     * @param directory The directory in which uploaded files are assembled.
+     * @throws IOException If the directory cannot be created.
+     */
+    public LocalDirectoryUploadSink(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        logger.info("Storing uploads in " + this.directory.toAbsolutePath());
+    }
+
+    /**
+     * @return The directory in which uploaded files are assembled.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public UploadTarget open(String storageKey, long fileSize) throws IOException {
+        Path partFile = resolve(storageKey + PART_SUFFIX);
+        FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        return new LocalTarget(channel, partFile, resolve(storageKey));
+    }
+
+    @Override
+    public void delete(String storageKey) throws IOException {
+        Files.deleteIfExists(resolve(storageKey + PART_SUFFIX));
+        Files.deleteIfExists(resolve(storageKey));
+    }
+
+    @Override
+    public boolean copy(String sourceKey, long sourceOffset, int length, UploadTarget target, long targetOffset)
+            throws IOException {
+        try (FileChannel source = FileChannel.open(resolve(sourceKey), StandardOpenOption.READ)) {
+            if (sourceOffset + length > source.size()) {
+                throw new IOException("Stored file " + sourceKey + " is shorter than the requested region");
+            }
+            target.write(targetOffset, source.map(FileChannel.MapMode.READ_ONLY, sourceOffset, length));
+        }
+        return true;
+    }
+
+    /**
+     * Resolves a storage key inside the sink directory, rejecting keys that would escape it.
+     */
+    private Path resolve(String name) throws IOException {
+        Path path = directory.resolve(name).normalize();
+        if (!path.getParent().equals(directory.normalize())) {
+            throw new IOException("Invalid storage key: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * Target writing the chunks of one file into its {@code .part} file.
+     */
+    private static class LocalTarget implements UploadTarget {
+        private final FileChannel channel;
+        private final Path partFile;
+        private final Path finalFile;
+
+        LocalTarget(FileChannel channel, Path partFile, Path finalFile) {
+            this.channel = channel;
+            this.partFile = partFile;
+            this.finalFile = finalFile;
+        }
+
+        @Override
+        public void write(long offset, ByteBuffer data) throws IOException {
+            long position = offset;
+            while (data.hasRemaining()) {
+                position += channel.write(data, position);
+            }
+        }
+
+        @Override
+        public boolean isLocal() {
+            return true;
+        }
+
+        @Override
+        public void sync() throws IOException {
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Closed meanwhile, which forces the channel itself
+            }
+        }
+
+        @Override
+        public void complete() throws IOException {
+            channel.force(false);
+            channel.close();
+            Files.move(partFile, finalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) {
+                return;
+            }
+            // Chunks whose completions are still to be synced must not be lost with the channel
+            try {
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.multithreadedfileuploader.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel adapter writing sequentially into an {@link UploadTarget} from a starting offset.
+ * <p>
+ * Every chunk gets its own adapter, so concurrent chunks never share a channel position.
+ * Closing the adapter does not close the target.
+ * </p>
+ */
+class TargetChannel implements WritableByteChannel {
+
+    private final UploadTarget target;
+    private long position;
+    private boolean open = true;
+
+    TargetChannel(UploadTarget target, long position) {
+        this.target = target;
+        this.position = position;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        int written = src.remaining();
+        target.write(position, src);
+        position += written;
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+}
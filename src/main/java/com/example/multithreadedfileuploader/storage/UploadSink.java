@@ -0,0 +1,63 @@
+package com.example.multithreadedfileuploader.storage;
+
+import java.io.IOException;
+
+/**
+ * The UploadSink interface is the storage backend that receives the bytes of uploaded files.
+ *
+ * <h2>Purpose</h2>
+ * <p>
+ * The upload service streams the chunks of a file into an {@link UploadTarget} opened from the sink.
+ * Chunks carry their offset within the file, so an implementation can assemble the final file while
+ * chunks arrive in any order.
+ * </p>
+ *
+ * <h2>Implementations</h2>
+ * <ul>
+ *     <li><b>{@link LocalDirectoryUploadSink}:</b> Assembles files in a local directory with positional writes.</li>
+ *     <li><b>{@link InMemoryUploadSink}:</b> Keeps files in memory, used to benchmark the engine without disk I/O.</li>
+ * </ul>
+ *
+ * <p>The active implementation is selected by the {@code uploader.sink.type} property in {@code StorageConfig}.</p>
+ */
+public interface UploadSink {
+
+    /**
+     * Opens the target for a file upload. Opening a target that already holds bytes from an earlier
+     * attempt keeps those bytes, so an interrupted upload can be resumed.
+     *
+     * @param storageKey The key under which the file is stored.
+     * @param fileSize   The size of the file in bytes.
+     * @return The {@link UploadTarget} receiving the chunks of the file.
+     * @throws IOException If the target cannot be opened.
+     */
+    UploadTarget open(String storageKey, long fileSize) throws IOException;
+
+    /**
+     * Deletes everything stored under the given key, including partially uploaded data.
+     *
+     * @param storageKey The key of the file to delete.
+     * @throws IOException If the stored data cannot be deleted.
+     */
+    void delete(String storageKey) throws IOException;
+
+    /**
+     * Copies a region of a completed file into an upload target without reading it from the upload source.
+     * <p>
+     * Used to deduplicate chunks the sink already holds. Sinks that cannot copy within their own storage
+     * return false, and the chunk is transferred from the source as usual.
+     * </p>
+     *
+     * @param sourceKey    The key of the completed file holding the region.
+     * @param sourceOffset The offset of the region in that file.
+     * @param length       The length of the region in bytes.
+     * @param target       The target receiving the region.
+     * @param targetOffset The offset of the region in the target.
+     * @return true if the region was copied, false if the sink does not support copying.
+     * @throws IOException If the region cannot be copied.
+     */
+    default boolean copy(String sourceKey, long sourceOffset, int length, UploadTarget target, long targetOffset)
+            throws IOException {
+        return false;
+    }
+}
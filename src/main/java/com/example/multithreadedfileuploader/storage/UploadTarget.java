@@ -0,0 +1,69 @@
+package com.example.multithreadedfileuploader.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The UploadTarget interface represents a single file being written into an {@link UploadSink}.
+ *
+ * <h2>Usage</h2>
+ * <ul>
+ *     <li>{@link #write(long, ByteBuffer)} is called concurrently for different chunks of the file.</li>
+ *     <li>{@link #sync()} is called before the completion of a written chunk is made durable.</li>
+ *     <li>{@link #complete()} is called once every chunk has been written.</li>
+ *     <li>{@link #close()} releases the target; a target closed without {@code complete()} keeps its
+ *     partial data so the upload can be resumed.</li>
+ * </ul>
+ */
+public interface UploadTarget extends Closeable {
+
+    /**
+     * Writes the remaining bytes of the buffer at the given offset of the file.
+     * <p>Implementations must be safe to call from several threads for non-overlapping regions.</p>
+     *
+     * @param offset The offset in the file where the data starts.
+     * @param data   The chunk data; it is fully consumed by the call.
+     * @throws IOException If the data cannot be written.
+     */
+    void write(long offset, ByteBuffer data) throws IOException;
+
+    /**
+     * Indicates whether the target lives on this machine, in which case chunk readers hand it
+     * memory-mapped regions of the source file instead of streaming through a channel.
+     *
+     * @return true if the target is local, false otherwise.
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * Returns a channel writing sequentially from the given offset of the file. It is the destination
+     * of {@link java.nio.channels.FileChannel#transferTo} for targets that are not local.
+     *
+     * @param offset The offset in the file where the first written byte goes.
+     * @return A {@link WritableByteChannel} positioned at the offset.
+     */
+    default WritableByteChannel channel(long offset) {
+        return new TargetChannel(this, offset);
+    }
+
+    /**
+     * Makes the chunks written so far durable. Called before their completions are made durable, so a crash
+     * never leaves a chunk recorded as completed whose bytes were lost. A target that is closed meanwhile
+     * has nothing left to sync.
+     *
+     * @throws IOException If the chunks cannot be made durable.
+     */
+    default void sync() throws IOException {
+    }
+
+    /**
+     * Finalizes the file after all chunks have been written.
+     *
+     * @throws IOException If the file cannot be finalized.
+     */
+    void complete() throws IOException;
+}
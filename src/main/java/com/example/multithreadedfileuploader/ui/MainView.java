@@ -5,30 +5,52 @@
  * It allows users to select files for upload, start the upload process, pause, resume, or cancel uploads.
  * Additionally, it supports managing multiple upload sessions concurrently.
  * </p>
+ * <p>
+ * The uploads are kept as {@link UploadItem}s in an observable list rendered by a virtualized
+ * {@code ListView}: only the visible rows have controls, provided by reusable {@link UploadCell}s, so
+ * thousands of selected files cost no more scene graph and layout than a screenful.
+ * </p>
  *
  * <h2>Key Features</h2>
  * <ul>
- *   <li>Dynamic creation of upload sections for multiple files.</li>
- *   <li>Control over individual uploads (start, pause, resume, cancel).</li>
- *   <li>Real-time progress tracking for each file.</li>
+ *   <li>Selection of many files at once, each added as a row of the upload list.</li>
+ *   <li>Upload of a whole folder as one batch, shown as a single batch progress bar instead of a row
+ *   per file, so folders of any size can be uploaded.</li>
+ *   <li>Control over individual uploads (start, pause, resume, cancel) from their row.</li>
+ *   <li>Bulk start, pause, resume, cancel, and priority changes for the selected rows.</li>
+ *   <li>Real-time progress tracking for each file, coalesced to one update per frame by the
+ *   {@link ProgressAggregator}.</li>
+ *   <li>Priority of each upload (Low, Normal, High), adjustable while the upload runs.</li>
  *   <li>Integration with the backend service to handle file uploads.</li>
  * </ul>
  */
 package com.example.multithreadedfileuploader.ui;
 
+import com.example.multithreadedfileuploader.service.BatchUploadService;
 import com.example.multithreadedfileuploader.service.FileUploadService;
+import com.example.multithreadedfileuploader.service.UploadBatchProgress;
+import com.example.multithreadedfileuploader.service.UploadSession;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.layout.HBox;
-import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 @Component
@@ -36,385 +58,349 @@ public class MainView {
 
     private static final Logger logger = Logger.getLogger(MainView.class.getName());
 
+    /**
+     * Priorities offered for an upload, mapped to their weight in the bandwidth share.
+     */
+    private static final Map<String, Integer> PRIORITIES = new LinkedHashMap<>();
+
+    static {
+        PRIORITIES.put("Low", 1);
+        PRIORITIES.put("Normal", 4);
+        PRIORITIES.put("High", 16);
+    }
+
     @FXML
     private Button selectFileButton;
 
     @FXML
-    private VBox uploadContainer;
+    private Button selectFolderButton;
+
+    @FXML
+    private ListView<UploadItem> uploadList;
 
     @FXML
-    private VBox defaultUploadSection;
+    private Label uploadCountLabel;
 
     @FXML
-    private Label filePathLabel;
+    private Button startSelectedButton;
 
     @FXML
-    private ProgressBar uploadProgressBar;
+    private Button pauseSelectedButton;
 
     @FXML
-    private Label progressLabel;
+    private Button resumeSelectedButton;
 
     @FXML
-    private Button startUploadButton;
+    private Button cancelSelectedButton;
 
     @FXML
-    private Button pauseUploadButton;
+    private ComboBox<String> priorityComboBox;
 
     @FXML
-    private Button resumeUploadButton;
+    private ProgressBar batchProgressBar;
 
     @FXML
-    private Button cancelUploadButton;
+    private Label batchStatusLabel;
+
+    @FXML
+    private Button cancelBatchButton;
 
     @Autowired
     private FileUploadService fileUploadService;
 
-    private final Map<File, UploadState> uploadStates = new HashMap<>();
-    private boolean isDefaultSectionUsed = false;
+    @Autowired
+    private BatchUploadService batchUploadService;
+
+    private final ObservableList<UploadItem> uploads = FXCollections.observableArrayList();
+    private final ProgressAggregator progressAggregator = new ProgressAggregator();
+
+    /**
+     * The folder upload shown by the batch progress bar, or null. Only read on the JavaFX thread.
+     */
+    private UploadBatchProgress currentBatch;
+
+    /**
+     * Refreshes the batch progress bar once per frame from the counters of the current batch,
+     * which are updated by the upload threads without touching the UI.
+     */
+    private final AnimationTimer batchTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            refreshBatch();
+        }
+    };
 
     /**
      * Initializes the user interface and sets up event listeners for the controls.
      * <p>
-     * Handles file selection and dynamically creates new upload sections for multiple files.
+     * Handles file selection, renders the upload list through {@link UploadCell}s, and wires the bulk
+     * actions to the selected rows.
      * </p>
      */
     @FXML
     public void initialize() {
+        priorityComboBox.getItems().setAll(PRIORITIES.keySet());
+        priorityComboBox.setValue("Normal");
+        progressAggregator.start();
+
+        UploadCell.Actions actions = new UploadCell.Actions() {
+            @Override
+            public void start(UploadItem item) {
+                startUpload(item);
+            }
+
+            @Override
+            public void pause(UploadItem item) {
+                pauseUpload(item);
+            }
+
+            @Override
+            public void resume(UploadItem item) {
+                resumeUpload(item);
+            }
+
+            @Override
+            public void cancel(UploadItem item) {
+                cancelUpload(item);
+                uploads.remove(item);
+            }
+
+            @Override
+            public void changePriority(UploadItem item, String priority) {
+                MainView.this.changePriority(item, priority);
+            }
+        };
+        uploadList.setItems(uploads);
+        uploadList.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        uploadList.setCellFactory(list -> new UploadCell(actions, PRIORITIES.keySet()));
+        uploads.addListener((ListChangeListener<UploadItem>) change -> updateUploadCount());
+        updateUploadCount();
+
         selectFileButton.setOnAction(event -> {
             FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("Select File for Upload");
-            File selectedFile = fileChooser.showOpenDialog(null);
-
-            if (selectedFile != null) {
-                if (!isDefaultSectionUsed) {
-                    useDefaultSection(selectedFile);
-                } else {
-                    addUploadSection(selectedFile);
-                }
+            fileChooser.setTitle("Select Files for Upload");
+            List<File> selectedFiles = fileChooser.showOpenMultipleDialog(null);
+
+            if (selectedFiles != null && !selectedFiles.isEmpty()) {
+                addUploads(selectedFiles);
             } else {
                 logger.warning("No file selected.");
             }
         });
+
+        selectFolderButton.setOnAction(event -> {
+            DirectoryChooser directoryChooser = new DirectoryChooser();
+            directoryChooser.setTitle("Select Folder for Upload");
+            File directory = directoryChooser.showDialog(null);
+
+            if (directory != null) {
+                uploadFolder(directory);
+            } else {
+                logger.warning("No folder selected.");
+            }
+        });
+        cancelBatchButton.setOnAction(event -> {
+            if (currentBatch != null) {
+                batchUploadService.cancelBatch(currentBatch.getBatchId());
+            }
+        });
+
+        startSelectedButton.setOnAction(event -> {
+            for (UploadItem item : selectedItems()) {
+                if (!item.isUploading() && !item.isFinished() && !startUpload(item)) {
+                    // The queue is full, the remaining uploads would be rejected as well
+                    break;
+                }
+            }
+        });
+        pauseSelectedButton.setOnAction(event -> forEachSelected(this::pauseUpload));
+        resumeSelectedButton.setOnAction(event -> forEachSelected(this::resumeUpload));
+        cancelSelectedButton.setOnAction(event -> {
+            List<UploadItem> selected = selectedItems();
+            selected.forEach(this::cancelUpload);
+            // A set, so removing thousands of rows stays linear
+            Set<UploadItem> cancelled = new HashSet<>(selected);
+            uploads.removeIf(cancelled::contains);
+        });
+        priorityComboBox.setOnAction(event -> forEachSelected(item -> changePriority(item, priorityComboBox.getValue())));
     }
 
     /**
-     * Configures the default upload section for the first selected file.
+     * Adds files to the upload list, with the priority selected for new uploads.
      *
-     * @param file The file selected for upload.
+     * @param files The files selected for upload.
      */
-    private void useDefaultSection(File file) {
-        if (isDefaultSectionUsed) {
-            resetDefaultSection();
+    private void addUploads(List<File> files) {
+        List<UploadItem> items = new ArrayList<>(files.size());
+        for (File file : files) {
+            UploadItem item = new UploadItem(file);
+            item.setPriority(priorityComboBox.getValue());
+            items.add(item);
         }
+        // One change event for the whole selection
+        uploads.addAll(items);
+    }
 
-        filePathLabel.setText("Selected: " + file.getAbsolutePath());
-
-        UploadState state = new UploadState();
-        uploadStates.put(file, state);
-
-        startUploadButton.setOnAction(event -> startUpload(file, uploadProgressBar, progressLabel, state, startUploadButton, pauseUploadButton, resumeUploadButton, cancelUploadButton));
-        pauseUploadButton.setOnAction(event -> pauseUpload(file, state, pauseUploadButton, resumeUploadButton));
-        resumeUploadButton.setOnAction(event -> resumeUpload(file, state, pauseUploadButton, resumeUploadButton));
-        cancelUploadButton.setOnAction(event -> cancelUpload(file, state, defaultUploadSection, true));
-
-        toggleButtons(true, false, false, false, startUploadButton, pauseUploadButton, resumeUploadButton, cancelUploadButton);
+    /**
+     * Starts the upload of a folder as a batch and follows it with the batch progress bar.
+     *
+     * @param directory The selected folder.
+     */
+    private void uploadFolder(File directory) {
+        try {
+            currentBatch = batchUploadService.uploadDirectory(directory);
+        } catch (RuntimeException e) {
+            logger.severe("Folder upload failed: " + e.getMessage());
+            batchStatusLabel.setText("Folder upload failed: " + e.getMessage());
+            return;
+        }
+        cancelBatchButton.setDisable(false);
+        batchTimer.start();
+    }
 
-        isDefaultSectionUsed = true;
+    /**
+     * Shows the counters of the current batch, and stops refreshing once all its files have finished.
+     */
+    private void refreshBatch() {
+        UploadBatchProgress batch = currentBatch;
+        if (batch == null) {
+            batchTimer.stop();
+            return;
+        }
+        batchProgressBar.setProgress(batch.getProgress());
+        long finishedFiles = batch.getCompletedFiles() + batch.getFailedFiles() + batch.getCancelledFiles();
+        String text = finishedFiles + " of " + batch.getDiscoveredFiles() + " files";
+        if (batch.isComplete()) {
+            text += batch.isCancelled() ? ", cancelled"
+                    : batch.getFailedFiles() > 0 ? ", " + batch.getFailedFiles() + " failed" : ", completed";
+            cancelBatchButton.setDisable(true);
+            batchTimer.stop();
+        } else if (batch.isCancelled()) {
+            text += ", cancelling";
+        } else if (batch.isScanning()) {
+            text += ", scanning";
+        }
+        batchStatusLabel.setText(text);
     }
 
     /**
-     * Dynamically creates a new upload section for additional files.
+     * Starts the upload process for a selected file.
      *
-     * @param file The file selected for upload.
+     * @param item The upload to start.
+     * @return false if the upload queue is full, true otherwise.
      */
-    private void addUploadSection(File file) {
-        // Create UI components for the new upload section
-        Label newFilePathLabel = new Label("Selected: " + file.getAbsolutePath());
-        newFilePathLabel.setStyle("-fx-text-fill: grey;");
-
-        ProgressBar newProgressBar = new ProgressBar(0);
-        newProgressBar.setPrefWidth(uploadProgressBar.getPrefWidth());
-
-        Label newProgressLabel = new Label("Progress: 0%");
-        newProgressLabel.setStyle("-fx-text-fill: grey;");
-
-        Button newStartButton = new Button("Upload");
-        newStartButton.setStyle(startUploadButton.getStyle());
-        Button newPauseButton = new Button("Pause");
-        newPauseButton.setStyle(pauseUploadButton.getStyle());
-        Button newResumeButton = new Button("Resume");
-        newResumeButton.setStyle(resumeUploadButton.getStyle());
-        Button newCancelButton = new Button("Cancel");
-        newCancelButton.setStyle(cancelUploadButton.getStyle());
-
-        HBox buttonBox = new HBox(10, newStartButton, newPauseButton, newResumeButton, newCancelButton);
-        buttonBox.setSpacing(10);
-
-        VBox newUploadSection = new VBox(10, newFilePathLabel, newProgressBar, newProgressLabel, buttonBox);
-        newUploadSection.setSpacing(15);
-        newUploadSection.setStyle(defaultUploadSection.getStyle());
-
-        Platform.runLater(() -> uploadContainer.getChildren().add(newUploadSection));
-
-        // Initialize upload state for the new file
-        UploadState state = new UploadState();
-        uploadStates.put(file, state);
-
-        // Set initial button states: Only "Start" is enabled
-        toggleButtons(true, false, false, false, newStartButton, newPauseButton, newResumeButton, newCancelButton);
-
-        // Set button actions for the new section
-        newStartButton.setOnAction(event -> startUpload(file, newProgressBar, newProgressLabel, state, newStartButton, newPauseButton, newResumeButton, newCancelButton));
-        newPauseButton.setOnAction(event -> pauseUpload(file, state, newPauseButton, newResumeButton));
-        newResumeButton.setOnAction(event -> resumeUpload(file, state, newPauseButton, newResumeButton));
-        newCancelButton.setOnAction(event -> cancelUpload(file, state, newUploadSection, false));
+    private boolean startUpload(UploadItem item) {
+        if (item.isUploading()) {
+            return true;
+        }
+        ProgressAggregator.Slot progressSlot = progressAggregator.register(item);
+        UploadSession session;
+        try {
+            session = fileUploadService.uploadFile(
+                    item.getFile(),
+                    // Coalesced by the aggregator instead of posting a runnable per chunk
+                    progressSlot::update,
+                    status -> Platform.runLater(() -> {
+                        progressSlot.showStatus(status);
+                        boolean completed = status.equals("Upload Completed!");
+                        // A failed upload has stopped as well, and can be started again
+                        if (completed || status.equals("Upload Cancelled") || status.startsWith("Upload Failed")) {
+                            progressSlot.close();
+                            item.setUploading(false);
+                            item.setPaused(false);
+                            item.setFinished(completed);
+                        }
+                    })
+            );
+        } catch (RejectedExecutionException e) {
+            // The upload queue is full, the user may try again later
+            progressSlot.close();
+            item.setStatusText("Upload queue is full, try again later.");
+            return false;
+        }
+        item.setPaused(false);
+        item.setUploading(true);
+        item.setSessionId(session.getId());
+        item.setProgressSlot(progressSlot);
+        changePriority(item, item.getPriority());
+        return true;
     }
 
     /**
-     * Starts the upload process for a selected file.
+     * Applies a priority to an upload, and to its session if it has started.
      *
-     * @param file The file to upload.
-     * @param progressBar The progress bar associated with this upload.
-     * @param progressLabel The label displaying progress percentage.
-     * @param state The upload state for the file.
-     * @param startButton The start button for this upload.
-     * @param pauseButton The pause button for this upload.
-     * @param resumeButton The resume button for this upload.
-     * @param cancelButton The cancel button for this upload.
+     * @param item The upload.
+     * @param priority The selected priority (Low, Normal, High).
      */
-    private void startUpload(File file, ProgressBar progressBar, Label progressLabel, UploadState state,
-                             Button startButton, Button pauseButton, Button resumeButton, Button cancelButton) {
-        if (!state.isUploading()) {
-            state.setPaused(false);
-            state.setCancelled(false);
-            state.setUploading(true);
-
-            Thread uploadThread = new Thread(() -> {
-                fileUploadService.uploadFile(
-                        file,
-                        progress -> Platform.runLater(() -> {
-                            progressBar.setProgress(progress);
-                            progressLabel.setText("Progress: " + (int) (progress * 100) + "%");
-                        }),
-                        status -> Platform.runLater(() -> {
-                            progressLabel.setText(status);
-                            if (status.equals("Upload Completed!") || status.equals("Upload Cancelled")) {
-                                state.setUploading(false);
-                                toggleButtons(false, false, false, false, startButton, pauseButton, resumeButton, cancelButton);
-                            }
-                        }),
-                        state::isPaused,
-                        state::isCancelled
-                );
-            });
-            state.setUploadThread(uploadThread);
-            uploadThread.start();
-
-            toggleButtons(false, true, false, true, startButton, pauseButton, resumeButton, cancelButton);
+    private void changePriority(UploadItem item, String priority) {
+        item.setPriority(priority);
+        if (item.getSessionId() != null) {
+            fileUploadService.setPriority(item.getSessionId(), PRIORITIES.get(priority));
         }
     }
 
     /**
      * Pauses the ongoing upload for a file.
      *
-     * @param file The file being uploaded.
-     * @param state The upload state for the file.
-     * @param pauseButton The pause button for this upload.
-     * @param resumeButton The resume button for this upload.
+     * @param item The upload to pause.
      */
-    private void pauseUpload(File file, UploadState state, Button pauseButton, Button resumeButton) {
-        if (state.isUploading() && !state.isPaused()) {
-            state.setPaused(true);
-            toggleButtons(false, false, true, true, null, pauseButton, resumeButton, null);
+    private void pauseUpload(UploadItem item) {
+        if (item.isUploading() && !item.isPaused()) {
+            item.setPaused(true);
+            fileUploadService.pauseUpload(item.getSessionId());
         } else {
-            logger.warning("Pause Upload failed: No active upload or already paused.");
+            logger.fine("Pause Upload skipped: No active upload or already paused.");
         }
     }
 
     /**
      * Resumes a paused upload for a file.
      *
-     * @param file The file being uploaded.
-     * @param state The upload state for the file.
-     * @param pauseButton The pause button for this upload.
-     * @param resumeButton The resume button for this upload.
+     * @param item The upload to resume.
      */
-    private void resumeUpload(File file, UploadState state, Button pauseButton, Button resumeButton) {
-        if (state.isUploading() && state.isPaused()) {
-            state.setPaused(false);
-            toggleButtons(false, true, false, true, null, pauseButton, resumeButton, null);
+    private void resumeUpload(UploadItem item) {
+        if (item.isUploading() && item.isPaused()) {
+            item.setPaused(false);
+            fileUploadService.resumeUpload(item.getSessionId());
         } else {
-            logger.warning("Resume Upload failed: Upload not paused or not active.");
+            logger.fine("Resume Upload skipped: Upload not paused or not active.");
         }
     }
 
     /**
-     * Cancels the ongoing upload for a file and resets the upload section.
+     * Cancels the upload for a file, if it has started. The caller removes the upload from the list.
      *
-     * @param file The file being uploaded.
-     * @param state The upload state for the file.
-     * @param uploadSection The upload section for this file.
-     * @param isDefault Indicates whether this is the default upload section.
+     * @param item The upload to cancel.
      */
-    private void cancelUpload(File file, UploadState state, VBox uploadSection, boolean isDefault) {
-        if (state.isUploading() || state.isPaused()) { // Cancel even if paused
-            state.setCancelled(true);
-
-            // Interrupt the upload thread
-            Thread uploadThread = state.getUploadThread();
-            if (uploadThread != null) {
-                uploadThread.interrupt();
-            }
-
-            // Remove the upload section from the UI
-            if (!isDefault) {
-                Platform.runLater(() -> uploadContainer.getChildren().remove(uploadSection));
-            } else {
-                resetDefaultSection(); // Reset default section for reuse
-            }
-
-            // Call cleanup method to remove metadata from the database
-            fileUploadService.cleanupCanceledUpload(file);
-
-            // Remove the file from the tracking map
-            uploadStates.remove(file);
-
-            // Reset button states in default section
-            if (isDefault) {
-                toggleButtons(true, false, false, false, startUploadButton, pauseUploadButton, resumeUploadButton, cancelUploadButton);
-            }
-        } else {
-            logger.warning("Cancel Upload failed: No active or paused upload thread.");
+    private void cancelUpload(UploadItem item) {
+        if (item.isUploading()) { // Cancel even if paused
+            // Cancel the session and remove its metadata from the database once it has stopped
+            fileUploadService.cancelUpload(item.getSessionId(), true);
+            item.getProgressSlot().close();
+            item.setUploading(false);
         }
     }
 
-
     /**
-     * Resets the default upload section to its initial state.
-     *
-     * This method clears the file path label, progress label, and progress bar,
-     * and disables all buttons in the default upload section. It also resets the
-     * `isDefaultSectionUsed` flag to indicate that the default section is available
-     * for new uploads.
+     * @return A copy of the selected uploads, which stays valid while the list changes.
      */
-    private void resetDefaultSection() {
-        filePathLabel.setText("No file selected");
-
-        progressLabel.setText("Progress: 0%");
-        uploadProgressBar.setProgress(0);
-
-        toggleButtons(false, false, false, false, startUploadButton, pauseUploadButton, resumeUploadButton, cancelUploadButton);
-
-        isDefaultSectionUsed = false;
+    private List<UploadItem> selectedItems() {
+        return new ArrayList<>(uploadList.getSelectionModel().getSelectedItems());
     }
 
     /**
-     * Toggles the enabled state of the action buttons for an upload section.
+     * Applies an action to every selected upload.
      *
-     * This method is used to dynamically enable or disable buttons such as Start,
-     * Pause, Resume, and Cancel for a specific upload section based on the provided
-     * parameters.
-     *
-     * @param startEnabled Indicates whether the Start button should be enabled.
-     * @param pauseEnabled Indicates whether the Pause button should be enabled.
-     * @param resumeEnabled Indicates whether the Resume button should be enabled.
-     * @param cancelEnabled Indicates whether the Cancel button should be enabled.
-     * @param startButton The Start button to toggle.
-     * @param pauseButton The Pause button to toggle.
-     * @param resumeButton The Resume button to toggle.
-     * @param cancelButton The Cancel button to toggle.
+     * @param action The action to apply.
      */
-    private void toggleButtons(boolean startEnabled, boolean pauseEnabled, boolean resumeEnabled, boolean cancelEnabled,
-                               Button startButton, Button pauseButton, Button resumeButton, Button cancelButton) {
-        if (startButton != null) startButton.setDisable(!startEnabled);
-        if (pauseButton != null) pauseButton.setDisable(!pauseEnabled);
-        if (resumeButton != null) resumeButton.setDisable(!resumeEnabled);
-        if (cancelButton != null) cancelButton.setDisable(!cancelEnabled);
+    private void forEachSelected(Consumer<UploadItem> action) {
+        selectedItems().forEach(action);
     }
 
     /**
-     * Represents the state of an ongoing upload.
-     *
-     * This inner class encapsulates the status of a file upload, including whether
-     * it is paused, canceled, or currently in progress. It also holds a reference
-     * to the upload thread handling the file upload.
+     * Shows the number of uploads in the list.
      */
-    private static class UploadState {
-        private volatile boolean isPaused = false;
-        private volatile boolean isCancelled = false;
-        private volatile boolean isUploading = false;
-        private Thread uploadThread;
-
-        /**
-         * Checks whether the upload is paused.
-         *
-         * @return true if the upload is paused, false otherwise.
-         */
-        public boolean isPaused() {
-            return isPaused;
-        }
-
-        /**
-         * Sets the paused state of the upload.
-         *
-         * @param paused true to pause the upload, false to resume it.
-         */
-        public void setPaused(boolean paused) {
-            isPaused = paused;
-        }
-
-        /**
-         * Checks whether the upload is canceled.
-         *
-         * @return true if the upload is canceled, false otherwise.
-         */
-        public boolean isCancelled() {
-            return isCancelled;
-        }
-
-        /**
-         * Sets the canceled state of the upload.
-         *
-         * @param cancelled true to cancel the upload, false otherwise.
-         */
-        public void setCancelled(boolean cancelled) {
-            isCancelled = cancelled;
-        }
-
-        /**
-         * Checks whether the upload is currently in progress.
-         *
-         * @return true if the upload is in progress, false otherwise.
-         */
-        public boolean isUploading() {
-            return isUploading;
-        }
-
-        /**
-         * Sets the uploading state of the upload.
-         *
-         * @param uploading true to mark the upload as in progress, false otherwise.
-         */
-        public void setUploading(boolean uploading) {
-            isUploading = uploading;
-        }
-
-        /**
-         * Retrieves the thread handling the file upload.
-         *
-         * @return The upload thread.
-         */
-        public Thread getUploadThread() {
-            return uploadThread;
-        }
-
-        /**
-         * Sets the thread handling the file upload.
-         *
-         * @param uploadThread The upload thread to set.
-         */
-        public void setUploadThread(Thread uploadThread) {
-            this.uploadThread = uploadThread;
-        }
+    private void updateUploadCount() {
+        uploadCountLabel.setText(uploads.size() + (uploads.size() == 1 ? " file" : " files"));
     }
 }
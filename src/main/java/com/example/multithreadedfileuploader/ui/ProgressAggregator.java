@@ -0,0 +1,137 @@
+/**
+ * Coalesces the progress updates of the uploads into at most one UI update per upload and frame.
+ * <p>
+ * Upload threads report progress once per chunk, which with small or parallel chunks means thousands
+ * of updates per second. Posting each of them to the JavaFX application thread floods it with runnables
+ * and stalls the UI. Instead, every upload writes its latest progress into its own atomic {@link Slot}, and
+ * a single {@link AnimationTimer} applies the slots that changed to their {@link UploadItem} once per frame,
+ * so the cost on the application thread is bounded by the number of uploads, not by the number of chunks.
+ * </p>
+ *
+ * <h2>Usage</h2>
+ * <ul>
+ *   <li>{@link #register(UploadItem)} creates the slot of an upload; its
+ *   {@link Slot#update(double)} may be called from any thread.</li>
+ *   <li>{@link Slot#showStatus(String)} shows a status instead of the progress percentage, after applying the pending
+ *   progress, so the status is not overwritten by an older progress value.</li>
+ *   <li>{@link Slot#close()} stops the updates of an upload that is finished or removed.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.ui;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ProgressAggregator {
+
+    private final Queue<Slot> changed = new ConcurrentLinkedQueue<>();
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            Slot slot;
+            while ((slot = changed.poll()) != null) {
+                slot.apply();
+            }
+        }
+    };
+
+    /**
+     * Starts applying the progress updates on every frame. Must be called on the application thread.
+     */
+    public void start() {
+        timer.start();
+    }
+
+    /**
+     * Stops applying the progress updates. Must be called on the application thread.
+     */
+    public void stop() {
+        timer.stop();
+    }
+
+    /**
+     * Creates the progress slot of an upload.
+     *
+     * @param item The upload showing the progress.
+     * @return The slot receiving the progress of the upload.
+     */
+    public Slot register(UploadItem item) {
+        return new Slot(item);
+    }
+
+    /**
+     * The latest progress of an upload, waiting to be shown.
+     */
+    public class Slot {
+        private final UploadItem item;
+        private final AtomicLong progress = new AtomicLong(Double.doubleToRawLongBits(0.0));
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        // Only accessed on the application thread
+        private int shownPercent = -1;
+
+        private Slot(UploadItem item) {
+            this.item = item;
+        }
+
+        /**
+         * Records the latest progress of the upload. Called from any thread; only the latest value
+         * before the next frame is shown.
+         *
+         * @param value The progress of the upload (0.0 to 1.0).
+         */
+        public void update(double value) {
+            if (closed) {
+                return;
+            }
+            progress.set(Double.doubleToRawLongBits(value));
+            if (pending.compareAndSet(false, true)) {
+                changed.add(this);
+            }
+        }
+
+        /**
+         * Shows a status instead of the progress percentage, after the progress reported before it. Must be called on the
+         * application thread.
+         *
+         * @param status The status of the upload.
+         */
+        public void showStatus(String status) {
+            apply();
+            item.setStatusText(status);
+            // The next progress update replaces the status
+            shownPercent = -1;
+        }
+
+        /**
+         * Drops the pending progress and ignores further updates.
+         */
+        public void close() {
+            closed = true;
+            pending.set(false);
+        }
+
+        /**
+         * Shows the latest progress. Must be called on the application thread.
+         */
+        private void apply() {
+            // Cleared before reading, so a concurrent update queues the slot again
+            if (!pending.getAndSet(false) || closed) {
+                return;
+            }
+            double value = Double.longBitsToDouble(progress.get());
+            item.setProgress(value);
+            int percent = (int) (value * 100);
+            if (percent != shownPercent) {
+                shownPercent = percent;
+                item.setStatusText("Progress: " + percent + "%");
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * List cell rendering an {@link UploadItem} in the upload list of the {@link MainView}.
+ * <p>
+ * The {@code ListView} only creates cells for the visible rows and reuses them while scrolling, so the
+ * controls of a cell are built once and rebound to whichever item the cell shows. The size of the scene
+ * graph therefore depends on the height of the list, not on the number of uploads.
+ * </p>
+ *
+ * <h2>Controls</h2>
+ * <ul>
+ *   <li>The file path, the progress bar, and the progress or status text of the upload.</li>
+ *   <li>The priority of the upload, adjustable while the upload runs.</li>
+ *   <li>Upload, Pause, Resume, and Cancel buttons, enabled according to the state of the upload.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.ui;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.FXCollections;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import java.util.Collection;
+
+public class UploadCell extends ListCell<UploadItem> {
+
+    private static final String TEXT_STYLE = "-fx-font-family: 'Montserrat', sans-serif; -fx-font-size: 12px; -fx-text-fill: grey;";
+    private static final String BUTTON_STYLE = "-fx-font-family: 'Montserrat', sans-serif; -fx-padding: 6px 20px; -fx-background-radius: 25px; -fx-border-width: 0;";
+
+    /**
+     * Actions triggered by the controls of a cell.
+     */
+    public interface Actions {
+        void start(UploadItem item);
+
+        void pause(UploadItem item);
+
+        void resume(UploadItem item);
+
+        void cancel(UploadItem item);
+
+        void changePriority(UploadItem item, String priority);
+    }
+
+    private final Label filePathLabel = new Label();
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private final Label progressLabel = new Label();
+    private final ComboBox<String> priorityBox = new ComboBox<>();
+    private final Button startButton = new Button("Upload");
+    private final Button pauseButton = new Button("Pause");
+    private final Button resumeButton = new Button("Resume");
+    private final Button cancelButton = new Button("Cancel");
+    private final VBox content;
+    private final InvalidationListener stateListener = observable -> refreshButtons();
+
+    private UploadItem bound;
+    private boolean updatingPriority;
+
+    /**
+     * Creates a cell with its controls.
+     *
+     * @param actions The actions triggered by the controls.
+     * @param priorities The priorities offered for an upload.
+     */
+    public UploadCell(Actions actions, Collection<String> priorities) {
+        filePathLabel.setStyle(TEXT_STYLE);
+        progressLabel.setStyle(TEXT_STYLE);
+        progressBar.setPrefWidth(400);
+        progressBar.setStyle("-fx-accent: #007bff;");
+
+        priorityBox.setItems(FXCollections.observableArrayList(priorities));
+        priorityBox.setOnAction(event -> {
+            if (!updatingPriority && bound != null) {
+                actions.changePriority(bound, priorityBox.getValue());
+            }
+        });
+        Label priorityLabel = new Label("Priority:");
+        priorityLabel.setStyle(TEXT_STYLE);
+
+        startButton.setStyle(BUTTON_STYLE + " -fx-background-color: #007bff; -fx-text-fill: white;");
+        pauseButton.setStyle(BUTTON_STYLE + " -fx-background-color: #ffcc00; -fx-text-fill: black;");
+        resumeButton.setStyle(BUTTON_STYLE + " -fx-background-color: #4caf50; -fx-text-fill: white;");
+        cancelButton.setStyle(BUTTON_STYLE + " -fx-background-color: #ff4c4c; -fx-text-fill: white;");
+        startButton.setOnAction(event -> actions.start(getItem()));
+        pauseButton.setOnAction(event -> actions.pause(getItem()));
+        resumeButton.setOnAction(event -> actions.resume(getItem()));
+        cancelButton.setOnAction(event -> actions.cancel(getItem()));
+
+        HBox controls = new HBox(10, priorityLabel, priorityBox, startButton, pauseButton, resumeButton, cancelButton);
+        controls.setAlignment(Pos.CENTER);
+        content = new VBox(8, filePathLabel, progressBar, progressLabel, controls);
+        content.setAlignment(Pos.CENTER);
+        content.setStyle("-fx-padding: 10px;");
+    }
+
+    @Override
+    protected void updateItem(UploadItem item, boolean empty) {
+        super.updateItem(item, empty);
+        unbind();
+        if (empty || item == null) {
+            setGraphic(null);
+            return;
+        }
+        bind(item);
+        setGraphic(content);
+    }
+
+    /**
+     * Binds the controls to the item shown by this cell.
+     */
+    private void bind(UploadItem item) {
+        bound = item;
+        filePathLabel.setText("Selected: " + item.getFile().getAbsolutePath());
+        progressBar.progressProperty().bind(item.progressProperty());
+        progressLabel.textProperty().bind(item.statusTextProperty());
+        updatingPriority = true;
+        priorityBox.setValue(item.getPriority());
+        updatingPriority = false;
+        item.uploadingProperty().addListener(stateListener);
+        item.pausedProperty().addListener(stateListener);
+        item.finishedProperty().addListener(stateListener);
+        refreshButtons();
+    }
+
+    /**
+     * Releases the item previously shown by this cell.
+     */
+    private void unbind() {
+        if (bound == null) {
+            return;
+        }
+        progressBar.progressProperty().unbind();
+        progressLabel.textProperty().unbind();
+        bound.uploadingProperty().removeListener(stateListener);
+        bound.pausedProperty().removeListener(stateListener);
+        bound.finishedProperty().removeListener(stateListener);
+        bound = null;
+    }
+
+    /**
+     * Enables the buttons according to the state of the shown upload.
+     */
+    private void refreshButtons() {
+        boolean uploading = bound.isUploading();
+        boolean paused = bound.isPaused();
+        boolean finished = bound.isFinished();
+        startButton.setDisable(uploading || finished);
+        pauseButton.setDisable(!uploading || paused);
+        resumeButton.setDisable(!uploading || !paused);
+        cancelButton.setDisable(finished);
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Model of an upload shown in the upload list of the {@link MainView}.
+ * <p>
+ * The list holds one item per selected file, and only the visible items are rendered, by reusable
+ * {@link UploadCell}s bound to the properties of the item they currently show. The item therefore keeps
+ * the whole UI state of its upload, which must only be changed on the JavaFX application thread.
+ * </p>
+ *
+ * <h2>State</h2>
+ * <ul>
+ *   <li><b>uploading:</b> The upload has been started and has not finished yet.</li>
+ *   <li><b>paused:</b> The upload has been paused by the user.</li>
+ *   <li><b>finished:</b> The upload has completed and can no longer be controlled.</li>
+ * </ul>
+ */
+package com.example.multithreadedfileuploader.ui;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
+import java.io.File;
+
+public class UploadItem {
+
+    private final File file;
+    private final DoubleProperty progress = new SimpleDoubleProperty(0);
+    private final StringProperty statusText = new SimpleStringProperty("Progress: 0%");
+    private final StringProperty priority = new SimpleStringProperty("Normal");
+    private final BooleanProperty uploading = new SimpleBooleanProperty(false);
+    private final BooleanProperty paused = new SimpleBooleanProperty(false);
+    private final BooleanProperty finished = new SimpleBooleanProperty(false);
+
+    private String sessionId;
+    private ProgressAggregator.Slot progressSlot;
+
+    /**
+     * Creates the item of a file selected for upload.
+     *
+     * @param file The file to upload.
+     */
+    public UploadItem(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The file to upload.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The progress of the upload (0.0 to 1.0).
+     */
+    public DoubleProperty progressProperty() {
+        return progress;
+    }
+
+    /**
+     * @return The progress percentage or the latest status of the upload, as shown below the progress bar.
+     */
+    public StringProperty statusTextProperty() {
+        return statusText;
+    }
+
+    /**
+     * @return The selected priority of the upload (Low, Normal, High).
+     */
+    public StringProperty priorityProperty() {
+        return priority;
+    }
+
+    /**
+     * @return Whether the upload has been started and has not finished yet.
+     */
+    public BooleanProperty uploadingProperty() {
+        return uploading;
+    }
+
+    /**
+     * @return Whether the upload is paused.
+     */
+    public BooleanProperty pausedProperty() {
+        return paused;
+    }
+
+    /**
+     * @return Whether the upload has completed.
+     */
+    public BooleanProperty finishedProperty() {
+        return finished;
+    }
+
+    public String getPriority() {
+        return priority.get();
+    }
+
+    public void setPriority(String priority) {
+        this.priority.set(priority);
+    }
+
+    public boolean isUploading() {
+        return uploading.get();
+    }
+
+    public void setUploading(boolean uploading) {
+        this.uploading.set(uploading);
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused.set(paused);
+    }
+
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished.set(finished);
+    }
+
+    public void setStatusText(String statusText) {
+        this.statusText.set(statusText);
+    }
+
+    public void setProgress(double progress) {
+        this.progress.set(progress);
+    }
+
+    /**
+     * @return The ID of the upload session, or null if the upload has not started.
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @return The progress slot through which the upload updates this item, or null if it has not started.
+     */
+    public ProgressAggregator.Slot getProgressSlot() {
+        return progressSlot;
+    }
+
+    public void setProgressSlot(ProgressAggregator.Slot progressSlot) {
+        this.progressSlot = progressSlot;
+    }
+}
@@ -0,0 +1,4 @@
+-- Completed chunks of a file as a bitmap, used when uploader.metadata.chunk-state=bitmap.
+-- NULL when chunk state is kept in chunk_metadata rows.
+
+ALTER TABLE file_metadata ADD COLUMN chunk_bitmap VARBINARY;
@@ -0,0 +1,3 @@
+-- The chunk size a file is split with, chosen per file. Files recorded before used the fixed 1 MiB chunks.
+
+ALTER TABLE file_metadata ADD COLUMN chunk_size BIGINT NOT NULL DEFAULT 1048576;
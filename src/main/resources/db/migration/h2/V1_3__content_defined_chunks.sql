@@ -0,0 +1,8 @@
+-- Layout and digest of content-defined chunks, which have no fixed size. NULL for fixed-size chunks.
+
+ALTER TABLE chunk_metadata ADD COLUMN chunk_offset BIGINT;
+ALTER TABLE chunk_metadata ADD COLUMN chunk_length INTEGER;
+ALTER TABLE chunk_metadata ADD COLUMN digest VARCHAR(64);
+
+-- Index serving the chunk deduplication lookups by digest
+CREATE INDEX idx_chunk_metadata_digest ON chunk_metadata (digest);
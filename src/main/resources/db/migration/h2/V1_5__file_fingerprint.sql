@@ -0,0 +1,11 @@
+-- Fingerprint identifying the content of a file, by which an interrupted upload is resumed.
+
+ALTER TABLE file_metadata ADD COLUMN fingerprint VARCHAR(64);
+
+-- Files recorded before have no fingerprint. They get one no hex-encoded fingerprint can match, so they are
+-- kept but never resumed.
+UPDATE file_metadata SET fingerprint = 'legacy-' || id WHERE fingerprint IS NULL;
+ALTER TABLE file_metadata ALTER COLUMN fingerprint SET NOT NULL;
+
+-- Uploads are resumed by fingerprint, a single probe of this index
+CREATE UNIQUE INDEX idx_file_metadata_fingerprint ON file_metadata (fingerprint);
@@ -0,0 +1,11 @@
+-- Tunes chunk_metadata for the chunk-update hot path.
+
+-- One row per chunk of a file. The index behind the constraint serves every lookup by
+-- (file_id, chunk_number) and, through its leading column, every lookup and delete by file_id.
+-- H2 has no partial indexes, so this key also serves the lookups of pending chunks.
+ALTER TABLE chunk_metadata ADD CONSTRAINT uq_chunk_metadata_file_chunk UNIQUE (file_id, chunk_number);
+
+-- Deleting a file removes its chunks, so cleanup is a single delete
+ALTER TABLE chunk_metadata DROP CONSTRAINT fk_file;
+ALTER TABLE chunk_metadata ADD CONSTRAINT fk_chunk_metadata_file
+    FOREIGN KEY (file_id) REFERENCES file_metadata (id) ON DELETE CASCADE;
@@ -0,0 +1,7 @@
+-- Persists the upload queue, so uploads waiting for admission are queued again after a restart.
+
+-- The local file of an upload, NULL for uploads streamed by a client
+ALTER TABLE file_metadata ADD COLUMN source_path VARCHAR(4096);
+
+-- Uploads by status, e.g. the queued uploads read on startup. H2 has no partial indexes.
+CREATE INDEX idx_file_metadata_status ON file_metadata (status);
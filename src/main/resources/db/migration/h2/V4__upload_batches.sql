@@ -0,0 +1,21 @@
+-- Batches of files uploaded together, e.g. from a directory. Their files refer to them by batch_id.
+
+CREATE TABLE upload_batch (
+id BIGINT AUTO_INCREMENT PRIMARY KEY,
+name VARCHAR(4096) NOT NULL,
+status VARCHAR(50) DEFAULT 'Scanning' NOT NULL,
+total_files BIGINT DEFAULT 0 NOT NULL,
+total_bytes BIGINT DEFAULT 0 NOT NULL,
+completed_files BIGINT DEFAULT 0 NOT NULL,
+failed_files BIGINT DEFAULT 0 NOT NULL,
+created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+finished_at TIMESTAMP
+);
+
+-- Deleting a batch keeps its files as single uploads
+ALTER TABLE file_metadata ADD COLUMN batch_id BIGINT;
+ALTER TABLE file_metadata ADD CONSTRAINT fk_file_metadata_batch
+    FOREIGN KEY (batch_id) REFERENCES upload_batch (id) ON DELETE SET NULL;
+
+-- Files of a batch. H2 has no partial indexes.
+CREATE INDEX idx_file_metadata_batch ON file_metadata (batch_id);
@@ -0,0 +1,5 @@
+-- Chunk compression was removed: no upload target carried compressed chunks, so the codec and compressed length
+-- recorded by V6 were never set.
+
+ALTER TABLE chunk_metadata DROP COLUMN codec;
+ALTER TABLE chunk_metadata DROP COLUMN compressed_length;
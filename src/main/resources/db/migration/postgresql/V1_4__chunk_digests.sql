@@ -0,0 +1,5 @@
+-- Chunk digests packed in chunk order when chunk state is kept in a bitmap, and the Merkle root over the
+-- chunk digests of a completed file.
+
+ALTER TABLE file_metadata ADD COLUMN chunk_digests BYTEA;
+ALTER TABLE file_metadata ADD COLUMN merkle_root VARCHAR(64);
@@ -0,0 +1,24 @@
+-- Tunes chunk_metadata for the chunk-update hot path.
+
+-- SERIAL is a 32-bit integer, which a large deployment runs out of
+ALTER TABLE chunk_metadata ALTER COLUMN id TYPE BIGINT;
+ALTER SEQUENCE IF EXISTS chunk_metadata_id_seq AS BIGINT;
+
+-- One row per chunk of a file. The index behind the constraint serves every lookup by
+-- (file_id, chunk_number) and, through its leading column, every lookup and delete by file_id.
+DELETE FROM chunk_metadata a
+USING chunk_metadata b
+WHERE a.file_id = b.file_id AND a.chunk_number = b.chunk_number AND a.id < b.id;
+ALTER TABLE chunk_metadata ADD CONSTRAINT uq_chunk_metadata_file_chunk UNIQUE (file_id, chunk_number);
+
+-- Deleting a file removes its chunks, so cleanup is a single delete
+ALTER TABLE chunk_metadata DROP CONSTRAINT IF EXISTS fk_file;
+ALTER TABLE chunk_metadata ADD CONSTRAINT fk_chunk_metadata_file
+    FOREIGN KEY (file_id) REFERENCES file_metadata (id) ON DELETE CASCADE;
+
+-- Pending chunks of a file, read when an upload resumes. Shrinks as the upload progresses.
+CREATE INDEX idx_chunk_metadata_pending ON chunk_metadata (file_id, chunk_number) WHERE status = 'Pending';
+
+-- Deduplication lookups only ever match completed chunks
+DROP INDEX IF EXISTS idx_chunk_metadata_digest;
+CREATE INDEX idx_chunk_metadata_digest ON chunk_metadata (digest) WHERE status = 'Completed';
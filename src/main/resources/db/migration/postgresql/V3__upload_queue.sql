@@ -0,0 +1,7 @@
+-- Persists the upload queue, so uploads waiting for admission are queued again after a restart.
+
+-- The local file of an upload, NULL for uploads streamed by a client
+ALTER TABLE file_metadata ADD COLUMN source_path VARCHAR(4096);
+
+-- Queued uploads, read once on startup. Stays small, as uploads leave the queue when admitted.
+CREATE INDEX idx_file_metadata_queued ON file_metadata (id) WHERE status = 'Queued';
@@ -0,0 +1,21 @@
+-- Batches of files uploaded together, e.g. from a directory. Their files refer to them by batch_id.
+
+CREATE TABLE upload_batch (
+id BIGSERIAL PRIMARY KEY,
+name VARCHAR(4096) NOT NULL,
+status VARCHAR(50) NOT NULL DEFAULT 'Scanning',
+total_files BIGINT NOT NULL DEFAULT 0,
+total_bytes BIGINT NOT NULL DEFAULT 0,
+completed_files BIGINT NOT NULL DEFAULT 0,
+failed_files BIGINT NOT NULL DEFAULT 0,
+created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+finished_at TIMESTAMP
+);
+
+-- Deleting a batch keeps its files as single uploads
+ALTER TABLE file_metadata ADD COLUMN batch_id BIGINT;
+ALTER TABLE file_metadata ADD CONSTRAINT fk_file_metadata_batch
+    FOREIGN KEY (batch_id) REFERENCES upload_batch (id) ON DELETE SET NULL;
+
+-- Files of a batch. Single uploads have no batch and are left out of the index.
+CREATE INDEX idx_file_metadata_batch ON file_metadata (batch_id) WHERE batch_id IS NOT NULL;
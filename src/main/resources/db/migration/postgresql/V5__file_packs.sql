@@ -0,0 +1,12 @@
+-- Small files uploaded inside a pack. The pack is an upload of its own, and each of its files records
+-- where its bytes are inside the pack instead of having chunks.
+
+ALTER TABLE file_metadata ADD COLUMN pack_id BIGINT;
+ALTER TABLE file_metadata ADD COLUMN pack_offset BIGINT;
+
+-- Deleting a pack removes the files stored in it
+ALTER TABLE file_metadata ADD CONSTRAINT fk_file_metadata_pack
+    FOREIGN KEY (pack_id) REFERENCES file_metadata (id) ON DELETE CASCADE;
+
+-- Files of a pack. Files uploaded on their own have no pack and are left out of the index.
+CREATE INDEX idx_file_metadata_pack ON file_metadata (pack_id) WHERE pack_id IS NOT NULL;
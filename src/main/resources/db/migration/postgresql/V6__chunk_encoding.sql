@@ -0,0 +1,5 @@
+-- Chunks sent compressed. The codec and the compressed length are recorded per chunk; chunks sent as they are
+-- keep both columns NULL. The stored chunk is always the original bytes, so its digest is unaffected.
+
+ALTER TABLE chunk_metadata ADD COLUMN codec VARCHAR(16);
+ALTER TABLE chunk_metadata ADD COLUMN compressed_length INTEGER;
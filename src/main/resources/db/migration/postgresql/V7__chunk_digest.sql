@@ -0,0 +1,11 @@
+-- Chunk digests of files whose chunk state is kept in a bitmap. One row per completed chunk, so a flush writes
+-- the digests of its own chunks instead of rewriting file_metadata.chunk_digests for the whole file.
+
+-- Deleting a file removes the digests of its chunks
+CREATE TABLE chunk_digest (
+file_id BIGINT NOT NULL,
+chunk_number INTEGER NOT NULL,
+digest VARCHAR(64) NOT NULL,
+CONSTRAINT pk_chunk_digest PRIMARY KEY (file_id, chunk_number),
+CONSTRAINT fk_chunk_digest_file FOREIGN KEY (file_id) REFERENCES file_metadata (id) ON DELETE CASCADE
+);
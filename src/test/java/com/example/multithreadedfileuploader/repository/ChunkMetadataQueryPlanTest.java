@@ -0,0 +1,108 @@
+package com.example.multithreadedfileuploader.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the hot chunk queries are served by the indexes of the PostgreSQL migrations.
+ * <p>
+ * The schema is migrated with the same scripts as in production and filled with enough chunks that a
+ * sequential scan would be the planner's choice without a matching index. The queries are planned as generic
+ * plans of prepared statements, which is how they end up being run once the JDBC driver prepares them on the
+ * server, so a predicate that only matches an index for particular parameter values fails the test.
+ * </p>
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ChunkMetadataQueryPlanTest {
+
+    private static final int FILES = 100;
+    private static final int CHUNKS_PER_FILE = 1000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    private static long fileId;
+
+    @BeforeAll
+    static void migrateAndFill() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration/postgresql")
+                .load()
+                .migrate();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO file_metadata (file_name, fingerprint, file_size, total_chunks, status) " +
+                    "SELECT 'file-' || f, 'fingerprint-' || f, " + CHUNKS_PER_FILE + " * 1048576, " +
+                    CHUNKS_PER_FILE + ", 'Completed' FROM generate_series(1, " + FILES + ") AS f");
+            try (ResultSet resultSet = statement.executeQuery("SELECT min(id) FROM file_metadata")) {
+                resultSet.next();
+                fileId = resultSet.getLong(1);
+            }
+            // Every file is completed except one, which is halfway through its upload
+            statement.execute("INSERT INTO chunk_metadata (file_id, chunk_number, status, progress) " +
+                    "SELECT f.id, c, CASE WHEN f.id = " + fileId + " AND c % 2 = 0 THEN 'Pending' ELSE 'Completed' END, " +
+                    "CASE WHEN f.id = " + fileId + " AND c % 2 = 0 THEN 0 ELSE 100 END " +
+                    "FROM file_metadata f, generate_series(0, " + (CHUNKS_PER_FILE - 1) + ") AS c");
+            statement.execute("ANALYZE chunk_metadata");
+        }
+    }
+
+    @Test
+    void pendingChunksUsePartialIndex() throws SQLException {
+        // ChunkMetadataRepository.findPendingChunkNumbersByFileId
+        String plan = explainGeneric("bigint",
+                "SELECT chunk_number FROM chunk_metadata WHERE file_id = $1 AND status = 'Pending'", fileId);
+
+        assertTrue(plan.contains("idx_chunk_metadata_pending"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void chunkLookupUsesUniqueKey() throws SQLException {
+        // ChunkMetadataRepository.findByFileIdAndChunkNumber
+        String plan = explainGeneric("bigint, integer",
+                "SELECT * FROM chunk_metadata WHERE file_id = $1 AND chunk_number = $2", fileId, 42);
+
+        assertTrue(plan.contains("uq_chunk_metadata_file_chunk"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    /**
+     * Prepares a query and returns the generic plan of its execution with the given parameters.
+     */
+    private static String explainGeneric(String parameterTypes, String query, Object... parameters)
+            throws SQLException {
+        StringBuilder arguments = new StringBuilder();
+        for (Object parameter : parameters) {
+            arguments.append(arguments.length() == 0 ? "" : ", ").append(parameter);
+        }
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            statement.execute("PREPARE query (" + parameterTypes + ") AS " + query);
+            try (ResultSet resultSet = statement.executeQuery("EXPLAIN EXECUTE query (" + arguments + ")")) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.multithreadedfileuploader.service;
+
+import com.example.multithreadedfileuploader.entity.ChunkMetadata;
+import com.example.multithreadedfileuploader.entity.FileMetadata;
+import com.example.multithreadedfileuploader.repository.FileMetadataRepository;
+import com.example.multithreadedfileuploader.storage.InMemoryUploadSink;
+import com.example.multithreadedfileuploader.storage.UploadTarget;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the journal of the {@link ChunkProgressWriter} keeps every completion that has not reached the
+ * database, however checkpoints interleave with the completions, and never before the chunk itself is durable.
+ */
+class ChunkProgressWriterTest {
+
+    private static final long FILE_ID = 1L;
+    private static final int ROUNDS = 50;
+    private static final int RECORDERS = 4;
+    private static final int CHUNKS_BEFORE_CHECKPOINT = 1000;
+    private static final long NO_PERIODIC_CHECKPOINT_MS = 3_600_000;
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    void completionsRecordedDuringCheckpointSurviveCrash() throws Exception {
+        // Each round crashes right after a single checkpoint, so a completion it deleted unwritten is lost for good
+        for (int round = 0; round < ROUNDS; round++) {
+            Path directory = journalDirectory.resolve("round-" + round);
+            Set<Integer> database = ConcurrentHashMap.newKeySet();
+            ProgressJournal journal = new ProgressJournal(true, directory.toString(), 10);
+            ChunkProgressWriter writer = new ChunkProgressWriter(fileMetadataRepository(),
+                    new RecordingStore(database), journal, 64, NO_PERIODIC_CHECKPOINT_MS, NO_PERIODIC_CHECKPOINT_MS);
+
+            UploadTarget target = new InMemoryUploadSink().open("file", 0);
+            AtomicBoolean recording = new AtomicBoolean(true);
+            AtomicInteger nextChunk = new AtomicInteger();
+            AtomicInteger recorded = new AtomicInteger();
+            Thread[] recorders = new Thread[RECORDERS];
+            for (int r = 0; r < RECORDERS; r++) {
+                recorders[r] = new Thread(() -> {
+                    while (recording.get()) {
+                        writer.recordChunkCompleted(FILE_ID, nextChunk.getAndIncrement(),
+                                new byte[ChunkDigests.DIGEST_LENGTH], 0, target);
+                        recorded.incrementAndGet();
+                    }
+                });
+                recorders[r].start();
+            }
+            while (recorded.get() < CHUNKS_BEFORE_CHECKPOINT) {
+                Thread.onSpinWait();
+            }
+            writer.checkpoint();
+            recording.set(false);
+            for (Thread recorder : recorders) {
+                recorder.join();
+            }
+
+            // Crash: whatever is still pending in memory is lost, the journal is all that is left of it
+            writer.discard(FILE_ID);
+            journal.close();
+            ProgressJournal reopened = new ProgressJournal(true, directory.toString(), 10);
+            ChunkProgressWriter restarted = new ChunkProgressWriter(fileMetadataRepository(),
+                    new RecordingStore(database), reopened, 64, NO_PERIODIC_CHECKPOINT_MS, NO_PERIODIC_CHECKPOINT_MS);
+
+            assertEquals(recorded.get(), database.size(), "Completions lost in round " + round);
+            restarted.shutdown();
+            // The crashed writer is never shut down, so its scheduler keeps the database of the round reachable
+            database.clear();
+        }
+    }
+
+    @Test
+    void chunkIsSyncedBeforeItsCompletionIsJournaled() throws Exception {
+        Path directory = journalDirectory.resolve("sync-order");
+        Set<Integer> database = ConcurrentHashMap.newKeySet();
+        ProgressJournal journal = new ProgressJournal(true, directory.toString(), 10);
+        ChunkProgressWriter writer = new ChunkProgressWriter(fileMetadataRepository(),
+                new RecordingStore(database), journal, 64, NO_PERIODIC_CHECKPOINT_MS, NO_PERIODIC_CHECKPOINT_MS);
+
+        AtomicLong journaledAtSync = new AtomicLong(-1);
+        UploadTarget target = new UploadTarget() {
+            @Override
+            public void write(long offset, ByteBuffer data) {
+            }
+
+            @Override
+            public void sync() throws IOException {
+                journaledAtSync.compareAndSet(-1, journalSize(directory));
+            }
+
+            @Override
+            public void complete() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        writer.recordChunkCompleted(FILE_ID, 0, new byte[ChunkDigests.DIGEST_LENGTH], 1, target);
+        journal.close();
+
+        assertEquals(0, journaledAtSync.get(), "Completion journaled before its chunk was synced");
+        ProgressJournal reopened = new ProgressJournal(true, directory.toString(), 10);
+        ChunkProgressWriter restarted = new ChunkProgressWriter(fileMetadataRepository(),
+                new RecordingStore(database), reopened, 64, NO_PERIODIC_CHECKPOINT_MS, NO_PERIODIC_CHECKPOINT_MS);
+        assertEquals(Set.of(0), database);
+        restarted.shutdown();
+    }
+
+    /**
+     * Returns the number of bytes in the journal files of a directory.
+     */
+    private static long journalSize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long size = 0;
+            for (Path file : (Iterable<Path>) files::iterator) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Returns a repository in which every file exists and every update succeeds.
+     */
+    private static FileMetadataRepository fileMetadataRepository() {
+        return (FileMetadataRepository) Proxy.newProxyInstance(FileMetadataRepository.class.getClassLoader(),
+                new Class<?>[]{FileMetadataRepository.class}, (proxy, method, args) -> {
+                    if (method.getReturnType() == int.class) {
+                        return 1;
+                    }
+                    if (method.getReturnType() == boolean.class) {
+                        return true;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Chunk state store recording the completed chunks in a set standing for the database.
+     */
+    private static class RecordingStore implements ChunkStateStore {
+        private final Set<Integer> database;
+
+        RecordingStore(Set<Integer> database) {
+            this.database = database;
+        }
+
+        @Override
+        public void initialize(FileMetadata metadata) {
+        }
+
+        @Override
+        public BitSet findCompletedChunks(FileMetadata metadata) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void markCompleted(Long fileId, List<Integer> chunkNumbers, List<byte[]> digests) {
+            database.addAll(chunkNumbers);
+        }
+
+        @Override
+        public byte[][] findDigests(FileMetadata metadata) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ChunkMetadata> findChunks(Long fileId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(Long fileId) {
+        }
+    }
+}